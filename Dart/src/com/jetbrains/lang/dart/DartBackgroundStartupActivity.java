@@ -7,6 +7,7 @@ import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupActivity;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.ide.index.DartLibraryIndex;
 import com.jetbrains.lang.dart.projectWizard.DartModuleBuilder;
 import com.jetbrains.lang.dart.sdk.DartSdk;
 import com.jetbrains.lang.dart.sdk.DartSdkLibUtil;
@@ -16,14 +17,17 @@ import org.jetbrains.annotations.NotNull;
 public class DartBackgroundStartupActivity implements StartupActivity.Background {
   @Override
   public void runActivity(@NotNull final Project project) {
+    final DartSdk sdk = DartSdk.getDartSdk(project);
+    if (sdk == null) return;
+
+    // loaded from the disk cache if the SDK hasn't changed since the previous session
+    DartLibraryIndex.getSdkLibUriToRelativePathMap(project, sdk.getHomePath());
+
     if (DartModuleBuilder.isPubGetScheduledForNewlyCreatedProject(project)) {
       // We want to start Analysis Server after initial 'pub get' is finished, this will be done in DartPubActionBase
       return;
     }
 
-    final DartSdk sdk = DartSdk.getDartSdk(project);
-    if (sdk == null) return;
-
     for (final Module module : ModuleManager.getInstance(project).getModules()) {
       if (DartSdkLibUtil.isDartSdkEnabled(module)) {
         ReadAction.run(() -> DartAnalysisServerService.getInstance(project).serverReadyForRequest());
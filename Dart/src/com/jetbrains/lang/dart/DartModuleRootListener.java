@@ -6,6 +6,7 @@ import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootListener;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.ide.index.DartLibraryIndex;
 import com.jetbrains.lang.dart.sdk.DartSdk;
 import org.jetbrains.annotations.NotNull;
 
@@ -18,9 +19,11 @@ import org.jetbrains.annotations.NotNull;
 public class DartModuleRootListener implements ModuleRootListener {
   @Override
   public void rootsChanged(@NotNull ModuleRootEvent event) {
-    if (DartSdk.getDartSdk(event.getProject()) == null) return;
+    final DartSdk sdk = DartSdk.getDartSdk(event.getProject());
+    if (sdk == null) return;
 
     DartFileListener.scheduleDartPackageRootsUpdate(event.getProject());
+    DartLibraryIndex.preloadSdkLibUriToRelativePathMap(event.getProject(), sdk.getHomePath());
 
     ApplicationManager.getApplication()
       .invokeLater(() -> DartAnalysisServerService.getInstance(event.getProject()).ensureAnalysisRootsUpToDate(),
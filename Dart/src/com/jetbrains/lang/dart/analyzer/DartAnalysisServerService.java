@@ -7,6 +7,7 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.dart.server.*;
 import com.google.dart.server.generated.AnalysisServer;
+import com.google.dart.server.internal.remote.AnalysisServerMetrics;
 import com.google.dart.server.internal.remote.DebugPrintStream;
 import com.google.dart.server.internal.remote.RemoteAnalysisServerImpl;
 import com.google.dart.server.internal.remote.StdioServerSocket;
@@ -30,6 +31,7 @@ import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.fileEditor.impl.FileOffsetsManager;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -40,12 +42,14 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.ui.GuiUtils;
 import com.intellij.util.Consumer;
 import com.intellij.util.*;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.lang.dart.DartBundle;
 import com.jetbrains.lang.dart.DartFileType;
@@ -56,6 +60,7 @@ import com.jetbrains.lang.dart.fixes.DartQuickFixListener;
 import com.jetbrains.lang.dart.ide.actions.DartPubActionBase;
 import com.jetbrains.lang.dart.ide.errorTreeView.DartProblemsView;
 import com.jetbrains.lang.dart.ide.template.postfix.DartPostfixTemplateProvider;
+import com.jetbrains.lang.dart.resolve.DartResolveCacheWarmer;
 import com.jetbrains.lang.dart.sdk.DartSdk;
 import com.jetbrains.lang.dart.sdk.DartSdkUpdateChecker;
 import com.jetbrains.lang.dart.sdk.DartSdkUtil;
@@ -71,8 +76,16 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import static com.google.dart.server.internal.remote.RemoteAnalysisServerImpl.DART_FIX_INFO_NON_NULLABLE;
 
@@ -87,6 +100,11 @@ public final class DartAnalysisServerService implements Disposable {
 
   private static final long UPDATE_FILES_TIMEOUT = 300;
 
+  // If more edits than this are collected for a file between two updates then the whole document text is sent instead of the deltas
+  static final int MAX_OVERLAY_DELTA_EDITS = 100;
+  // Doesn't match any document modification stamp, so that the whole document text is sent with the next update
+  private static final long OUT_OF_SYNC_OVERLAY_TIMESTAMP = -1;
+
   private static final long CHECK_CANCELLED_PERIOD = 10;
   private static final long SEND_REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
   private static final long EDIT_FORMAT_TIMEOUT = TimeUnit.SECONDS.toMillis(3);
@@ -94,6 +112,7 @@ public final class DartAnalysisServerService implements Disposable {
   private static final long EDIT_ORGANIZE_DIRECTIVES_TIMEOUT = TimeUnit.MILLISECONDS.toMillis(300);
   private static final long EDIT_SORT_MEMBERS_TIMEOUT = TimeUnit.SECONDS.toMillis(3);
   private static final long GET_HOVER_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
+  private static final long GET_ERRORS_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
   private static final long GET_NAVIGATION_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
   private static final long GET_ASSISTS_TIMEOUT_EDT = TimeUnit.MILLISECONDS.toMillis(100);
   private static final long GET_ASSISTS_TIMEOUT = TimeUnit.MILLISECONDS.toMillis(1000);
@@ -116,6 +135,9 @@ public final class DartAnalysisServerService implements Disposable {
 
   private static final int DEBUG_LOG_CAPACITY = 30;
   private static final int MAX_DEBUG_LOG_LINE_LENGTH = 200; // Saw one line while testing that was > 50k
+  // Requests and responses kept for DumpAnalysisServerTraceAction. Off by default because the messages include file contents,
+  // the action turns tracing on when invoked for the first time.
+  private static final int TRACE_CAPACITY = 0;
 
   @NotNull private final Project myProject;
   private boolean myInitializationOnServerStartupDone;
@@ -135,12 +157,20 @@ public final class DartAnalysisServerService implements Disposable {
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new THashMap<>();
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new THashSet<>();
+  // document changes that happened after the overlaid content was sent to the server, key is system-independent file path
+  private final Map<String, OverlayDeltas> myFilePathToOverlayDeltas = new THashMap<>();
   private final Alarm myUpdateFilesAlarm;
 
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
   @NotNull private final Queue<SearchResultsSet> mySearchResultSets = new LinkedList<>();
 
+  // requests sent by *Async() methods that haven't got a response yet; identical requests share the same future
+  @NotNull private final Map<AsyncRequestKey, CompletableFuture<?>> myAsyncRequests = new ConcurrentHashMap<>();
+  // search id -> results collected so far for searches started by search_findElementReferencesAsync()
+  @NotNull private final Map<String, AsyncSearchResults> myAsyncSearches = new ConcurrentHashMap<>();
+
   @NotNull private final DartServerData myServerData;
+  @NotNull private final DartResolveCacheWarmer myResolveCacheWarmer;
 
   private volatile boolean myAnalysisInProgress;
   private volatile boolean myPubListInProgress;
@@ -293,6 +323,16 @@ public final class DartAnalysisServerService implements Disposable {
 
     @Override
     public void computedSearchResults(String searchId, List<SearchResult> results, boolean last) {
+      final AsyncSearchResults asyncSearch = myAsyncSearches.get(searchId);
+      if (asyncSearch != null) {
+        asyncSearch.myResults.addAll(results);
+        if (last) {
+          myAsyncSearches.remove(searchId);
+          asyncSearch.myFuture.complete(Collections.unmodifiableList(asyncSearch.myResults));
+        }
+        return;
+      }
+
       synchronized (mySearchResultSets) {
         mySearchResultSets.add(new SearchResultsSet(searchId, results, last));
         mySearchResultSets.notifyAll();
@@ -520,6 +560,7 @@ public final class DartAnalysisServerService implements Disposable {
     myProject = project;
     myRootsHandler = new DartServerRootsHandler(project);
     myServerData = new DartServerData(this);
+    myResolveCacheWarmer = new DartResolveCacheWarmer(this);
     myUpdateFilesAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
     myShowServerProgressAlarm = new Alarm(this);
     myServerErrorHandler = new DartAnalysisServerErrorHandler(project);
@@ -581,6 +622,31 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
+  /**
+   * Round-trip latencies, notification sizes and the trace of the last requests and responses of the running server.
+   */
+  @Nullable
+  public AnalysisServerMetrics getServerMetrics() {
+    final RemoteAnalysisServerImpl server = myServer;
+    return server == null ? null : server.getMetrics();
+  }
+
+  /**
+   * Human-readable summary of {@link #getServerMetrics()}, the request queue and the response stream throughput,
+   * or {@code null} if the server is not running.
+   */
+  @Nullable
+  public String getServerMetricsReport() {
+    final RemoteAnalysisServerImpl server = myServer;
+    final StdioServerSocket socket = myServerSocket;
+    if (server == null || socket == null) return null;
+
+    return server.getMetrics() +
+           "Request queue size: " + socket.getRequestQueueSize() + ", max " + socket.getMaxRequestQueueSize() + "\n" +
+           "Response stream: " + socket.getResponseStreamMetrics() + "\n" +
+           "Retained analysis results: " + myServerData.getRetainedDataReport() + "\n";
+  }
+
   @SuppressWarnings("unused") // for Flutter plugin
   public void addQuickAssistIntentionListener(@NotNull DartQuickAssistIntentionListener listener) {
     if (!myQuickAssistIntentionListeners.contains(listener)) {
@@ -666,6 +732,7 @@ public final class DartAnalysisServerService implements Disposable {
 
         if (isLocalAnalyzableFile(file)) {
           updateVisibleFiles();
+          myResolveCacheWarmer.fileOpened(file);
         }
       }
 
@@ -686,6 +753,7 @@ public final class DartAnalysisServerService implements Disposable {
           // file could be opened in more than one editor, so this check is needed
           if (FileEditorManager.getInstance(myProject).getSelectedEditor(file) == null) {
             myServerData.onFileClosed(file);
+            myResolveCacheWarmer.fileClosed(file);
           }
 
           updateVisibleFiles();
@@ -717,6 +785,26 @@ public final class DartAnalysisServerService implements Disposable {
         myUpdateFilesAlarm.cancelAllRequests();
         myUpdateFilesAlarm.addRequest(DartAnalysisServerService.this::updateFilesContent, UPDATE_FILES_TIMEOUT);
       }
+
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        if (myServer == null || !Registry.is("dart.server.incremental.overlays", true)) return;
+
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
+        if (!isLocalAnalyzableFile(file)) return;
+
+        synchronized (myLock) {
+          // deltas make sense only if the server already has some overlaid content for this file
+          if (!myFilePathWithOverlaidContentToTimestamp.containsKey(file.getPath())) return;
+
+          OverlayDeltas deltas = myFilePathToOverlayDeltas.get(file.getPath());
+          if (deltas == null) {
+            deltas = new OverlayDeltas(e.getOldTimeStamp());
+            myFilePathToOverlayDeltas.put(file.getPath(), deltas);
+          }
+          deltas.addEdit(e);
+        }
+      }
     };
 
     EditorFactory.getInstance().getEventMulticaster().addDocumentListener(documentListener, this);
@@ -756,20 +844,71 @@ public final class DartAnalysisServerService implements Disposable {
     return myServerData.getAvailableSuggestionSet(id);
   }
 
+  @Nullable
+  public DartSuggestionSetIndex getAvailableSuggestionSetIndex(int id) {
+    return myServerData.getAvailableSuggestionSetIndex(id);
+  }
+
   @Nullable
   public Map<String, Map<String, Set<String>>> getExistingImports(@Nullable String filePathSD) {
     return myServerData.getExistingImports(filePathSD);
   }
 
+  @Nullable
+  public DartSuggestionSetIndex.ExistingImports getExistingImportsIndex(@Nullable String filePathSD) {
+    return myServerData.getExistingImportsIndex(filePathSD);
+  }
+
   @NotNull
   public List<DartServerData.DartError> getErrors(@NotNull final VirtualFile file) {
     return myServerData.getErrors(file);
   }
 
+  /**
+   * Only the errors of the files shown in editors are kept in full, so this method blocks while the errors of the other files in
+   * {@code scope} are requested from the server, all at once. Use {@link #hasErrors(SearchScope)} if only their presence matters.
+   */
   public List<DartServerData.DartError> getErrors(@NotNull final SearchScope scope) {
     return myServerData.getErrors(scope);
   }
 
+  /**
+   * @return {@code true} if there are errors with the ERROR severity in {@code scope}
+   */
+  public boolean hasErrors(@NotNull final SearchScope scope) {
+    return myServerData.hasErrors(scope);
+  }
+
+  /**
+   * @return {@code true} if there are errors with the WARNING severity in {@code scope}
+   */
+  public boolean hasWarnings(@NotNull final SearchScope scope) {
+    return myServerData.hasWarnings(scope);
+  }
+
+  /**
+   * Requests the errors of all files that have them and passes them to {@link DartProblemsView}, which doesn't keep errors while
+   * it is hidden.
+   */
+  public void refreshProblemsView() {
+    final List<String> filePaths = new ArrayList<>();
+    synchronized (myFilePathsWithErrors) {
+      myFilePathToErrorsHash.forEachKey(filePaths::add);
+    }
+
+    final DartProblemsView problemsView = DartProblemsView.getInstance(myProject);
+    for (String filePath : filePaths) {
+      final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+      if (file == null) continue;
+
+      analysis_getErrorsAsync(file).thenAccept(errors -> {
+        if (errors != null) {
+          problemsView.updateErrorsForFile(filePath, errors);
+        }
+      });
+    }
+  }
+
   @NotNull
   public List<DartServerData.DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
     return myServerData.getHighlight(file);
@@ -802,6 +941,14 @@ public final class DartAnalysisServerService implements Disposable {
     return myServerData.getOutline(file);
   }
 
+  void onNavigationComputed(@NotNull final VirtualFile file) {
+    myResolveCacheWarmer.navigationComputed(file);
+  }
+
+  void onPsiCachesDropped() {
+    myResolveCacheWarmer.psiCachesDropped();
+  }
+
   void updateCurrentFile() {
     GuiUtils.invokeLaterIfNeeded(() -> DartProblemsView.getInstance(myProject).setCurrentFile(getCurrentOpenFile()),
                                  ModalityState.NON_MODAL,
@@ -836,6 +983,7 @@ public final class DartAnalysisServerService implements Disposable {
       if (!Comparing.haveEqualElements(myVisibleFiles, newVisibleFiles)) {
         myVisibleFiles.clear();
         myVisibleFiles.addAll(newVisibleFiles);
+        myServerData.setVisibleFiles(ContainerUtil.map2Set(newVisibleFiles, FileUtil::toSystemIndependentName));
         analysis_setPriorityFiles();
         analysis_setSubscriptions();
       }
@@ -873,8 +1021,6 @@ public final class DartAnalysisServerService implements Disposable {
   }
 
   private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
-
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -883,6 +1029,7 @@ public final class DartAnalysisServerService implements Disposable {
     myUpdateFilesAlarm.cancelAllRequests();
 
     final Map<String, Object> filesToUpdate = new THashMap<>();
+    final Set<String> filePathsWithDeltas = new THashSet<>();
     ApplicationManager.getApplication().assertReadAccessAllowed();
     synchronized (myLock) {
       final Set<String> oldTrackedFiles = new THashSet<>(myFilePathWithOverlaidContentToTimestamp.keySet());
@@ -901,8 +1048,17 @@ public final class DartAnalysisServerService implements Disposable {
           oldTrackedFiles.remove(file.getPath());
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
+          final OverlayDeltas deltas = myFilePathToOverlayDeltas.remove(file.getPath());
           if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+            final Object overlay;
+            if (deltas != null && deltas.isApplicable(oldTimestamp, document)) {
+              overlay = new ChangeContentOverlay(deltas.getEdits());
+              filePathsWithDeltas.add(file.getPath());
+            }
+            else {
+              overlay = new AddContentOverlay(document.getText());
+            }
+            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), overlay);
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
           }
         }
@@ -912,6 +1068,7 @@ public final class DartAnalysisServerService implements Disposable {
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
         LOG.assertTrue(removed != null, oldPath);
+        myFilePathToOverlayDeltas.remove(oldPath);
         filesToUpdate.put(FileUtil.toSystemDependentName(oldPath), new RemoveContentOverlay());
       }
 
@@ -931,8 +1088,40 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     if (!filesToUpdate.isEmpty()) {
-      server.analysis_updateContent(filesToUpdate, myServerData::onFilesContentUpdated);
+      server.analysis_updateContent(filesToUpdate, new UpdateContentConsumer() {
+        @Override
+        public void onResponse() {
+          myServerData.onFilesContentUpdated();
+        }
+
+        @Override
+        public void onError(RequestError requestError) {
+          myServerData.onFilesContentUpdated();
+          onUpdateContentError(filePathsWithDeltas, requestError);
+        }
+      });
+    }
+  }
+
+  /**
+   * If the server rejects deltas, e.g. because they don't match its copy of the file (INVALID_OVERLAY_CHANGE), then its overlaid content
+   * of the files sent as deltas can't be trusted any more, so the whole text of these documents is sent again.
+   */
+  private void onUpdateContentError(@NotNull final Set<String> filePathsWithDeltas, @NotNull final RequestError requestError) {
+    LOG.info("analysis_updateContent failed: " + requestError.getCode() + ": " + requestError.getMessage());
+    if (filePathsWithDeltas.isEmpty()) return;
+
+    synchronized (myLock) {
+      for (String filePath : filePathsWithDeltas) {
+        if (myFilePathWithOverlaidContentToTimestamp.containsKey(filePath)) {
+          myFilePathWithOverlaidContentToTimestamp.put(filePath, OUT_OF_SYNC_OVERLAY_TIMESTAMP);
+          myFilePathToOverlayDeltas.remove(filePath);
+        }
+      }
     }
+
+    myUpdateFilesAlarm.cancelAllRequests();
+    myUpdateFilesAlarm.addRequest(this::updateFilesContent, 0);
   }
 
   public void ensureAnalysisRootsUpToDate() {
@@ -1043,6 +1232,75 @@ public final class DartAnalysisServerService implements Disposable {
     return result;
   }
 
+  /**
+   * Errors of a file for which only a summary is kept in {@link DartServerData}. TODOs are filtered out, like in the notifications.
+   *
+   * @return {@code null} if the request failed or timed out
+   */
+  @Nullable
+  List<AnalysisError> analysis_getErrors(@NotNull final VirtualFile file) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return null;
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final Ref<List<AnalysisError>> resultRef = Ref.create();
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    server.analysis_getErrors(filePath, new GetErrorsConsumer() {
+      @Override
+      public void computedErrors(AnalysisError[] errors) {
+        resultRef.set(withoutTodos(errors));
+        latch.countDown();
+      }
+
+      @Override
+      public void onError(RequestError error) {
+        logError("analysis_getErrors()", filePath, error);
+        latch.countDown();
+      }
+    });
+
+    awaitForLatchCheckingCanceled(server, latch, GET_ERRORS_TIMEOUT);
+
+    if (latch.getCount() > 0) {
+      logTookTooLongMessage("analysis_getErrors", GET_ERRORS_TIMEOUT, filePath);
+    }
+    return resultRef.get();
+  }
+
+  /**
+   * Same as {@link #analysis_getErrors(VirtualFile)} but doesn't block, the future is completed with {@code null} on failure.
+   */
+  @NotNull
+  CompletableFuture<List<AnalysisError>> analysis_getErrorsAsync(@NotNull final VirtualFile file) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    return sendAsyncRequest("analysis_getErrors", file, 0, 0, GET_ERRORS_TIMEOUT, null, future ->
+      server.analysis_getErrors(filePath, new GetErrorsConsumer() {
+        @Override
+        public void computedErrors(AnalysisError[] errors) {
+          future.complete(withoutTodos(errors));
+        }
+
+        @Override
+        public void onError(RequestError error) {
+          logError("analysis_getErrors()", filePath, error);
+          future.complete(null);
+        }
+      }));
+  }
+
+  @NotNull
+  private static List<AnalysisError> withoutTodos(final AnalysisError @NotNull [] errors) {
+    return ContainerUtil.filter(errors, error -> !AnalysisErrorType.TODO.equals(error.getType()));
+  }
+
   @Nullable
   public List<DartServerData.DartNavigationRegion> analysis_getNavigation(@NotNull final VirtualFile file,
                                                                           final int _offset,
@@ -1062,14 +1320,7 @@ public final class DartAnalysisServerService implements Disposable {
     server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
       @Override
       public void computedNavigation(final List<NavigationRegion> regions) {
-        final List<DartServerData.DartNavigationRegion> dartRegions = new ArrayList<>(regions.size());
-        for (NavigationRegion region : regions) {
-          if (region.getLength() > 0) {
-            dartRegions.add(DartServerData.createDartNavigationRegion(DartAnalysisServerService.this, file, region));
-          }
-        }
-
-        resultRef.set(dartRegions);
+        resultRef.set(DartServerData.createDartNavigationRegions(DartAnalysisServerService.this, file, regions));
         latch.countDown();
       }
 
@@ -1131,6 +1382,308 @@ public final class DartAnalysisServerService implements Disposable {
     return results;
   }
 
+  /**
+   * Non-blocking version of {@link #analysis_getHover(VirtualFile, int)}.
+   * Concurrent requests for the same file state and offset share one server round trip.
+   */
+  @NotNull
+  public CompletableFuture<List<HoverInformation>> analysis_getHoverAsync(@NotNull final VirtualFile file, final int _offset) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    return sendAsyncRequest("analysis_getHover", file, offset, 0, GET_HOVER_TIMEOUT, Collections.emptyList(), future ->
+      server.analysis_getHover(filePath, offset, new GetHoverConsumer() {
+        @Override
+        public void computedHovers(HoverInformation[] hovers) {
+          future.complete(Collections.unmodifiableList(Arrays.asList(hovers)));
+        }
+
+        @Override
+        public void onError(RequestError error) {
+          logError("analysis_getHover()", filePath, error);
+          future.complete(Collections.emptyList());
+        }
+      }));
+  }
+
+  /**
+   * Non-blocking version of {@link #analysis_getNavigation(VirtualFile, int, int)}, completed with {@code null} in case of error or timeout.
+   * Concurrent requests for the same file state and range share one server round trip.
+   */
+  @NotNull
+  public CompletableFuture<List<DartServerData.DartNavigationRegion>> analysis_getNavigationAsync(@NotNull final VirtualFile file,
+                                                                                                 final int _offset,
+                                                                                                 final int length) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    return sendAsyncRequest("analysis_getNavigation", file, offset, length, GET_NAVIGATION_TIMEOUT, null, future ->
+      server.analysis_getNavigation(filePath, offset, length, new GetNavigationConsumer() {
+        @Override
+        public void computedNavigation(final List<NavigationRegion> regions) {
+          future.complete(Collections.unmodifiableList(DartServerData.createDartNavigationRegions(DartAnalysisServerService.this, file, regions)));
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          if (RequestErrorCode.GET_NAVIGATION_INVALID_FILE.equals(error.getCode())) {
+            LOG.info(getShortErrorMessage("analysis_getNavigation()", filePath, error));
+          }
+          else {
+            logError("analysis_getNavigation()", filePath, error);
+          }
+          future.complete(null);
+        }
+      }));
+  }
+
+  /**
+   * Non-blocking version of {@link #edit_getAssists(VirtualFile, int, int)}.
+   * Concurrent requests for the same file state and range share one server round trip.
+   */
+  @NotNull
+  public CompletableFuture<List<SourceChange>> edit_getAssistsAsync(@NotNull final VirtualFile file, final int _offset, final int _length) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    final int length = getOriginalOffset(file, _offset + _length) - offset;
+    final long timeout = ApplicationManager.getApplication().isDispatchThread() ? GET_ASSISTS_TIMEOUT_EDT : GET_ASSISTS_TIMEOUT;
+    return sendAsyncRequest("edit_getAssists", file, offset, length, timeout, Collections.emptyList(), future ->
+      server.edit_getAssists(filePath, offset, length, new GetAssistsConsumer() {
+        @Override
+        public void computedSourceChanges(List<SourceChange> sourceChanges) {
+          future.complete(Collections.unmodifiableList(sourceChanges));
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          logError("edit_getAssists()", filePath, error);
+          future.complete(Collections.emptyList());
+        }
+      }));
+  }
+
+  /**
+   * Non-blocking version of {@link #askForFixesAndWaitABitIfReceivedQuickly(VirtualFile, int, Consumer)}, completed with {@code null} in case of error.
+   * It isn't completed on timeout, so that the fixes that come late still reach the callers that keep waiting for them.
+   * Concurrent requests for the same file state and offset share one server round trip.
+   */
+  @NotNull
+  public CompletableFuture<List<AnalysisErrorFixes>> edit_getFixesAsync(@NotNull final VirtualFile file, final int _offset) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    return sendAsyncRequest("edit_getFixes", file, offset, 0, -1, null, future ->
+      server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
+        @Override
+        public void computedFixes(final List<AnalysisErrorFixes> fixes) {
+          future.complete(Collections.unmodifiableList(fixes));
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          logError("edit_getFixes()", filePath, error);
+          future.complete(null);
+        }
+      }));
+  }
+
+  /**
+   * Non-blocking version of {@link #search_getTypeHierarchy(VirtualFile, int, boolean)}.
+   * Concurrent requests for the same file state and offset share one server round trip.
+   */
+  @NotNull
+  public CompletableFuture<List<TypeHierarchyItem>> search_getTypeHierarchyAsync(@NotNull final VirtualFile file,
+                                                                                final int _offset,
+                                                                                final boolean superOnly) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    final String methodName = superOnly ? "search_getTypeHierarchy(superOnly)" : "search_getTypeHierarchy";
+    return sendAsyncRequest(methodName, file, offset, 0, GET_TYPE_HIERARCHY_TIMEOUT, Collections.emptyList(), future ->
+      server.search_getTypeHierarchy(filePath, offset, superOnly, new GetTypeHierarchyConsumer() {
+        @Override
+        public void computedHierarchy(List<TypeHierarchyItem> hierarchyItems) {
+          future.complete(Collections.unmodifiableList(hierarchyItems));
+        }
+
+        @Override
+        public void onError(RequestError error) {
+          logError("search_getTypeHierarchy()", filePath, error);
+          future.complete(Collections.emptyList());
+        }
+      }));
+  }
+
+  /**
+   * Non-blocking version of {@link #search_findElementReferences(VirtualFile, int, Consumer)} that is completed when all results are received.
+   * The timeout applies only to the initial server response, search itself may take longer.
+   * Concurrent requests for the same file state and offset share one search.
+   */
+  @NotNull
+  public CompletableFuture<List<SearchResult>> search_findElementReferencesAsync(@NotNull final VirtualFile file, final int _offset) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int offset = getOriginalOffset(file, _offset);
+    return sendAsyncRequest("search_findElementReferences", file, offset, 0, -1, Collections.emptyList(), future -> {
+      final AtomicBoolean searchStarted = new AtomicBoolean();
+      server.search_findElementReferences(filePath, offset, true, new FindElementReferencesConsumer() {
+        @Override
+        public void computedElementReferences(String searchId, Element element) {
+          searchStarted.set(true);
+          if (searchId == null) {
+            future.complete(Collections.emptyList());
+          }
+          else {
+            // search results notifications are handled in the same thread after this response, so there's no race here
+            myAsyncSearches.put(searchId, new AsyncSearchResults(future));
+          }
+        }
+
+        @Override
+        public void onError(RequestError error) {
+          LOG.info(getShortErrorMessage("search_findElementReferences()", filePath, error));
+          future.complete(Collections.emptyList());
+        }
+      });
+
+      scheduleAsyncRequestTimeout(() -> {
+        if (!searchStarted.get() && future.complete(Collections.emptyList())) {
+          logTookTooLongMessage("search_findElementReferences", FIND_ELEMENT_REFERENCES_TIMEOUT, filePath + "@" + offset);
+        }
+      }, FIND_ELEMENT_REFERENCES_TIMEOUT);
+    });
+  }
+
+  /**
+   * Sends the request unless an identical one (same method, file, file modification stamp, offset and length) is already in flight.
+   * Callers get their own dependent future, so cancelling it doesn't affect other callers.
+   * If there's no response in {@code timeout} ms then the future is completed with {@code resultOnTimeout}.
+   * If the request can't be sent then the future is completed exceptionally.
+   * All in-flight futures are cancelled when the server stops.
+   */
+  @NotNull
+  private <T> CompletableFuture<T> sendAsyncRequest(@NonNls @NotNull final String methodName,
+                                                    @NotNull final VirtualFile file,
+                                                    final int offset,
+                                                    final int length,
+                                                    final long timeout,
+                                                    @Nullable final T resultOnTimeout,
+                                                    @NotNull final Consumer<? super CompletableFuture<T>> requestSender) {
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    final long modificationStamp = document != null ? document.getModificationStamp() : file.getModificationStamp();
+    final AsyncRequestKey key = new AsyncRequestKey(methodName, file.getPath(), offset, length, modificationStamp);
+
+    final CompletableFuture<T> newFuture = new CompletableFuture<>();
+    //noinspection unchecked
+    final CompletableFuture<T> inFlightFuture = (CompletableFuture<T>)myAsyncRequests.putIfAbsent(key, newFuture);
+    if (inFlightFuture != null) {
+      return inFlightFuture.thenApply(Function.identity());
+    }
+
+    newFuture.whenComplete((result, throwable) -> myAsyncRequests.remove(key, newFuture));
+
+    // scheduled before sending, so that the future is completed even if the sender fails half-way
+    if (timeout != -1) {
+      scheduleAsyncRequestTimeout(() -> {
+        if (newFuture.complete(resultOnTimeout)) {
+          logTookTooLongMessage(methodName, timeout, FileUtil.toSystemDependentName(file.getPath()));
+        }
+      }, timeout);
+    }
+
+    try {
+      requestSender.consume(newFuture);
+    }
+    catch (RuntimeException e) {
+      LOG.warn("Failed to send " + methodName + " request", e);
+      newFuture.completeExceptionally(e);
+    }
+
+    return newFuture.thenApply(Function.identity());
+  }
+
+  private static void scheduleAsyncRequestTimeout(@NotNull final Runnable runnable, long timeoutInMillis) {
+    if (ApplicationManager.getApplication().isUnitTestMode()) {
+      timeoutInMillis *= TESTS_TIMEOUT_COEFF;
+    }
+    AppExecutorUtil.getAppScheduledExecutorService().schedule(runnable, timeoutInMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Waits for a future returned by one of the *Async() methods, checking for cancellation of the current progress.
+   * If the progress is cancelled then only the given future is cancelled, the request is still answered to the other callers.
+   *
+   * @return the result, or {@code resultIfNotDone} if the future failed or was cancelled
+   */
+  public static <T> T awaitAsyncResult(@NotNull final CompletableFuture<T> future, @Nullable final T resultIfNotDone) {
+    if (!awaitAsyncResult(future, -1)) {
+      return resultIfNotDone;
+    }
+    try {
+      return future.getNow(resultIfNotDone);
+    }
+    catch (CancellationException | CompletionException e) {
+      return resultIfNotDone;
+    }
+  }
+
+  /**
+   * @return {@code false} if the future is not completed in {@code timeoutInMillis} ms, -1 means no timeout
+   */
+  private static boolean awaitAsyncResult(@NotNull final CompletableFuture<?> future, long timeoutInMillis) {
+    if (ApplicationManager.getApplication().isUnitTestMode() && timeoutInMillis != -1) {
+      timeoutInMillis *= TESTS_TIMEOUT_COEFF;
+    }
+
+    final long startTime = System.currentTimeMillis();
+    try {
+      while (true) {
+        ProgressManager.checkCanceled();
+        if (timeoutInMillis != -1 && System.currentTimeMillis() > startTime + timeoutInMillis) {
+          return false;
+        }
+        try {
+          Uninterruptibles.getUninterruptibly(future, CHECK_CANCELLED_PERIOD, TimeUnit.MILLISECONDS);
+          return true;
+        }
+        catch (TimeoutException ignored) {
+        }
+        catch (ExecutionException | CancellationException e) {
+          return true;
+        }
+      }
+    }
+    catch (ProcessCanceledException e) {
+      future.cancel(false);
+      throw e;
+    }
+  }
+
   public boolean edit_isPostfixCompletionApplicable(VirtualFile file, int _offset, String key) {
     final AnalysisServer server = myServer;
     if (server == null) {
@@ -1278,34 +1831,16 @@ public final class DartAnalysisServerService implements Disposable {
   public void askForFixesAndWaitABitIfReceivedQuickly(@NotNull final VirtualFile file,
                                                       final int _offset,
                                                       @NotNull final Consumer<? super List<AnalysisErrorFixes>> consumer) {
-    final AnalysisServer server = myServer;
-    if (server == null) {
-      return;
-    }
-
-    final String filePath = FileUtil.toSystemDependentName(file.getPath());
-    final CountDownLatch latch = new CountDownLatch(1);
-    final int offset = getOriginalOffset(file, _offset);
-    server.edit_getFixes(filePath, offset, new GetFixesConsumer() {
-      @Override
-      public void computedFixes(final List<AnalysisErrorFixes> fixes) {
+    final CompletableFuture<List<AnalysisErrorFixes>> future = edit_getFixesAsync(file, _offset);
+    final CompletableFuture<Void> consumed = future.thenAccept(fixes -> {
+      if (fixes != null) {
         consumer.consume(fixes);
-        latch.countDown();
-      }
-
-      @Override
-      public void onError(final RequestError error) {
-        logError("edit_getFixes()", filePath, error);
-        latch.countDown();
       }
     });
 
     final long timeout = ApplicationManager.getApplication().isDispatchThread() ? GET_FIXES_TIMEOUT_EDT : GET_FIXES_TIMEOUT;
-
-    awaitForLatchCheckingCanceled(server, latch, timeout);
-
-    if (latch.getCount() > 0) {
-      logTookTooLongMessage("edit_getFixes", timeout, filePath);
+    if (!awaitAsyncResult(consumed, timeout)) {
+      logTookTooLongMessage("edit_getFixes", timeout, FileUtil.toSystemDependentName(file.getPath()));
     }
   }
 
@@ -1564,6 +2099,45 @@ public final class DartAnalysisServerService implements Disposable {
     return resultRef.get();
   }
 
+  /**
+   * Non-blocking version of {@link #edit_format(VirtualFile, int, int, int)}, completed with {@code null} in case of error or timeout,
+   * so that many files can be formatted at once. The requests are queued behind the interactive ones, such as completion or hover.
+   */
+  @NotNull
+  public CompletableFuture<FormatResult> edit_formatAsync(@NotNull final VirtualFile file,
+                                                          final int _selectionOffset,
+                                                          final int _selectionLength,
+                                                          final int lineLength) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final String filePath = FileUtil.toSystemDependentName(file.getPath());
+    final int selectionOffset = getOriginalOffset(file, _selectionOffset);
+    final int selectionLength = getOriginalOffset(file, _selectionOffset + _selectionLength) - selectionOffset;
+    // requests with different line lengths get different edits
+    final String methodName = "edit_format(lineLength=" + lineLength + ")";
+    return sendAsyncRequest(methodName, file, selectionOffset, selectionLength, EDIT_FORMAT_TIMEOUT, null, future ->
+      server.edit_formatInBackground(filePath, selectionOffset, selectionLength, lineLength, new FormatConsumer() {
+        @Override
+        public void computedFormat(final List<SourceEdit> edits, final int selectionOffset, final int selectionLength) {
+          future.complete(new FormatResult(edits, selectionOffset, selectionLength));
+        }
+
+        @Override
+        public void onError(final RequestError error) {
+          if (RequestErrorCode.FORMAT_WITH_ERRORS.equals(error.getCode()) || RequestErrorCode.FORMAT_INVALID_FILE.equals(error.getCode())) {
+            LOG.info(getShortErrorMessage("edit_format()", filePath, error));
+          }
+          else {
+            logError("edit_format()", filePath, error);
+          }
+          future.complete(null);
+        }
+      }));
+  }
+
   @Nullable
   public List<ImportedElements> analysis_getImportedElements(@NotNull final VirtualFile file,
                                                              final int _selectionOffset,
@@ -1926,6 +2500,34 @@ public final class DartAnalysisServerService implements Disposable {
     return resultRef.get();
   }
 
+  /**
+   * Non-blocking version of {@link #execution_mapUri} for mapping URIs to files, so that many requests can be in flight at once.
+   * The future is completed with a system-independent file path, or with {@code null} if the URI can't be mapped.
+   * It's up to the caller to decide how long to wait.
+   */
+  @NotNull
+  public CompletableFuture<String> execution_mapUriAsync(@NotNull final String _id, @NotNull final String _uri) {
+    final AnalysisServer server = myServer;
+    if (server == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    server.execution_mapUri(_id, null, _uri, new MapUriConsumer() {
+      @Override
+      public void computedFileOrUri(final String file, final String uri) {
+        future.complete(file != null ? FileUtil.toSystemIndependentName(file) : null);
+      }
+
+      @Override
+      public void onError(final RequestError error) {
+        LOG.warn("execution_mapUri(" + _id + ", null, " + _uri + ") returned error " + error.getCode() + ": " + error.getMessage());
+        future.complete(null);
+      }
+    });
+    return future;
+  }
+
   private void startServer(@NotNull final DartSdk sdk) {
     if (DartPubActionBase.isInProgress()) return; // DartPubActionBase will start the server itself when finished
 
@@ -2003,8 +2605,10 @@ public final class DartAnalysisServerService implements Disposable {
                               debugStream);
       myServerSocket.setClientId(getClientId());
       myServerSocket.setClientVersion(getClientVersion());
+      myServerSocket.setStreamingResponseReader(Registry.is("dart.server.streaming.response.reader", false));
 
       final RemoteAnalysisServerImpl startedServer = new RemoteAnalysisServerImpl(myServerSocket);
+      startedServer.getMetrics().setTraceCapacity(Registry.intValue("dart.server.trace.capacity", TRACE_CAPACITY));
 
       try {
         startedServer.start();
@@ -2132,6 +2736,10 @@ public final class DartAnalysisServerService implements Disposable {
           myServer.removeResponseListener(listener);
         }
 
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Analysis server metrics:\n" + getServerMetricsReport());
+        }
+
         myServer.server_shutdown();
 
         long startTime = System.currentTimeMillis();
@@ -2151,6 +2759,8 @@ public final class DartAnalysisServerService implements Disposable {
       myServer = null;
       mySdkHome = null;
       myFilePathWithOverlaidContentToTimestamp.clear();
+      myFilePathToOverlayDeltas.clear();
+      cancelAsyncRequests();
       myVisibleFiles.clear();
       myChangedDocuments.clear();
       myServerData.clearData();
@@ -2162,6 +2772,33 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
+  private void cancelAsyncRequests() {
+    for (CompletableFuture<?> future : myAsyncRequests.values()) {
+      future.cancel(false);
+    }
+    myAsyncRequests.clear();
+
+    for (AsyncSearchResults search : myAsyncSearches.values()) {
+      search.myFuture.cancel(false);
+    }
+    myAsyncSearches.clear();
+  }
+
+  /**
+   * Lets tests feed recorded server messages to this service without running the server, see {@code ReplayServerSocket}.
+   */
+  @NotNull
+  AnalysisServerListener getAnalysisServerListener_TESTS_ONLY() {
+    assert ApplicationManager.getApplication().isUnitTestMode();
+    return myAnalysisServerListener;
+  }
+
+  @NotNull
+  DartServerData getServerData_TESTS_ONLY() {
+    assert ApplicationManager.getApplication().isUnitTestMode();
+    return myServerData;
+  }
+
   public void waitForAnalysisToComplete_TESTS_ONLY(@NotNull final VirtualFile file) {
     assert ApplicationManager.getApplication().isUnitTestMode();
 
@@ -2319,6 +2956,99 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
+  /**
+   * Document changes collected since the last time the overlaid content of the file was sent to the server.
+   * Sending them as {@link ChangeContentOverlay} is much cheaper than sending the whole document text for large files.
+   */
+  static class OverlayDeltas {
+    private final long myBaseTimestamp;
+    private long myLastTimestamp;
+    private boolean myBroken;
+    private int myReplacementLength;
+    @NotNull private final List<SourceEdit> myEdits = new ArrayList<>();
+
+    OverlayDeltas(long baseTimestamp) {
+      myBaseTimestamp = baseTimestamp;
+      myLastTimestamp = baseTimestamp;
+    }
+
+    void addEdit(@NotNull DocumentEvent e) {
+      if (myBroken) return;
+
+      // a change that we haven't been notified about happened in between, deltas can't be trusted any more
+      if (e.getOldTimeStamp() != myLastTimestamp || myEdits.size() >= MAX_OVERLAY_DELTA_EDITS) {
+        myBroken = true;
+        myEdits.clear();
+        return;
+      }
+
+      final String replacement = e.getNewFragment().toString();
+      myEdits.add(new SourceEdit(e.getOffset(), e.getOldLength(), replacement, null));
+      myReplacementLength += replacement.length();
+      myLastTimestamp = e.getDocument().getModificationStamp();
+    }
+
+    @NotNull
+    List<SourceEdit> getEdits() {
+      return myEdits;
+    }
+
+    /**
+     * Deltas can be sent only if they start exactly at the content that the server has and end exactly at the current document state.
+     * If the deltas are bigger than the document itself then there's no point in sending them.
+     */
+    boolean isApplicable(@Nullable Long overlaidContentTimestamp, @NotNull Document document) {
+      return !myBroken &&
+             !myEdits.isEmpty() &&
+             overlaidContentTimestamp != null &&
+             overlaidContentTimestamp == myBaseTimestamp &&
+             myLastTimestamp == document.getModificationStamp() &&
+             myReplacementLength < document.getTextLength();
+    }
+  }
+
+  private static final class AsyncRequestKey {
+    @NotNull private final String myMethodName;
+    @NotNull private final String myFilePath;
+    private final int myOffset;
+    private final int myLength;
+    private final long myModificationStamp;
+
+    AsyncRequestKey(@NotNull String methodName, @NotNull String filePath, int offset, int length, long modificationStamp) {
+      myMethodName = methodName;
+      myFilePath = filePath;
+      myOffset = offset;
+      myLength = length;
+      myModificationStamp = modificationStamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof AsyncRequestKey)) return false;
+      final AsyncRequestKey key = (AsyncRequestKey)o;
+      return myOffset == key.myOffset &&
+             myLength == key.myLength &&
+             myModificationStamp == key.myModificationStamp &&
+             myMethodName.equals(key.myMethodName) &&
+             myFilePath.equals(key.myFilePath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myMethodName, myFilePath, myOffset, myLength, myModificationStamp);
+    }
+  }
+
+  private static final class AsyncSearchResults {
+    @NotNull private final CompletableFuture<List<SearchResult>> myFuture;
+    @NotNull private final List<SearchResult> myResults = new ArrayList<>();
+
+    AsyncSearchResults(@NotNull CompletableFuture<List<SearchResult>> future) {
+      myFuture = future;
+    }
+  }
+
   /**
    * A set of {@link SearchResult}s.
    */
@@ -0,0 +1,56 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+final class DartHighlightRegionList extends DartPackedRegionList<DartServerData.DartHighlightRegion> {
+  private final String[] myTypes;
+
+  private DartHighlightRegionList(int capacity) {
+    super(capacity);
+    myTypes = new String[capacity];
+  }
+
+  @NotNull
+  static DartHighlightRegionList create(@NotNull DartAnalysisServerService service,
+                                        @Nullable VirtualFile file,
+                                        @NotNull List<? extends HighlightRegion> regions) {
+    final List<HighlightRegion> sortedRegions = new ArrayList<>(regions);
+    sortedRegions.sort(Comparator.comparingInt(HighlightRegion::getOffset));
+
+    final DartHighlightRegionList result = new DartHighlightRegionList(sortedRegions.size());
+    for (HighlightRegion region : sortedRegions) {
+      if (region.getLength() > 0) {
+        final int offset = service.getConvertedOffset(file, region.getOffset());
+        final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+        final int index = result.addRegion(offset, length);
+        result.myTypes[index] = region.getType().intern();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public DartServerData.DartHighlightRegion get(int index) {
+    if (index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    return new DartServerData.DartHighlightRegion(myOffsets[index], myLengths[index], myTypes[index]);
+  }
+
+  @Override
+  long estimateRetainedSize() {
+    return super.estimateRetainedSize() + (long)Integer.BYTES * myTypes.length;
+  }
+
+  @Override
+  protected void moveRegion(int from, int to) {
+    super.moveRegion(from, to);
+    myTypes[to] = myTypes[from];
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import gnu.trove.TObjectIntHashMap;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+final class DartNavigationRegionList extends DartPackedRegionList<DartServerData.DartNavigationRegion> {
+  // targets of the region with index i are myTargets[myFirstTarget[i]] .. myTargets[myFirstTarget[i] + myTargetCount[i] - 1]
+  private final int[] myFirstTarget;
+  private final int[] myTargetCount;
+  @NotNull private final Targets myTargets;
+
+  private DartNavigationRegionList(int capacity, @NotNull Targets targets) {
+    super(capacity);
+    myFirstTarget = new int[capacity];
+    myTargetCount = new int[capacity];
+    myTargets = targets;
+  }
+
+  @NotNull
+  static DartNavigationRegionList create(@NotNull DartAnalysisServerService service,
+                                         @Nullable VirtualFile file,
+                                         @NotNull List<? extends NavigationRegion> regions) {
+    final List<NavigationRegion> sortedRegions = new ArrayList<>(regions.size());
+    int targetCount = 0;
+    for (NavigationRegion region : regions) {
+      if (region.getLength() > 0) {
+        sortedRegions.add(region);
+        targetCount += region.getTargetObjects().size();
+      }
+    }
+    sortedRegions.sort(Comparator.comparingInt(NavigationRegion::getOffset));
+
+    final DartNavigationRegionList result = new DartNavigationRegionList(sortedRegions.size(), new Targets(targetCount));
+    for (NavigationRegion region : sortedRegions) {
+      final int offset = service.getConvertedOffset(file, region.getOffset());
+      final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+      final int index = result.addRegion(offset, length);
+      result.myFirstTarget[index] = result.myTargets.mySize;
+      result.myTargetCount[index] = region.getTargetObjects().size();
+      for (NavigationTarget target : region.getTargetObjects()) {
+        result.myTargets.add(target);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public DartServerData.DartNavigationRegion get(int index) {
+    if (index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+
+    final int count = myTargetCount[index];
+    final List<DartServerData.DartNavigationTarget> targets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      targets.add(new DartServerData.DartNavigationTarget(myTargets, myFirstTarget[index] + i));
+    }
+    return new DartServerData.DartNavigationRegion(myOffsets[index], myLengths[index], targets);
+  }
+
+  @Override
+  protected void moveRegion(int from, int to) {
+    super.moveRegion(from, to);
+    myFirstTarget[to] = myFirstTarget[from];
+    myTargetCount[to] = myTargetCount[from];
+  }
+
+  @Override
+  long estimateRetainedSize() {
+    return super.estimateRetainedSize() + 2L * Integer.BYTES * myFirstTarget.length + myTargets.estimateRetainedSize();
+  }
+
+  void onDocumentChanged(@NotNull String filePath, @NotNull DocumentEvent e) {
+    // may be we'd better delete target touched by editing?
+    myTargets.shiftTargetsInFile(filePath, e.getOffset(), e.getNewLength() - e.getOldLength());
+    updateDeletingTouched(e);
+  }
+
+  /**
+   * Navigation targets stored column-wise. Target files are stored as indices into the table of distinct file paths.
+   * Targets are never deleted, so {@link DartServerData.DartNavigationTarget} objects remain valid when regions are deleted.
+   */
+  static final class Targets {
+    private final int[] myFileIndices;
+    private final int[] myOriginalOffsets;
+    private final int[] myConvertedOffsets;
+    private final String[] myKinds;
+    private int mySize;
+
+    private String[] myFiles = ArrayUtil.EMPTY_STRING_ARRAY;
+    private final TObjectIntHashMap<String> myFileToIndex = new TObjectIntHashMap<>();
+
+    private Targets(int capacity) {
+      myFileIndices = new int[capacity];
+      myOriginalOffsets = new int[capacity];
+      myConvertedOffsets = new int[capacity];
+      myKinds = new String[capacity];
+    }
+
+    private void add(@NotNull NavigationTarget target) {
+      final String file = FileUtil.toSystemIndependentName(target.getFile().trim());
+      int fileIndex = myFileToIndex.get(file);
+      if (fileIndex == 0) {
+        // TObjectIntHashMap returns 0 for absent keys, so indices are stored 1-based
+        myFiles = ArrayUtil.append(myFiles, file.intern());
+        fileIndex = myFiles.length;
+        myFileToIndex.put(file, fileIndex);
+      }
+
+      myFileIndices[mySize] = fileIndex - 1;
+      myOriginalOffsets[mySize] = target.getOffset();
+      myConvertedOffsets[mySize] = -1;
+      myKinds[mySize] = target.getKind().intern();
+      mySize++;
+    }
+
+    private void shiftTargetsInFile(@NotNull String filePath, int eventOffset, int deltaLength) {
+      final int fileIndex = myFileToIndex.get(filePath) - 1;
+      if (fileIndex < 0) return;
+
+      for (int i = 0; i < mySize; i++) {
+        if (myFileIndices[i] == fileIndex && myConvertedOffsets[i] >= eventOffset) {
+          myConvertedOffsets[i] += deltaLength;
+        }
+      }
+    }
+
+    @NotNull
+    String getFile(int index) {
+      return myFiles[myFileIndices[index]];
+    }
+
+    int getOriginalOffset(int index) {
+      return myOriginalOffsets[index];
+    }
+
+    int getConvertedOffset(int index) {
+      return myConvertedOffsets[index];
+    }
+
+    void setConvertedOffset(int index, int convertedOffset) {
+      myConvertedOffsets[index] = convertedOffset;
+    }
+
+    @NotNull
+    String getKind(int index) {
+      return myKinds[index];
+    }
+
+    long estimateRetainedSize() {
+      // file indices, offsets and references to interned kinds and file paths
+      return 4L * Integer.BYTES * myFileIndices.length + (long)Integer.BYTES * myFiles.length;
+    }
+  }
+}
@@ -0,0 +1,181 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Regions sorted by offset and stored in parallel primitive arrays instead of one object per region.
+ * {@link #get(int)} creates a snapshot object of the region, searches should use {@link #getOffset(int)} and {@link #getLength(int)}.
+ * <p>
+ * Regions are kept sorted by offset on document changes, so only the regions that start near the changed range
+ * need to be examined individually, the rest are shifted in one pass over the offsets array.
+ */
+public abstract class DartPackedRegionList<T extends DartServerData.DartRegion> extends AbstractList<T> implements RandomAccess {
+  protected final int[] myOffsets;
+  protected final int[] myLengths;
+  private int mySize;
+  // upper bound of the lengths of all regions, regions that start further than this before the changed range can't be touched
+  private int myMaxLength;
+
+  DartPackedRegionList(int capacity) {
+    myOffsets = new int[capacity];
+    myLengths = new int[capacity];
+  }
+
+  /**
+   * Regions must be added in the order of increasing offset.
+   *
+   * @return index of the added region
+   */
+  protected final int addRegion(int offset, int length) {
+    assert mySize == 0 || myOffsets[mySize - 1] <= offset;
+    myOffsets[mySize] = offset;
+    myLengths[mySize] = length;
+    myMaxLength = Math.max(myMaxLength, length);
+    return mySize++;
+  }
+
+  @Override
+  public final int size() {
+    return mySize;
+  }
+
+  public final int getOffset(int index) {
+    if (index >= mySize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    return myOffsets[index];
+  }
+
+  public final int getLength(int index) {
+    if (index >= mySize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    return myLengths[index];
+  }
+
+  /**
+   * Approximate size of the arrays in bytes, for diagnostics. Interned strings are not counted.
+   */
+  long estimateRetainedSize() {
+    return 2L * Integer.BYTES * myOffsets.length;
+  }
+
+  /**
+   * Moves all data of the region from one index to another, used when deleted regions are compacted.
+   */
+  protected void moveRegion(int from, int to) {
+    myOffsets[to] = myOffsets[from];
+    myLengths[to] = myLengths[from];
+  }
+
+  /**
+   * Shifts regions after the changed range, deletes regions touched by the change.
+   */
+  final void updateDeletingTouched(@NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    if (deltaLength == 0) return;
+
+    final int firstUntouched = shiftUntouched(eventOffset, deltaLength);
+
+    int deleteCount = 0;
+    for (int i = firstUntouchedCandidate(firstUntouched, eventOffset); i < firstUntouched; i++) {
+      if (eventOffset < myOffsets[i] + myLengths[i]) {
+        myLengths[i] = -1; // mark for deletion
+        deleteCount++;
+      }
+    }
+
+    if (deleteCount > 0) {
+      deleteMarked();
+    }
+  }
+
+  /**
+   * Shifts regions after the changed range, updates length of regions that contain the changed range and deletes other touched regions.
+   */
+  final void updateUpdatingTouched(@NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    if (deltaLength == 0) return;
+
+    final int firstUntouched = shiftUntouched(eventOffset, deltaLength);
+    final int eventRightOffset = eventOffset - Math.min(deltaLength, 0);
+
+    int deleteCount = 0;
+    for (int i = firstUntouchedCandidate(firstUntouched, eventOffset); i < firstUntouched; i++) {
+      final int regionRightOffset = myOffsets[i] + myLengths[i];
+      if (eventOffset >= regionRightOffset) continue;
+
+      if (deltaLength > 0) {
+        // Something was typed inside the region.
+        myLengths[i] += deltaLength;
+        myMaxLength = Math.max(myMaxLength, myLengths[i]);
+      }
+      else if (myOffsets[i] <= eventOffset && eventRightOffset <= regionRightOffset && myLengths[i] != -deltaLength) {
+        // Some text was deleted inside the region.
+        myLengths[i] += deltaLength;
+      }
+      else {
+        myLengths[i] = -1; // mark for deletion
+        deleteCount++;
+      }
+    }
+
+    if (deleteCount > 0) {
+      deleteMarked();
+    }
+  }
+
+  /**
+   * Shifts regions that start after the changed range.
+   *
+   * @return index of the first shifted region
+   */
+  private int shiftUntouched(int eventOffset, int deltaLength) {
+    // if something was typed then regions that start right at the event offset are shifted,
+    // if something was deleted then regions that start inside the deleted range are touched
+    final int untouchedOffset = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+    final int firstUntouched = firstIndexWithOffsetAtLeast(untouchedOffset);
+    for (int i = firstUntouched; i < mySize; i++) {
+      myOffsets[i] += deltaLength;
+    }
+    return firstUntouched;
+  }
+
+  private int firstUntouchedCandidate(int firstUntouched, int eventOffset) {
+    int i = firstUntouched;
+    while (i > 0 && myOffsets[i - 1] + myMaxLength > eventOffset) {
+      i--;
+    }
+    return i;
+  }
+
+  private int firstIndexWithOffsetAtLeast(int offset) {
+    int low = 0;
+    int high = mySize;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (myOffsets[mid] < offset) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void deleteMarked() {
+    int to = 0;
+    for (int from = 0; from < mySize; from++) {
+      if (myLengths[from] == -1) continue;
+      if (from != to) {
+        moveRegion(from, to);
+      }
+      to++;
+    }
+    mySize = to;
+  }
+}
@@ -5,24 +5,35 @@ import com.google.common.collect.Sets;
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.util.EventDispatcher;
-import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.lang.dart.psi.DartClassResolveCache;
 import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 public final class DartServerData {
+  private static final Logger LOG = Logger.getInstance(DartServerData.class.getName());
+
+  // files that are not visible but keep full errors because they were requested by getErrors(VirtualFile)
+  private static final int MAX_REQUESTED_ERROR_FILES = 100;
+
   public interface OutlineListener extends EventListener {
     void outlineUpdated(@NotNull final String filePath);
   }
@@ -31,21 +42,32 @@ public final class DartServerData {
 
   private final EventDispatcher<OutlineListener> myEventDispatcher = EventDispatcher.create(OutlineListener.class);
 
+  // full errors are kept only for visible files, see isErrorDataRetained()
   private final Map<String, List<DartError>> myErrorData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new HashMap<>());
+  // other files with errors, full errors are requested from the server on demand
+  private final Map<String, DartErrorSummary> myErrorSummaries = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartHighlightRegionList> myHighlightData = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartNavigationRegionList> myNavigationData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, List<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, List<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, List<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, Outline> myOutlineData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<Integer, AvailableSuggestionSet> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
+  private final Map<Integer, DartSuggestionSetIndex> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, Map<String, Map<String, Set<String>>>> myExistingImports = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, DartSuggestionSetIndex.ExistingImports> myExistingImportsIndex = Collections.synchronizedMap(new HashMap<>());
 
   private final Set<String> myFilePathsWithUnsentChanges = Sets.newConcurrentHashSet();
 
   // keeps track of files in which error regions have been updated by DocumentListener
   private final Set<String> myFilePathsWithInaccurateErrorInfo = Sets.newConcurrentHashSet();
 
+  // system-independent paths of the files shown in editors, these are also the priority files of the server
+  private volatile Set<String> myVisibleFilePaths = Collections.emptySet();
+
+  // files that are not visible but whose full errors were requested by getErrors(VirtualFile), least recently requested first, guarded by itself;
+  // their full errors are retained until they are pushed out of this set
+  private final Set<String> myRequestedErrorFilePaths = new LinkedHashSet<>();
+
   DartServerData(@NotNull final DartAnalysisServerService service) {
     myService = service;
   }
@@ -61,23 +83,57 @@ public final class DartServerData {
   boolean computedErrors(@NotNull String filePath, @NotNull List<? extends AnalysisError> errors, boolean restartHighlighting) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return false;
 
-    final List<DartError> newErrors = new ArrayList<>(errors.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
+    myFilePathsWithInaccurateErrorInfo.remove(filePath);
+    putErrors(filePath, createDartErrors(file, errors));
+
+    if (restartHighlighting) {
+      forceFileAnnotation(file, false);
+    }
+
+    return true;
+  }
+
+  @NotNull
+  private List<DartError> createDartErrors(@Nullable final VirtualFile file, @NotNull final List<? extends AnalysisError> errors) {
+    final List<DartError> newErrors = new ArrayList<>(errors.size());
     for (AnalysisError error : errors) {
       final int offset = myService.getConvertedOffset(file, error.getLocation().getOffset());
       final int length = myService.getConvertedOffset(file, error.getLocation().getOffset() + error.getLocation().getLength()) - offset;
       newErrors.add(new DartError(error, offset, length));
     }
+    return newErrors;
+  }
 
-    myFilePathsWithInaccurateErrorInfo.remove(filePath);
-    myErrorData.put(filePath, newErrors);
+  private boolean isErrorDataRetained(@NotNull final String filePath) {
+    if (myVisibleFilePaths.contains(filePath) || !Registry.is("dart.server.data.compact.errors", true)) return true;
+    synchronized (myRequestedErrorFilePaths) {
+      return myRequestedErrorFilePaths.contains(filePath);
+    }
+  }
 
-    if (restartHighlighting) {
-      forceFileAnnotation(file, false);
+  private void putErrors(@NotNull final String filePath, @NotNull final List<DartError> errors) {
+    if (isErrorDataRetained(filePath)) {
+      myErrorData.put(filePath, errors);
+      myErrorSummaries.remove(filePath);
     }
+    else {
+      myErrorData.remove(filePath);
+      if (errors.isEmpty()) {
+        myErrorSummaries.remove(filePath);
+      }
+      else {
+        myErrorSummaries.put(filePath, new DartErrorSummary(errors));
+      }
+    }
+  }
 
-    return true;
+  private void compactErrors(@NotNull final String filePath) {
+    final List<DartError> errors = myErrorData.remove(filePath);
+    if (errors != null && !errors.isEmpty()) {
+      myErrorSummaries.put(filePath, new DartErrorSummary(errors));
+    }
   }
 
   void computedClosingLabels(@NotNull final String filePath, @NotNull final List<ClosingLabel> labels) {
@@ -89,36 +145,21 @@ public final class DartServerData {
   void computedHighlights(@NotNull final String filePath, final @NotNull List<? extends HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
-
-    for (HighlightRegion region : regions) {
-      if (region.getLength() > 0) {
-        final int offset = myService.getConvertedOffset(file, region.getOffset());
-        final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
-      }
-    }
-
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, DartHighlightRegionList.create(myService, file, regions));
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, final @NotNull List<? extends NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+    myNavigationData.put(filePath, DartNavigationRegionList.create(myService, file, regions));
+    forceFileAnnotation(file, true);
 
-    for (NavigationRegion region : regions) {
-      if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(myService, file, region);
-        newRegions.add(dartNavigationRegion);
-      }
+    if (file != null) {
+      myService.onNavigationComputed(file);
     }
-
-    myNavigationData.put(filePath, newRegions);
-    forceFileAnnotation(file, true);
   }
 
   void computedOutline(@NotNull final String filePath, @NotNull final Outline outline) {
@@ -135,30 +176,29 @@ public final class DartServerData {
       myAvailableSuggestionSetMap.remove(id);
     }
     for (AvailableSuggestionSet suggestionSet : changed) {
-      myAvailableSuggestionSetMap.put(suggestionSet.getId(), suggestionSet);
+      myAvailableSuggestionSetMap.put(suggestionSet.getId(), new DartSuggestionSetIndex(suggestionSet));
     }
   }
 
   void computedExistingImports(@NotNull String filePathSD, @NotNull Map<String, Map<String, Set<String>>> existingImports) {
     if (existingImports.isEmpty()) {
       myExistingImports.remove(filePathSD);
+      myExistingImportsIndex.remove(filePathSD);
       return;
     }
 
     myExistingImports.put(filePathSD, existingImports);
+    myExistingImportsIndex.put(filePathSD, new DartSuggestionSetIndex.ExistingImports(existingImports));
   }
 
+  /**
+   * Regions with zero length are skipped
+   */
   @NotNull
-  static DartNavigationRegion createDartNavigationRegion(@NotNull final DartAnalysisServerService service,
-                                                         @Nullable final VirtualFile file,
-                                                         @NotNull final NavigationRegion region) {
-    final int offset = service.getConvertedOffset(file, region.getOffset());
-    final int length = service.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-    final SmartList<DartNavigationTarget> targets = new SmartList<>();
-    for (NavigationTarget target : region.getTargetObjects()) {
-      targets.add(new DartNavigationTarget(target));
-    }
-    return new DartNavigationRegion(offset, length, targets);
+  static List<DartNavigationRegion> createDartNavigationRegions(@NotNull final DartAnalysisServerService service,
+                                                                @Nullable final VirtualFile file,
+                                                                @NotNull final List<? extends NavigationRegion> regions) {
+    return DartNavigationRegionList.create(service, file, regions);
   }
 
   void computedOverrides(@NotNull final String filePath, final @NotNull List<? extends OverrideMember> overrides) {
@@ -218,9 +258,14 @@ public final class DartServerData {
     }
   }
 
+  /**
+   * Full errors of the files that are only summarized are requested from the server all at once, the call blocks until they come.
+   * They are not retained, there may be too many of them.
+   */
   @NotNull
   List<DartError> getErrors(@NotNull final SearchScope scope) {
     final List<DartError> errors = new ArrayList<>();
+    final List<VirtualFile> summarizedFiles = new ArrayList<>();
 
     synchronized (myErrorData) {
       for (Map.Entry<String, List<DartError>> entry : myErrorData.entrySet()) {
@@ -231,13 +276,104 @@ public final class DartServerData {
       }
     }
 
+    synchronized (myErrorSummaries) {
+      for (String filePath : myErrorSummaries.keySet()) {
+        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+        if (file != null && scope.contains(file)) {
+          summarizedFiles.add(file);
+        }
+      }
+    }
+
+    final List<CompletableFuture<List<AnalysisError>>> futures = new ArrayList<>(summarizedFiles.size());
+    for (VirtualFile file : summarizedFiles) {
+      futures.add(myService.analysis_getErrorsAsync(file));
+    }
+    for (int i = 0; i < summarizedFiles.size(); i++) {
+      final List<AnalysisError> analysisErrors = DartAnalysisServerService.awaitAsyncResult(futures.get(i), null);
+      if (analysisErrors != null) {
+        errors.addAll(createDartErrors(summarizedFiles.get(i), analysisErrors));
+      }
+    }
+
     return errors;
   }
 
+  /**
+   * Unlike {@link #getErrors(SearchScope)}, doesn't need full errors of the files that are not visible.
+   */
+  boolean hasErrors(@NotNull final SearchScope scope) {
+    return hasProblems(scope, DartError::isError, summary -> summary.myErrorCount > 0);
+  }
+
+  /**
+   * Unlike {@link #getErrors(SearchScope)}, doesn't need full errors of the files that are not visible.
+   */
+  boolean hasWarnings(@NotNull final SearchScope scope) {
+    return hasProblems(scope, DartError::isWarning, summary -> summary.myWarningCount > 0);
+  }
+
+  private boolean hasProblems(@NotNull final SearchScope scope,
+                              @NotNull final Predicate<DartError> errorCondition,
+                              @NotNull final Predicate<DartErrorSummary> summaryCondition) {
+    synchronized (myErrorData) {
+      for (Map.Entry<String, List<DartError>> entry : myErrorData.entrySet()) {
+        if (ContainerUtil.exists(entry.getValue(), errorCondition::test)) {
+          final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
+          if (file != null && scope.contains(file)) return true;
+        }
+      }
+    }
+
+    synchronized (myErrorSummaries) {
+      for (Map.Entry<String, DartErrorSummary> entry : myErrorSummaries.entrySet()) {
+        if (summaryCondition.test(entry.getValue())) {
+          final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
+          if (file != null && scope.contains(file)) return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
   @NotNull
   List<DartError> getErrors(@NotNull final VirtualFile file) {
     final List<DartError> errors = myErrorData.get(file.getPath());
-    return errors != null ? errors : Collections.emptyList();
+    if (errors != null) return errors;
+
+    if (!myErrorSummaries.containsKey(file.getPath())) return Collections.emptyList();
+
+    final List<AnalysisError> analysisErrors = myService.analysis_getErrors(file);
+    if (analysisErrors == null) return Collections.emptyList();
+
+    final List<DartError> dartErrors = createDartErrors(file, analysisErrors);
+    putRequestedErrors(file.getPath(), dartErrors);
+    return dartErrors;
+  }
+
+  /**
+   * Retains the full errors that were requested for a file that is not visible, unless newer errors have arrived in the meantime.
+   * The least recently requested file gets its errors compacted if there are too many of them.
+   */
+  private void putRequestedErrors(@NotNull final String filePath, @NotNull final List<DartError> errors) {
+    if (!myErrorSummaries.containsKey(filePath) || myFilePathsWithUnsentChanges.contains(filePath)) return;
+
+    String compactedFilePath = null;
+    synchronized (myRequestedErrorFilePaths) {
+      myRequestedErrorFilePaths.remove(filePath);
+      myRequestedErrorFilePaths.add(filePath);
+      if (myRequestedErrorFilePaths.size() > MAX_REQUESTED_ERROR_FILES) {
+        final Iterator<String> iterator = myRequestedErrorFilePaths.iterator();
+        compactedFilePath = iterator.next();
+        iterator.remove();
+      }
+    }
+
+    putErrors(filePath, errors);
+    if (compactedFilePath != null && !isErrorDataRetained(compactedFilePath)) {
+      compactErrors(compactedFilePath);
+    }
   }
 
   @NotNull
@@ -285,6 +421,12 @@ public final class DartServerData {
 
   @Nullable
   AvailableSuggestionSet getAvailableSuggestionSet(int id) {
+    final DartSuggestionSetIndex index = myAvailableSuggestionSetMap.get(id);
+    return index != null ? index.getSuggestionSet() : null;
+  }
+
+  @Nullable
+  DartSuggestionSetIndex getAvailableSuggestionSetIndex(int id) {
     return myAvailableSuggestionSetMap.get(id);
   }
 
@@ -305,6 +447,12 @@ public final class DartServerData {
     return myExistingImports.get(filePathSD);
   }
 
+  @Nullable
+  DartSuggestionSetIndex.ExistingImports getExistingImportsIndex(@Nullable String filePathSD) {
+    if (filePathSD == null) return null;
+    return myExistingImportsIndex.get(filePathSD);
+  }
+
   private void forceFileAnnotation(@Nullable final VirtualFile file, final boolean clearCache) {
     if (file != null) {
       final Project project = myService.getProject();
@@ -315,7 +463,10 @@ public final class DartServerData {
       ApplicationManager.getApplication()
         .invokeLater(() -> {
                        if (clearCache) {
+                         // references in the file may now resolve differently
+                         DartClassResolveCache.getInstance(project).dropCachesDependingOn(file);
                          PsiManager.getInstance(project).dropPsiCaches();
+                         myService.onPsiCachesDropped();
                        }
                        DaemonCodeAnalyzer.getInstance(project).restart();
                      },
@@ -328,8 +479,49 @@ public final class DartServerData {
     myFilePathsWithUnsentChanges.clear();
   }
 
+  /**
+   * Full errors of the files that are no longer visible are replaced with summaries, full errors of the files that became visible
+   * are requested from the server, so that they are ready by the time the annotator needs them.
+   *
+   * @param visibleFilePaths system-independent paths
+   */
+  void setVisibleFiles(@NotNull final Set<String> visibleFilePaths) {
+    final Set<String> oldVisibleFilePaths = myVisibleFilePaths;
+    myVisibleFilePaths = Collections.unmodifiableSet(new HashSet<>(visibleFilePaths));
+
+    if (Registry.is("dart.server.data.compact.errors", true)) {
+      for (String filePath : oldVisibleFilePaths) {
+        if (!visibleFilePaths.contains(filePath)) {
+          synchronized (myRequestedErrorFilePaths) {
+            myRequestedErrorFilePaths.remove(filePath);
+          }
+          compactErrors(filePath);
+        }
+      }
+    }
+
+    for (String filePath : visibleFilePaths) {
+      if (!oldVisibleFilePaths.contains(filePath) && myErrorSummaries.containsKey(filePath)) {
+        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+        if (file == null) continue;
+
+        myService.analysis_getErrorsAsync(file).thenAccept(errors -> {
+          // the summary is removed if newer errors have arrived in the meantime
+          if (errors != null && myErrorSummaries.containsKey(filePath) && !myFilePathsWithUnsentChanges.contains(filePath)) {
+            putErrors(filePath, createDartErrors(file, errors));
+            forceFileAnnotation(file, false);
+          }
+        });
+      }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Retained analysis results: " + getRetainedDataReport());
+    }
+  }
+
   void onFileClosed(@NotNull final VirtualFile file) {
-    // do not remove from myErrorData, this map is always kept up-to-date for all files, not only for visible
+    // errors are kept for all files, full errors of closed files are replaced with summaries in setVisibleFiles()
     myHighlightData.remove(file.getPath());
     myNavigationData.remove(file.getPath());
     myOverrideData.remove(file.getPath());
@@ -340,6 +532,10 @@ public final class DartServerData {
 
   void onFlushedResults(@NotNull final List<String> filePaths) {
     removeAllFromMap(myErrorData, filePaths);
+    removeAllFromMap(myErrorSummaries, filePaths);
+    synchronized (myRequestedErrorFilePaths) {
+      myRequestedErrorFilePaths.removeAll(filePaths);
+    }
     removeAllFromMap(myHighlightData, filePaths);
     removeAllFromMap(myNavigationData, filePaths);
     removeAllFromMap(myOverrideData, filePaths);
@@ -358,6 +554,7 @@ public final class DartServerData {
 
   void clearData() {
     myErrorData.clear();
+    myErrorSummaries.clear();
     myHighlightData.clear();
     myNavigationData.clear();
     myOverrideData.clear();
@@ -365,6 +562,49 @@ public final class DartServerData {
     myImplementedMemberData.clear();
     myOutlineData.clear();
     myAvailableSuggestionSetMap.clear();
+    myVisibleFilePaths = Collections.emptySet();
+    synchronized (myRequestedErrorFilePaths) {
+      myRequestedErrorFilePaths.clear();
+    }
+  }
+
+  /**
+   * Human-readable counts and approximate sizes of the analysis results kept in memory, for diagnostics.
+   */
+  @NotNull
+  String getRetainedDataReport() {
+    int errorCount = 0;
+    long errorsSize = 0;
+    synchronized (myErrorData) {
+      for (List<DartError> errors : myErrorData.values()) {
+        errorCount += errors.size();
+        for (DartError error : errors) {
+          errorsSize += error.estimateRetainedSize();
+        }
+      }
+    }
+
+    return "full errors: " + myErrorData.size() + " files, " + errorCount + " errors, " + StringUtil.formatFileSize(errorsSize) +
+           "; error summaries: " + myErrorSummaries.size() + " files, " +
+           StringUtil.formatFileSize((long)myErrorSummaries.size() * DartErrorSummary.ESTIMATED_SIZE) +
+           "; highlight: " + getRegionsReport(myHighlightData) +
+           "; navigation: " + getRegionsReport(myNavigationData) +
+           "; overrides: " + myOverrideData.size() + " files" +
+           "; implemented: " + myImplementedClassData.size() + " files" +
+           "; outlines: " + myOutlineData.size() + " files";
+  }
+
+  @NotNull
+  private static String getRegionsReport(@NotNull final Map<String, ? extends DartPackedRegionList<?>> data) {
+    int regionCount = 0;
+    long size = 0;
+    synchronized (data) {
+      for (DartPackedRegionList<?> regions : data.values()) {
+        regionCount += regions.size();
+        size += regions.estimateRetainedSize();
+      }
+    }
+    return data.size() + " files, " + regionCount + " regions, " + StringUtil.formatFileSize(size);
   }
 
   void onDocumentChanged(@NotNull final DocumentEvent e) {
@@ -374,23 +614,28 @@ public final class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    boolean regionsUpdated = updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
+    boolean regionsUpdated = updateRegionsDeletingTouched(myErrorData.get(filePath), e);
     if (regionsUpdated) {
       myFilePathsWithInaccurateErrorInfo.add(filePath);
     }
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+    final DartHighlightRegionList highlightRegions = myHighlightData.get(filePath);
+    if (highlightRegions != null) {
+      highlightRegions.updateUpdatingTouched(e);
+    }
+    final DartNavigationRegionList navigationRegions = myNavigationData.get(filePath);
+    if (navigationRegions != null) {
+      navigationRegions.onDocumentChanged(filePath, e);
+    }
+    updateRegionsDeletingTouched(myOverrideData.get(filePath), e);
+    updateRegionsDeletingTouched(myImplementedClassData.get(filePath), e);
+    updateRegionsDeletingTouched(myImplementedMemberData.get(filePath), e);
     // A bit outdated outline data is not a big problem, updated data will come shortly
   }
 
   /**
    * @return {@code true} if at least one region has been updated or deleted, {@code false} if nothing done at all
    */
-  private static boolean updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                      @Nullable final List<? extends DartRegion> regions,
+  private static boolean updateRegionsDeletingTouched(@Nullable final List<? extends DartRegion> regions,
                                                       @NotNull final DocumentEvent e) {
     if (regions == null) return false;
 
@@ -404,15 +649,6 @@ public final class DartServerData {
     while (iterator.hasNext()) {
       final DartRegion region = iterator.next();
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
         if (eventOffset <= region.myOffset) {
@@ -442,44 +678,6 @@ public final class DartServerData {
     return regionUpdated;
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
-
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
-
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
-        }
-      }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
-
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
-        }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
-        }
-      }
-    }
-  }
-
   public static class DartRegion {
     protected int myOffset;
     protected int myLength;
@@ -511,9 +709,9 @@ public final class DartServerData {
   public static final class DartHighlightRegion extends DartRegion {
     private final String type;
 
-    private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
+    DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type;
     }
 
     public String getType() {
@@ -521,6 +719,26 @@ public final class DartServerData {
     }
   }
 
+  private static final class DartErrorSummary {
+    // object header and two ints, plus the map entry
+    private static final int ESTIMATED_SIZE = 48;
+
+    // problems with the ERROR and WARNING severity, hints are not counted
+    private final int myErrorCount;
+    private final int myWarningCount;
+
+    private DartErrorSummary(@NotNull final List<DartError> errors) {
+      int errorCount = 0;
+      int warningCount = 0;
+      for (DartError error : errors) {
+        if (error.isError()) errorCount++;
+        if (error.isWarning()) warningCount++;
+      }
+      myErrorCount = errorCount;
+      myWarningCount = warningCount;
+    }
+  }
+
   public static final class DartError extends DartRegion {
     @NotNull private final String mySeverity;
     @Nullable private final String myCode;
@@ -563,10 +781,21 @@ public final class DartServerData {
       return mySeverity;
     }
 
+    private long estimateRetainedSize() {
+      // object header, offset, length and references to the strings, which take 2 bytes per char plus headers
+      return 48 +
+             2L * (myMessage.length() + StringUtil.length(myCorrection) + StringUtil.length(myUrl)) +
+             (myCorrection != null ? 40 : 0) + (myUrl != null ? 40 : 0) + 40;
+    }
+
     public boolean isError() {
       return mySeverity.equals(AnalysisErrorSeverity.ERROR);
     }
 
+    public boolean isWarning() {
+      return mySeverity.equals(AnalysisErrorSeverity.WARNING);
+    }
+
     @Nullable
     public String getCode() {
       return myCode;
@@ -606,32 +835,33 @@ public final class DartServerData {
     }
   }
 
+  /**
+   * A view of one row of {@link DartNavigationRegionList.Targets}, so that converted offset is cached and shifted in the shared storage.
+   */
   public static final class DartNavigationTarget {
-    private final String myFile;
-    private final int myOriginalOffset;
-    private final String myKind;
+    @NotNull private final DartNavigationRegionList.Targets myTargets;
+    private final int myIndex;
 
-    private int myConvertedOffset = -1;
-
-    private DartNavigationTarget(@NotNull final NavigationTarget target) {
-      myFile = FileUtil.toSystemIndependentName(target.getFile().trim()).intern();
-      myOriginalOffset = target.getOffset();
-      myKind = target.getKind().intern();
+    DartNavigationTarget(@NotNull final DartNavigationRegionList.Targets targets, final int index) {
+      myTargets = targets;
+      myIndex = index;
     }
 
     public String getFile() {
-      return myFile;
+      return myTargets.getFile(myIndex);
     }
 
     public int getOffset(@NotNull final Project project, @Nullable final VirtualFile file) {
-      if (myConvertedOffset == -1) {
-        myConvertedOffset = DartAnalysisServerService.getInstance(project).getConvertedOffset(file, myOriginalOffset);
+      int convertedOffset = myTargets.getConvertedOffset(myIndex);
+      if (convertedOffset == -1) {
+        convertedOffset = DartAnalysisServerService.getInstance(project).getConvertedOffset(file, myTargets.getOriginalOffset(myIndex));
+        myTargets.setConvertedOffset(myIndex, convertedOffset);
       }
-      return myConvertedOffset;
+      return convertedOffset;
     }
 
     public String getKind() {
-      return myKind;
+      return myTargets.getKind(myIndex);
     }
   }
 
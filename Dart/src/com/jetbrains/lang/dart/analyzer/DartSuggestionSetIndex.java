@@ -0,0 +1,111 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.util.Processor;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TIntObjectHashMap;
+import org.dartlang.analysis.server.protocol.AvailableSuggestion;
+import org.dartlang.analysis.server.protocol.AvailableSuggestionSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Lookup structure built once per {@link AvailableSuggestionSet} when it is received from the server, so that each completion request
+ * visits only the suggestions that may match the typed prefix instead of all suggestions of all included sets.
+ * <p>
+ * Completion matchers are not prefix-only (camel humps, middle matching), but they all require every letter of the typed prefix
+ * to be present in the label. So suggestions are bucketed by each (lowercase) character of their label,
+ * and the smallest bucket among the prefix characters is visited.
+ */
+public final class DartSuggestionSetIndex {
+  @NotNull private final AvailableSuggestionSet mySuggestionSet;
+  @NotNull private final TIntObjectHashMap<List<AvailableSuggestion>> myCharToSuggestions = new TIntObjectHashMap<>();
+
+  DartSuggestionSetIndex(@NotNull AvailableSuggestionSet suggestionSet) {
+    mySuggestionSet = suggestionSet;
+
+    for (AvailableSuggestion suggestion : suggestionSet.getItems()) {
+      final String label = suggestion.getLabel();
+      for (int i = 0; i < label.length(); i++) {
+        final char c = Character.toLowerCase(label.charAt(i));
+        List<AvailableSuggestion> bucket = myCharToSuggestions.get(c);
+        if (bucket == null) {
+          bucket = new ArrayList<>();
+          myCharToSuggestions.put(c, bucket);
+        }
+        // the same character may occur in the label more than once
+        if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != suggestion) {
+          bucket.add(suggestion);
+        }
+      }
+    }
+
+    for (Object bucket : myCharToSuggestions.getValues()) {
+      ((ArrayList<?>)bucket).trimToSize();
+    }
+  }
+
+  @NotNull
+  public AvailableSuggestionSet getSuggestionSet() {
+    return mySuggestionSet;
+  }
+
+  /**
+   * Passes to the {@code processor} all suggestions of the included {@code kinds} that may match the {@code prefix}.
+   * The final matching is up to the caller.
+   */
+  public void processSuggestions(@NotNull String prefix, @NotNull Set<String> kinds, @NotNull Processor<? super AvailableSuggestion> processor) {
+    for (AvailableSuggestion suggestion : getCandidates(prefix)) {
+      if (kinds.contains(suggestion.getElement().getKind()) && !processor.process(suggestion)) {
+        return;
+      }
+    }
+  }
+
+  @NotNull
+  private List<AvailableSuggestion> getCandidates(@NotNull String prefix) {
+    List<AvailableSuggestion> smallestBucket = null;
+    for (int i = 0; i < prefix.length(); i++) {
+      final char c = prefix.charAt(i);
+      if (!Character.isLetterOrDigit(c)) continue; // may be a wildcard or a separator for the matcher
+
+      final List<AvailableSuggestion> bucket = myCharToSuggestions.get(Character.toLowerCase(c));
+      if (bucket == null) return Collections.emptyList();
+      if (smallestBucket == null || bucket.size() < smallestBucket.size()) {
+        smallestBucket = bucket;
+      }
+    }
+
+    return smallestBucket != null ? smallestBucket : mySuggestionSet.getItems();
+  }
+
+  /**
+   * Inverted form of the {@code completion.existingImports} notification data for one library:
+   * {@code (declaringLibraryUri, label) -> URIs of the imported libraries that export this name}.
+   */
+  public static final class ExistingImports {
+    @NotNull private final Map<String, Map<String, Set<String>>> myDeclaringUriToLabelToImportedUris = new THashMap<>();
+
+    ExistingImports(@NotNull Map<String, Map<String, Set<String>>> existingImports) {
+      for (Map.Entry<String, Map<String, Set<String>>> entry : existingImports.entrySet()) {
+        final String importedLibraryUri = entry.getKey();
+        for (Map.Entry<String, Set<String>> declaringEntry : entry.getValue().entrySet()) {
+          final Map<String, Set<String>> labelToImportedUris =
+            myDeclaringUriToLabelToImportedUris.computeIfAbsent(declaringEntry.getKey(), k -> new THashMap<>());
+          for (String name : declaringEntry.getValue()) {
+            labelToImportedUris.computeIfAbsent(name, k -> new THashSet<>(1)).add(importedLibraryUri);
+          }
+        }
+      }
+    }
+
+    @NotNull
+    public Set<String> getImportedLibraryUris(@NotNull String declaringLibraryUri, @NotNull String label) {
+      final Map<String, Set<String>> labelToImportedUris = myDeclaringUriToLabelToImportedUris.get(declaringLibraryUri);
+      final Set<String> result = labelToImportedUris == null ? null : labelToImportedUris.get(label);
+      return result != null ? result : Collections.emptySet();
+    }
+  }
+}
@@ -11,6 +11,7 @@ import org.dartlang.analysis.server.protocol.SourceChange;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DartQuickAssistSet {
@@ -39,7 +40,8 @@ public class DartQuickAssistSet {
 
     final DartAnalysisServerService service = DartAnalysisServerService.getInstance(psiFile.getProject());
     service.updateFilesContent();
-    lastSourceChanges = service.edit_getAssists(psiFile.getVirtualFile(), offset, length);
+    lastSourceChanges =
+      DartAnalysisServerService.awaitAsyncResult(service.edit_getAssistsAsync(psiFile.getVirtualFile(), offset, length), Collections.emptyList());
 
     lastFilePath = filePath;
     lastOffset = offset;
@@ -1,78 +1,161 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Coverage data written by the {@code coverage} package: {@code {"type": "CodeCoverage", "coverage": [{"source": ..., "hits": [...]}]}}.
+ * The file is streamed rather than bound to objects, and hits from all isolates and scripts with the same source are summed up.
+ */
 public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+  @NotNull private final Map<String, DartFileCoverageData> myMergedData = new LinkedHashMap<>();
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
+  private DartCoverageData() {
   }
 
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+  @NotNull
+  public Map<String, DartFileCoverageData> getMergedDartFileCoverageData() {
+    return myMergedData;
   }
 
+  /**
+   * @throws IOException if the JSON is malformed
+   */
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
+  public static DartCoverageData read(@NotNull final Reader reader) throws IOException {
+    final DartCoverageData data = new DartCoverageData();
+    final JsonReader jsonReader = new JsonReader(reader);
+    try {
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        if ("coverage".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+          jsonReader.beginArray();
+          while (jsonReader.hasNext()) {
+            data.readFileCoverage(jsonReader);
+          }
+          jsonReader.endArray();
         }
-        if (!mergedCoverageData.containsKey(source)) {
-          mergedCoverageData.put(source, new TreeMap<>());
+        else {
+          jsonReader.skipValue();
         }
+      }
+      jsonReader.endObject();
+    }
+    catch (IllegalStateException | NumberFormatException e) {
+      // unexpected token type
+      throw new IOException(e.getMessage(), e);
+    }
+    return data;
+  }
 
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.get(source);
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
-          }
+  private void readFileCoverage(@NotNull final JsonReader jsonReader) throws IOException {
+    String source = null;
+    // first line, last line, hit count, ...
+    final TIntArrayList hits = new TIntArrayList();
 
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
-        }
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      final String name = jsonReader.nextName();
+      if ("source".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+        source = jsonReader.nextString();
+      }
+      else if ("hits".equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        readHits(jsonReader, hits);
+      }
+      else {
+        jsonReader.skipValue();
       }
     }
+    jsonReader.endObject();
 
-    return mergedCoverageData;
+    if (source == null) return;
+
+    DartFileCoverageData fileData = myMergedData.get(source);
+    if (fileData == null) {
+      fileData = new DartFileCoverageData();
+      myMergedData.put(source, fileData);
+    }
+    for (int i = 0; i < hits.size(); i += 3) {
+      fileData.addHits(hits.getQuick(i), hits.getQuick(i + 1), hits.getQuick(i + 2));
+    }
   }
-}
 
+  private static void readHits(@NotNull final JsonReader jsonReader, @NotNull final TIntArrayList result) throws IOException {
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      final int firstLine;
+      final int lastLine;
+      if (jsonReader.peek() == JsonToken.STRING) {
+        // "10-12": the same hit count for a range of lines
+        final String range = jsonReader.nextString();
+        final int dash = range.indexOf('-');
+        firstLine = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+        lastLine = dash < 0 ? firstLine : Integer.parseInt(range.substring(dash + 1));
+      }
+      else {
+        firstLine = lastLine = jsonReader.nextInt();
+      }
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+      if (!jsonReader.hasNext()) break;
+      final int hitCount = jsonReader.nextInt();
 
-  @Nullable
-  public String getSource() {
-    return source;
+      // ranges are not expanded here, line numbers are checked against the file when the hits are applied to it
+      if (Math.max(0, firstLine) <= lastLine) {
+        result.add(Math.max(0, firstLine));
+        result.add(lastLine);
+        result.add(hitCount);
+      }
+    }
+    jsonReader.endArray();
   }
+}
+
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
+/**
+ * Hit counts of line ranges as they are read, merged into an array indexed by line number only for the lines that the file has.
+ */
+final class DartFileCoverageData {
+  // first line, last line, hit count, ...
+  private final TIntArrayList myRanges = new TIntArrayList();
+  private int myMaxLine = -1;
+
+  void addHits(final int firstLine, final int lastLine, final int hitCount) {
+    myRanges.add(firstLine);
+    myRanges.add(lastLine);
+    myRanges.add(hitCount);
+    myMaxLine = Math.max(myMaxLine, lastLine);
   }
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+  /**
+   * @return -1 if there are no hit counts at all
+   */
+  int getMaxLine() {
+    return myMaxLine;
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  /**
+   * @param lastFileLine hit counts for the lines after it are ignored, so that bogus line numbers don't size the array
+   * @return hit counts indexed by line number, {@code -1} means that the line has no code
+   */
+  int @NotNull [] getLineHits(final int lastFileLine) {
+    final int[] hits = new int[Math.max(0, Math.min(myMaxLine, lastFileLine) + 1)];
+    Arrays.fill(hits, -1);
+    for (int i = 0; i < myRanges.size(); i += 3) {
+      final int hitCount = myRanges.getQuick(i + 2);
+      final int lastLine = Math.min(myRanges.getQuick(i + 1), hits.length - 1);
+      for (int line = myRanges.getQuick(i); line <= lastLine; line++) {
+        hits[line] = Math.max(hits[line], 0) + hitCount;
+      }
+    }
+    return hits;
   }
-}
\ No newline at end of file
+}
@@ -15,36 +15,46 @@
  */
 package com.jetbrains.lang.dart.coverage;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
 import com.intellij.coverage.CoverageSuite;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
 import com.jetbrains.lang.dart.DartBundle;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class DartCoverageRunner extends CoverageRunner {
   private static final String ID = "DartCoverageRunner";
   private static final Logger LOG = Logger.getInstance(DartCoverageRunner.class.getName());
 
+  private static final int MAP_URI_BATCH_SIZE = 100;
+  private static final long MAP_URI_BATCH_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
   @Nullable
   @Override
   public ProjectData loadCoverageData(@NotNull final File sessionDataFile, @Nullable CoverageSuite baseCoverageSuite) {
@@ -91,61 +101,146 @@ public class DartCoverageRunner extends CoverageRunner {
       return null;
     }
 
-    final String contextId = DartAnalysisServerService.getInstance(project).execution_createContext(contextFilePath);
-    if (contextId == null) {
+    final DartCoverageData data;
+    try (Reader reader = new BufferedReader(new FileReader(sessionDataFile))) {
+      data = DartCoverageData.read(reader);
+    }
+    catch (IOException e) {
+      LOG.warn("Coverage file does not contain valid data.", e);
+      return null;
+    }
+
+    final Map<String, DartFileCoverageData> sourceToData = data.getMergedDartFileCoverageData();
+    final Map<String, String> uriToPath = mapUris(project, contextFilePath, sourceToData.keySet());
+    if (uriToPath == null) {
       return null;
     }
 
     final ProjectData projectData = new ProjectData();
 
-    try {
-      DartCoverageData data = new Gson().fromJson(new BufferedReader(new FileReader(sessionDataFile)), DartCoverageData.class);
-      if (data == null) {
-        LOG.warn("Coverage file does not contain valid data.");
-        return null;
+    for (Map.Entry<String, DartFileCoverageData> entry : sourceToData.entrySet()) {
+      final String filePath = uriToPath.get(entry.getKey());
+      if (filePath == null) {
+        // File is not found.
+        continue;
       }
 
-      for (Map.Entry<String, SortedMap<Integer, Integer>> entry : data.getMergedDartFileCoverageData().entrySet()) {
-        ProgressManager.checkCanceled();
+      final ClassData classData = projectData.getOrCreateClassData(filePath);
+      // line numbers are 1-based, so the last line of the file has the number of the line count
+      final int[] lineHits = entry.getValue().getLineHits(getLineCount(filePath));
+      if (lineHits.length == 0) {
+        classData.setLines(new LineData[1]);
+        continue;
+      }
+
+      final LineData[] lines = new LineData[lineHits.length];
+      for (int line = 0; line < lineHits.length; line++) {
+        final int hits = lineHits[line];
+        if (hits >= 0) {
+          final LineData lineData = new LineData(line, null);
+          lineData.setHits(hits);
+          lines[line] = lineData;
+        }
+      }
+      classData.setLines(lines);
+    }
+
+    return projectData;
+  }
+
+  private static int getLineCount(@NotNull final String filePath) {
+    final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+    if (file == null) return 0;
+    final Document document = ReadAction.compute(() -> FileDocumentManager.getInstance().getDocument(file));
+    return document == null ? 0 : document.getLineCount();
+  }
+
+  /**
+   * Maps URIs to file paths, taking the already known mappings from {@link DartCoverageUriCache}. The rest are requested from the
+   * Analysis Server in batches of {@link #MAP_URI_BATCH_SIZE} concurrent requests instead of one blocking round trip per URI.
+   *
+   * @return {@code null} if an execution context couldn't be created
+   */
+  @Nullable
+  private static Map<String, String> mapUris(@NotNull final Project project,
+                                             @NotNull final String contextFilePath,
+                                             @NotNull final Collection<String> uris) {
+    final Map<String, String> cachedUriToPath = DartCoverageUriCache.getInstance(project).getUriToPathMap(project, contextFilePath);
+    final Map<String, String> result = new THashMap<>();
+    final List<String> urisToMap = new ArrayList<>();
+
+    for (String uri : uris) {
+      if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
+        // dart:_builtin or dart:core-patch/core_patch.dart
+        continue;
+      }
 
-        String filePath = getFileForUri(project, contextId, entry.getKey());
-        if (filePath == null) {
-          // File is not found.
-          continue;
+      final String path = cachedUriToPath.get(uri);
+      if (path != null) {
+        result.put(uri, path);
+      }
+      else {
+        urisToMap.add(uri);
+      }
+    }
+
+    if (urisToMap.isEmpty()) {
+      return result;
+    }
+
+    final DartAnalysisServerService das = DartAnalysisServerService.getInstance(project);
+    final String contextId = das.execution_createContext(contextFilePath);
+    if (contextId == null) {
+      return null;
+    }
+
+    try {
+      for (int batchStart = 0; batchStart < urisToMap.size(); batchStart += MAP_URI_BATCH_SIZE) {
+        final List<String> batch = urisToMap.subList(batchStart, Math.min(batchStart + MAP_URI_BATCH_SIZE, urisToMap.size()));
+        final List<CompletableFuture<String>> futures = new ArrayList<>(batch.size());
+        for (String uri : batch) {
+          futures.add(das.execution_mapUriAsync(contextId, uri));
         }
-        SortedMap<Integer, Integer> lineHits = entry.getValue();
-        ClassData classData = projectData.getOrCreateClassData(filePath);
-        if (lineHits.size() == 0) {
-          classData.setLines(new LineData[1]);
-          continue;
+
+        final long deadline = System.currentTimeMillis() + MAP_URI_BATCH_TIMEOUT;
+        for (int i = 0; i < batch.size(); i++) {
+          final String path = awaitCheckingCanceled(futures.get(i), deadline);
+          if (path != null) {
+            result.put(batch.get(i), path);
+            cachedUriToPath.put(batch.get(i), path);
+          }
         }
-        LineData[] lines = new LineData[lineHits.lastKey() + 1];
-        for (Map.Entry<Integer, Integer> hit : lineHits.entrySet()) {
-          LineData lineData = new LineData(hit.getKey(), null);
-          lineData.setHits(hit.getValue());
-          lines[hit.getKey()] = lineData;
+
+        if (System.currentTimeMillis() >= deadline) {
+          LOG.warn("execution_mapUri() took more than " + MAP_URI_BATCH_TIMEOUT + " ms for a batch of " + batch.size() + " URIs");
         }
-        classData.setLines(lines);
       }
     }
-    catch (FileNotFoundException | JsonSyntaxException e) {
-      LOG.warn(e);
-    }
     finally {
-      DartAnalysisServerService.getInstance(project).execution_deleteContext(contextId);
+      das.execution_deleteContext(contextId);
     }
 
-    return projectData;
+    return result;
   }
 
   @Nullable
-  private static String getFileForUri(@NotNull final Project project, @NotNull final String contextId, @NotNull final String uri) {
-    if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
-      // dart:_builtin or dart:core-patch/core_patch.dart
-      return null;
-    }
+  private static String awaitCheckingCanceled(@NotNull final CompletableFuture<String> future, final long deadline) {
+    while (true) {
+      ProgressManager.checkCanceled();
+      final long timeout = Math.min(100, deadline - System.currentTimeMillis());
+      if (timeout <= 0) {
+        return future.getNow(null);
+      }
 
-    return DartAnalysisServerService.getInstance(project).execution_mapUri(contextId, null, uri);
+      try {
+        return future.get(timeout, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignore) {
+      }
+      catch (InterruptedException | ExecutionException e) {
+        return null;
+      }
+    }
   }
 
   @NotNull
@@ -0,0 +1,64 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.coverage;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.jetbrains.lang.dart.sdk.DartSdk;
+import com.jetbrains.lang.dart.util.DotPackagesFileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * URI to file path mappings returned by the Analysis Server for coverage data, kept between coverage runs.
+ * The execution context id is new for each run, so the mappings are stored per context file. They are dropped as soon as
+ * the Dart SDK or the nearest {@code .packages} file changes, because a {@code package:} URI may then map to another file.
+ */
+public class DartCoverageUriCache {
+  private static class Entry {
+    @NotNull private final String myStamp;
+    @NotNull private final Map<String, String> myUriToPath = new ConcurrentHashMap<>();
+
+    private Entry(@NotNull final String stamp) {
+      myStamp = stamp;
+    }
+  }
+
+  private final Map<String, Entry> myContextFilePathToEntry = new ConcurrentHashMap<>();
+
+  public static DartCoverageUriCache getInstance(@NotNull final Project project) {
+    return ServiceManager.getService(project, DartCoverageUriCache.class);
+  }
+
+  /**
+   * @return live map that the caller fills in with the mappings it gets from the Analysis Server
+   */
+  @NotNull
+  Map<String, String> getUriToPathMap(@NotNull final Project project, @NotNull final String contextFilePath) {
+    final String stamp = computeStamp(project, contextFilePath);
+    return myContextFilePathToEntry.compute(contextFilePath, (path, entry) -> entry != null && entry.myStamp.equals(stamp)
+                                                                              ? entry
+                                                                              : new Entry(stamp)).myUriToPath;
+  }
+
+  @NotNull
+  private static String computeStamp(@NotNull final Project project, @NotNull final String contextFilePath) {
+    final DartSdk sdk = DartSdk.getDartSdk(project);
+    final File dotPackages = findDotPackagesFile(new File(contextFilePath).getParentFile());
+    return (sdk == null ? "" : sdk.getHomePath() + ":" + sdk.getVersion()) + "\n" +
+           (dotPackages == null ? "" : dotPackages.getPath() + ":" + dotPackages.lastModified());
+  }
+
+  @Nullable
+  private static File findDotPackagesFile(@Nullable File dir) {
+    while (dir != null) {
+      final File file = new File(dir, DotPackagesFileUtil.DOT_PACKAGES);
+      if (file.isFile()) return file;
+      dir = dir.getParentFile();
+    }
+    return null;
+  }
+}
@@ -7,12 +7,14 @@ import com.intellij.lang.folding.CustomFoldingBuilder;
 import com.intellij.lang.folding.FoldingDescriptor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.UnfairTextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.impl.source.tree.CompositeElement;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.jetbrains.lang.dart.DartComponentType;
@@ -22,6 +24,7 @@ import com.jetbrains.lang.dart.psi.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +44,30 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
   private static final String TEST_METHOD_NAME = "test";
   private static final String GROUP_METHOD_NAME = "group";
 
+  private static final Key<TopLevelElementFoldRegions> TOP_LEVEL_ELEMENT_FOLD_REGIONS_KEY = Key.create("TOP_LEVEL_ELEMENT_FOLD_REGIONS");
+
+  private static final class TopLevelElementFoldRegions {
+    private final int myModificationCount;
+    private final ASTNode[] myNodes;
+    private final int[] myRelativeStartOffsets;
+    private final int[] myRelativeEndOffsets;
+
+    private TopLevelElementFoldRegions(final int modificationCount,
+                                       @NotNull final List<FoldingDescriptor> descriptors,
+                                       final int elementStartOffset) {
+      myModificationCount = modificationCount;
+      myNodes = new ASTNode[descriptors.size()];
+      myRelativeStartOffsets = new int[descriptors.size()];
+      myRelativeEndOffsets = new int[descriptors.size()];
+      for (int i = 0; i < descriptors.size(); i++) {
+        final FoldingDescriptor descriptor = descriptors.get(i);
+        myNodes[i] = descriptor.getElement();
+        myRelativeStartOffsets[i] = descriptor.getRange().getStartOffset() - elementStartOffset;
+        myRelativeEndOffsets[i] = descriptor.getRange().getEndOffset() - elementStartOffset;
+      }
+    }
+  }
+
   @Override
   protected boolean isCustomFoldingRoot(@NotNull final ASTNode node) {
     final IElementType type = node.getElementType();
@@ -58,8 +85,55 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
     final TextRange fileHeaderRange = foldFileHeader(descriptors, dartFile, document); // 1. File header
     foldConsequentStatements(descriptors, dartFile, DartImportOrExportStatement.class);// 2. Import and export statements
     foldConsequentStatements(descriptors, dartFile, DartPartStatement.class);          // 3. Part statements
+
+    final List<PsiElement> topLevelComments = new ArrayList<>();
+    for (PsiElement child = dartFile.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child instanceof PsiComment) {
+        topLevelComments.add(child);
+      }
+      else if (!(child instanceof PsiWhiteSpace)) {
+        addTopLevelElementFoldRegions(descriptors, child);                             // 4-12 within top-level declarations
+      }
+    }
+    foldComments(descriptors, topLevelComments, fileHeaderRange);                      // 4. Top-level comments and comment sequences
+  }
+
+  /**
+   * Fold regions within a top-level element don't depend on the rest of the file, so they are cached in the element's node
+   * with offsets relative to the element and are reused until something changes within the element. This matters for large
+   * generated files, where a typical edit touches only one of many top-level declarations.
+   */
+  private static void addTopLevelElementFoldRegions(@NotNull final List<FoldingDescriptor> descriptors,
+                                                    @NotNull final PsiElement element) {
+    final ASTNode node = element.getNode();
+    if (!(node instanceof CompositeElement)) {
+      buildTopLevelElementFoldRegions(descriptors, element);
+      return;
+    }
+
+    final int modificationCount = ((CompositeElement)node).getModificationCount();
+    final int startOffset = node.getStartOffset();
+
+    TopLevelElementFoldRegions regions = node.getUserData(TOP_LEVEL_ELEMENT_FOLD_REGIONS_KEY);
+    if (regions == null || regions.myModificationCount != modificationCount) {
+      final List<FoldingDescriptor> elementDescriptors = new ArrayList<>();
+      buildTopLevelElementFoldRegions(elementDescriptors, element);
+      regions = new TopLevelElementFoldRegions(modificationCount, elementDescriptors, startOffset);
+      node.putUserData(TOP_LEVEL_ELEMENT_FOLD_REGIONS_KEY, regions);
+    }
+
+    for (int i = 0; i < regions.myNodes.length; i++) {
+      final int regionStartOffset = startOffset + regions.myRelativeStartOffsets[i];
+      final int regionEndOffset = startOffset + regions.myRelativeEndOffsets[i];
+      descriptors.add(new FoldingDescriptor(regions.myNodes[i], TextRange.create(regionStartOffset, regionEndOffset)));
+    }
+  }
+
+  private static void buildTopLevelElementFoldRegions(@NotNull final List<FoldingDescriptor> descriptors,
+                                                      @NotNull final PsiElement element) {
     final Collection<PsiElement> psiElements = PsiTreeUtil.findChildrenOfAnyType(
-      root,
+      element,
+      false,
       DartComponent.class,
       DartTypeArguments.class,
       PsiComment.class,
@@ -69,8 +143,8 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
       DartCallExpression.class,
       DartAssertStatement.class,
       DartIfStatement.class);
-    foldComments(descriptors, psiElements, fileHeaderRange);                           // 4. Comments and comment sequences
-    foldClassBodies(descriptors, dartFile);                                            // 5. Class bodies
+    foldComments(descriptors, psiElements, null);                                      // 4. Comments and comment sequences
+    foldClassBody(descriptors, element);                                               // 5. Class bodies
     foldFunctionBodies(descriptors, psiElements);                                      // 6. Function bodies
     foldTypeArguments(descriptors, psiElements);                                       // 7. Type arguments
     foldMultilineStrings(descriptors, psiElements);                                    // 8. Multi-line strings
@@ -244,26 +318,24 @@ public class DartFoldingBuilder extends CustomFoldingBuilder implements DumbAwar
     }
   }
 
-  private static void foldClassBodies(@NotNull final List<FoldingDescriptor> descriptors, @NotNull final DartFile dartFile) {
-    for (PsiElement element : PsiTreeUtil.getChildrenOfAnyType(dartFile, DartClass.class, DartExtensionDeclaration.class)) {
-      if (element instanceof DartClassDefinition) {
-        final DartClassBody body = ((DartClassDefinition)element).getClassBody();
-        if (body != null && body.getTextLength() > 2) {
-          descriptors.add(new FoldingDescriptor(body, body.getTextRange()));
-        }
+  private static void foldClassBody(@NotNull final List<FoldingDescriptor> descriptors, @NotNull final PsiElement element) {
+    if (element instanceof DartClassDefinition) {
+      final DartClassBody body = ((DartClassDefinition)element).getClassBody();
+      if (body != null && body.getTextLength() > 2) {
+        descriptors.add(new FoldingDescriptor(body, body.getTextRange()));
       }
-      else if (element instanceof DartEnumDefinition) {
-        final ASTNode lBrace = element.getNode().findChildByType(DartTokenTypes.LBRACE);
-        final ASTNode rBrace = element.getNode().findChildByType(DartTokenTypes.RBRACE, lBrace);
-        if (lBrace != null && rBrace != null && rBrace.getStartOffset() - lBrace.getStartOffset() > 2) {
-          descriptors.add(new FoldingDescriptor(element, TextRange.create(lBrace.getStartOffset(), rBrace.getStartOffset() + 1)));
-        }
+    }
+    else if (element instanceof DartEnumDefinition) {
+      final ASTNode lBrace = element.getNode().findChildByType(DartTokenTypes.LBRACE);
+      final ASTNode rBrace = element.getNode().findChildByType(DartTokenTypes.RBRACE, lBrace);
+      if (lBrace != null && rBrace != null && rBrace.getStartOffset() - lBrace.getStartOffset() > 2) {
+        descriptors.add(new FoldingDescriptor(element, TextRange.create(lBrace.getStartOffset(), rBrace.getStartOffset() + 1)));
       }
-      else if (element instanceof DartExtensionDeclaration) {
-        final DartClassBody body = ((DartExtensionDeclaration)element).getClassBody();
-        if (body.getTextLength() > 2) {
-          descriptors.add(new FoldingDescriptor(body, body.getTextRange()));
-        }
+    }
+    else if (element instanceof DartExtensionDeclaration) {
+      final DartClassBody body = ((DartExtensionDeclaration)element).getClassBody();
+      if (body.getTextLength() > 2) {
+        descriptors.add(new FoldingDescriptor(body, body.getTextRange()));
       }
     }
   }
@@ -0,0 +1,170 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.actions;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.lang.dart.DartBundle;
+import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Formats many files with the Dart Analysis Server. Up to {@code dart.style.bulk.window} edit.format requests are in flight at once,
+ * and formatted content is applied in batches, one write action per batch, while other files are still being formatted.
+ * All batches are parts of one undoable command.
+ */
+final class DartBulkFormatter {
+  private static final Logger LOG = Logger.getInstance(DartBulkFormatter.class.getName());
+
+  private static final int WRITE_BATCH_SIZE = 50;
+  private static final long WAIT_STEP_MILLIS = 50;
+
+  @NotNull private final Project myProject;
+  @NotNull private final List<? extends VirtualFile> myFiles;
+  private final int myLineLength;
+  @NotNull private final ProgressIndicator myIndicator;
+
+  @NotNull private final Queue<Pair<VirtualFile, String>> myFormattedFiles = new ConcurrentLinkedQueue<>();
+  @NotNull private final AtomicInteger myDoneCount = new AtomicInteger();
+  @NotNull private final AtomicInteger myFailedCount = new AtomicInteger();
+  @NotNull private final Object myCommandGroupId = new Object();
+  private long myStartTime;
+
+  DartBulkFormatter(@NotNull final Project project,
+                    @NotNull final List<? extends VirtualFile> files,
+                    final int lineLength,
+                    @NotNull final ProgressIndicator indicator) {
+    myProject = project;
+    myFiles = files;
+    myLineLength = lineLength;
+    myIndicator = indicator;
+  }
+
+  /**
+   * To be called in a background thread. Files formatted before cancellation stay formatted.
+   */
+  void run() {
+    final DartAnalysisServerService das = DartAnalysisServerService.getInstance(myProject);
+    final int windowSize = Math.max(1, Registry.intValue("dart.style.bulk.window", 16));
+    final Semaphore window = new Semaphore(windowSize);
+
+    myStartTime = System.currentTimeMillis();
+    myIndicator.setIndeterminate(false);
+
+    for (VirtualFile file : myFiles) {
+      acquire(window, 1);
+
+      das.edit_formatAsync(file, 0, 0, myLineLength).whenComplete((formatResult, throwable) -> {
+        try {
+          final String newContent = throwable == null ? getNewContent(formatResult) : null;
+          if (newContent != null) {
+            if (!newContent.isEmpty()) {
+              myFormattedFiles.add(Pair.create(file, newContent));
+            }
+          }
+          else {
+            myFailedCount.incrementAndGet();
+            LOG.info("Failed to format " + file.getPath());
+          }
+        }
+        finally {
+          myDoneCount.incrementAndGet();
+          window.release();
+        }
+      });
+
+      if (myFormattedFiles.size() >= WRITE_BATCH_SIZE) {
+        applyFormattedFiles();
+      }
+      updateProgress();
+    }
+
+    acquire(window, windowSize);
+    applyFormattedFiles();
+    updateProgress();
+
+    LOG.info("Formatted " + myFiles.size() + " files in " + (System.currentTimeMillis() - myStartTime) + " ms, " +
+             myFailedCount.get() + " failed");
+  }
+
+  /**
+   * @return formatted content, empty string if the file is already formatted, or {@code null} if formatting failed
+   */
+  @Nullable
+  private static String getNewContent(@Nullable final DartAnalysisServerService.FormatResult formatResult) {
+    if (formatResult == null) return null;
+
+    final List<SourceEdit> edits = formatResult.getEdits();
+    if (edits == null || edits.isEmpty()) return "";
+    if (edits.size() > 1) return null;
+    return StringUtil.convertLineSeparators(edits.get(0).getReplacement());
+  }
+
+  private void acquire(@NotNull final Semaphore semaphore, final int permits) {
+    try {
+      while (!semaphore.tryAcquire(permits, WAIT_STEP_MILLIS, TimeUnit.MILLISECONDS)) {
+        updateProgress();
+        myIndicator.checkCanceled();
+        if (myFormattedFiles.size() >= WRITE_BATCH_SIZE) {
+          applyFormattedFiles();
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      myIndicator.cancel();
+      myIndicator.checkCanceled();
+    }
+  }
+
+  private void applyFormattedFiles() {
+    final List<Pair<VirtualFile, String>> batch = new ArrayList<>();
+    Pair<VirtualFile, String> formattedFile;
+    while ((formattedFile = myFormattedFiles.poll()) != null) {
+      batch.add(formattedFile);
+    }
+    if (batch.isEmpty()) return;
+
+    final Runnable applyBatch = () -> {
+      for (Pair<VirtualFile, String> fileAndContent : batch) {
+        final Document document = FileDocumentManager.getInstance().getDocument(fileAndContent.first);
+        if (document != null) {
+          document.setText(fileAndContent.second);
+        }
+      }
+    };
+
+    ApplicationManager.getApplication().invokeAndWait(
+      () -> ApplicationManager.getApplication().runWriteAction(
+        () -> CommandProcessor.getInstance()
+          .executeCommand(myProject, applyBatch, DartBundle.message("action.Dart.DartStyle.text"), myCommandGroupId)),
+      ModalityState.defaultModalityState());
+  }
+
+  private void updateProgress() {
+    final int done = myDoneCount.get();
+    final long elapsedMillis = Math.max(1, System.currentTimeMillis() - myStartTime);
+    myIndicator.setFraction((double)done / myFiles.size());
+    myIndicator.setText2(DartBundle.message("dart.style.files.progress", done, myFiles.size(), done * 1000L / elapsedMillis,
+                                            myFailedCount.get()));
+  }
+}
@@ -86,7 +86,8 @@ public class DartInheritorsSearcher extends QueryExecutorBase<PsiElement, Defini
     }
 
     DartAnalysisServerService das = DartAnalysisServerService.getInstance(project);
-    List<TypeHierarchyItem> items = das.search_getTypeHierarchy(file, offset, false);
+    List<TypeHierarchyItem> items =
+      DartAnalysisServerService.awaitAsyncResult(das.search_getTypeHierarchyAsync(file, offset, false), Collections.emptyList());
     myLastResult = new WeakReference<>(new HierarchyInfo(file.getPath(), offset, modCount, items));
     return items;
   }
@@ -26,6 +26,7 @@ import org.dartlang.analysis.server.protocol.TypeHierarchyItem;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DartServerGotoSuperHandler implements LanguageCodeInsightActionHandler {
@@ -41,7 +42,8 @@ public class DartServerGotoSuperHandler implements LanguageCodeInsightActionHand
     // ask for the super type hierarchy
     final VirtualFile virtualFile = file.getVirtualFile();
     final int offset = inComponent.getComponentName().getTextRange().getStartOffset();
-    final List<TypeHierarchyItem> items = DartAnalysisServerService.getInstance(project).search_getTypeHierarchy(virtualFile, offset, true);
+    final List<TypeHierarchyItem> items = DartAnalysisServerService.awaitAsyncResult(
+      DartAnalysisServerService.getInstance(project).search_getTypeHierarchyAsync(virtualFile, offset, true), Collections.emptyList());
     // build list of DartComponent(s)
     final List<DartComponent> supers = new ArrayList<>();
     if (!items.isEmpty()) {
@@ -3,23 +3,20 @@ package com.jetbrains.lang.dart.ide.actions;
 
 import com.intellij.CommonBundle;
 import com.intellij.application.options.CodeStyle;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ex.ApplicationManagerEx;
-import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.ReadonlyStatusHandler;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -28,13 +25,11 @@ import com.intellij.psi.PsiFile;
 import com.jetbrains.lang.dart.DartBundle;
 import com.jetbrains.lang.dart.DartLanguage;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
-import gnu.trove.THashMap;
 import org.dartlang.analysis.server.protocol.SourceEdit;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.Map;
 
 import static com.intellij.openapi.util.text.StringUtil.isWhiteSpace;
 
@@ -163,53 +158,17 @@ public class DartStyleAction extends AbstractDartFileProcessingAction {
 
   // keep public to be accessible in 3rd party plugins
   public static void runDartfmt(@NotNull final Project project, @NotNull final List<? extends VirtualFile> dartFiles) {
-    final Map<VirtualFile, String> fileToNewContentMap = new THashMap<>();
     final int lineLength = getRightMargin(project);
 
     final Runnable runnable = () -> {
-      double fraction = 0.0;
-      for (final VirtualFile virtualFile : dartFiles) {
-        fraction += 1.0;
-        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
-        if (indicator != null) {
-          indicator.checkCanceled();
-          indicator.setText2(FileUtil.toSystemDependentName(virtualFile.getPath()));
-          if (dartFiles.size() > 1) {
-            indicator.setIndeterminate(false);
-            indicator.setFraction(fraction / dartFiles.size());
-          }
-        }
-
-        final DartAnalysisServerService.FormatResult formatResult =
-          DartAnalysisServerService.getInstance(project).edit_format(virtualFile, 0, 0, lineLength);
-        if (formatResult != null && formatResult.getEdits() != null && formatResult.getEdits().size() == 1) {
-          final String replacement = StringUtil.convertLineSeparators(formatResult.getEdits().get(0).getReplacement());
-          fileToNewContentMap.put(virtualFile, replacement);
-        }
-      }
+      final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+      new DartBulkFormatter(project, dartFiles, lineLength, indicator != null ? indicator : new EmptyProgressIndicator()).run();
     };
 
     DartAnalysisServerService.getInstance(project).updateFilesContent();
 
-    final boolean ok = ApplicationManagerEx.getApplicationEx()
+    ApplicationManagerEx.getApplicationEx()
       .runProcessWithProgressSynchronously(runnable, DartBundle.message("action.Dart.DartStyle.text"), true, project);
-
-    if (ok) {
-      final Runnable onSuccessRunnable = () -> {
-        for (Map.Entry<VirtualFile, String> entry : fileToNewContentMap.entrySet()) {
-          final VirtualFile file = entry.getKey();
-          final Document document = FileDocumentManager.getInstance().getDocument(file);
-          final String newContent = entry.getValue();
-
-          if (document != null && newContent != null) {
-            document.setText(newContent);
-          }
-        }
-      };
-
-      ApplicationManager.getApplication().runWriteAction(() -> CommandProcessor.getInstance()
-        .executeCommand(project, onSuccessRunnable, DartBundle.message("action.Dart.DartStyle.text"), null));
-    }
   }
 
   private static int getRightMargin(@NotNull Project project) {
@@ -38,6 +38,7 @@ import com.intellij.util.PlatformIcons;
 import com.intellij.util.ProcessingContext;
 import com.jetbrains.lang.dart.DartLanguage;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.analyzer.DartSuggestionSetIndex;
 import com.jetbrains.lang.dart.assists.AssistUtils;
 import com.jetbrains.lang.dart.assists.DartSourceEditException;
 import com.jetbrains.lang.dart.ide.codeInsight.DartCodeInsightSettings;
@@ -146,35 +147,28 @@ public class DartServerCompletionContributor extends CompletionContributor {
                    return;
                  }
 
-                 final AvailableSuggestionSet suggestionSet = das.getAvailableSuggestionSet(includedSet.getId());
-                 if (suggestionSet == null) {
+                 final DartSuggestionSetIndex suggestionSetIndex = das.getAvailableSuggestionSetIndex(includedSet.getId());
+                 if (suggestionSetIndex == null) {
                    return;
                  }
 
-                 Map<String, Map<String, Set<String>>> existingImports = das.getExistingImports(libraryFilePathSD);
-                 for (AvailableSuggestion suggestion : suggestionSet.getItems()) {
-                   final String kind = suggestion.getElement().getKind();
-                   if (!includedKinds.contains(kind)) {
-                     continue;
+                 final AvailableSuggestionSet suggestionSet = suggestionSetIndex.getSuggestionSet();
+                 final DartSuggestionSetIndex.ExistingImports existingImports = das.getExistingImportsIndex(libraryFilePathSD);
+                 final PrefixMatcher prefixMatcher = resultSet.getPrefixMatcher();
+                 suggestionSetIndex.processSuggestions(prefixMatcher.getPrefix(), includedKinds, suggestion -> {
+                   if (!labelMatches(prefixMatcher, suggestion.getLabel())) {
+                     return true;
                    }
 
-                   Set<String> importedLibraries = new HashSet<>();
                    if (existingImports != null) {
-                     for (Map.Entry<String, Map<String, Set<String>>> entry : existingImports.entrySet()) {
-                       String importedLibraryUri = entry.getKey();
-                       Map<String, Set<String>> importedLibrary = entry.getValue();
-                       Set<String> names = importedLibrary.get(suggestion.getDeclaringLibraryUri());
-                       if (names != null && names.contains(suggestion.getLabel())) {
-                         importedLibraries.add(importedLibraryUri);
-                       }
+                     final Set<String> importedLibraries =
+                       existingImports.getImportedLibraryUris(suggestion.getDeclaringLibraryUri(), suggestion.getLabel());
+                     if (!importedLibraries.isEmpty() && !importedLibraries.contains(suggestionSet.getUri())) {
+                       // If some library exports this label but the current suggestion set does not, we should filter.
+                       return true;
                      }
                    }
 
-                   if (!importedLibraries.isEmpty() && !importedLibraries.contains(suggestionSet.getUri())) {
-                     // If some library exports this label but the current suggestion set does not, we should filter.
-                     continue;
-                   }
-
                    CompletionSuggestion completionSuggestion =
                      createCompletionSuggestionFromAvailableSuggestion(suggestion, includedSet.getRelevance(), includedRelevanceTags);
                    String displayUri = includedSet.getDisplayUri() != null ? includedSet.getDisplayUri() : suggestionSet.getUri();
@@ -182,12 +176,25 @@ public class DartServerCompletionContributor extends CompletionContributor {
                      createLookupElement(project, completionSuggestion, suggestionSet.getId(), targetFile, true, displayUri);
 
                    resultSet.addElement(lookupElement);
-                 }
+                   return true;
+                 });
                });
              }
            });
   }
 
+  /**
+   * Cheap check that allows to skip creating lookup elements that would be filtered out by the result set anyway.
+   * Must be in sync with the lookup strings set in {@link #createLookupElement(Project, CompletionSuggestion, Integer, VirtualFile, boolean, String)}.
+   */
+  private static boolean labelMatches(@NotNull PrefixMatcher prefixMatcher, @NotNull String label) {
+    if (prefixMatcher.prefixMatches(label)) return true;
+
+    // 'path.Context' should match 'Conte' prefix
+    final int dotIndex = label.indexOf('.');
+    return dotIndex > 0 && dotIndex < label.length() - 1 && prefixMatcher.prefixMatches(label.substring(dotIndex + 1));
+  }
+
   private static boolean isRightAfterBadIdentifier(@NotNull CharSequence text, int offset) {
     if (offset == 0 || offset >= text.length()) return false;
 
@@ -106,8 +106,11 @@ public class DartDocumentationProvider implements DocumentationProvider {
   @Nullable
   public static HoverInformation getSingleHover(@NotNull final PsiFile psiFile, final int offset) {
     VirtualFile file = psiFile.getVirtualFile();
-    final List<HoverInformation> hoverList =
-      file != null ? DartAnalysisServerService.getInstance(psiFile.getProject()).analysis_getHover(file, offset) : Collections.emptyList();
+    if (file == null) {
+      return null;
+    }
+    final List<HoverInformation> hoverList = DartAnalysisServerService.awaitAsyncResult(
+      DartAnalysisServerService.getInstance(psiFile.getProject()).analysis_getHoverAsync(file, offset), Collections.emptyList());
     if (hoverList.isEmpty()) {
       return null;
     }
@@ -54,6 +54,7 @@ final class DartAnalysisToolWindowFactory implements ToolWindowFactory, DumbAwar
       ToolWindow toolWindow = toolWindowManager.getToolWindow(DartProblemsView.TOOLWINDOW_ID);
       if (toolWindow != null) {
         PropertiesComponent.getInstance(myProject).setValue(TOOL_WINDOW_VISIBLE_PROPERTY, toolWindow.isVisible(), true);
+        DartProblemsView.getInstance(myProject).toolWindowVisibilityChanged(toolWindow.isVisible());
       }
     }
   }
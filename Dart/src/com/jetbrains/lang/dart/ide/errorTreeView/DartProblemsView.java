@@ -13,10 +13,12 @@ import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.*;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsContexts.TabTitle;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.ui.GuiUtils;
 import com.intellij.ui.content.Content;
 import com.intellij.util.Alarm;
@@ -61,6 +63,8 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
   private int myFilesWithErrorsHash;
   private Notification myNotification;
   private boolean myDisabledForSession;
+  // problems are not kept while the tool window is hidden, they are requested from the server again when it is shown; EDT only
+  private boolean myProblemsDropped;
 
   private final Runnable myUpdateRunnable = new Runnable() {
     @Override
@@ -81,9 +85,14 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
       }
 
       DartProblemsViewPanel panel = getProblemsViewPanel();
-      if (panel != null) {
+      if (panel == null) return;
+
+      if (isProblemsKeptWhenHidden() || isToolWindowVisible()) {
         panel.setErrors(filePathToErrors);
       }
+      else {
+        dropProblems(panel);
+      }
     }
   };
 
@@ -288,6 +297,43 @@ public final class DartProblemsView implements PersistentStateComponent<DartProb
     }
   }
 
+  /**
+   * Called when the Dart Analysis tool window is shown or hidden.
+   */
+  void toolWindowVisibilityChanged(boolean visible) {
+    DartProblemsViewPanel panel = getProblemsViewPanel();
+    if (panel == null || isProblemsKeptWhenHidden()) return;
+
+    if (!visible) {
+      dropProblems(panel);
+    }
+    else if (myProblemsDropped) {
+      myProblemsDropped = false;
+      DartAnalysisServerService.getInstance(myProject).refreshProblemsView();
+    }
+  }
+
+  private static boolean isProblemsKeptWhenHidden() {
+    return !Registry.is("dart.server.data.compact.errors", true);
+  }
+
+  private boolean isToolWindowVisible() {
+    ToolWindow toolWindow = getDartAnalysisToolWindow();
+    return toolWindow != null && toolWindow.isVisible();
+  }
+
+  private void dropProblems(@NotNull DartProblemsViewPanel panel) {
+    if (!myProblemsDropped) {
+      myProblemsDropped = true;
+      panel.clearAll();
+    }
+
+    // the icon of the hidden tool window still shows if there are errors, the analysis server service keeps their summaries
+    DartAnalysisServerService service = DartAnalysisServerService.getInstance(myProject);
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(myProject);
+    setToolWindowIcon(DartProblemsViewPanel.getToolWindowIcon(service.hasErrors(scope), service.hasWarnings(scope)));
+  }
+
   public void clearAll() {
     ApplicationManager.getApplication().assertIsDispatchThread();
 
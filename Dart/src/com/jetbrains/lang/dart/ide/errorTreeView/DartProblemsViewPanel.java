@@ -236,7 +236,11 @@ public class DartProblemsViewPanel extends SimpleToolWindowPanel implements Data
     DartProblemsTableModel model = (DartProblemsTableModel)myTable.getModel();
     DartProblemsView problemsView = DartProblemsView.getInstance(myProject);
     problemsView.setHeaderText(model.getStatusText());
-    problemsView.setToolWindowIcon(model.hasErrors() ? DART_ERRORS_ICON : model.hasWarnings() ? DART_WARNINGS_ICON : DartIcons.Dart_13);
+    problemsView.setToolWindowIcon(getToolWindowIcon(model.hasErrors(), model.hasWarnings()));
+  }
+
+  static @NotNull Icon getToolWindowIcon(boolean hasErrors, boolean hasWarnings) {
+    return hasErrors ? DART_ERRORS_ICON : hasWarnings ? DART_WARNINGS_ICON : DartIcons.Dart_13;
   }
 
   private static void addReanalyzeActions(@NotNull DefaultActionGroup group) {
@@ -0,0 +1,78 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.errorTreeView;
+
+import com.google.dart.server.internal.remote.AnalysisServerMetrics;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.jetbrains.lang.dart.DartBundle;
+import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Writes the last requests to and responses from the Dart Analysis Server to a JSONL file in the log folder,
+ * and the latency and size statistics to idea.log.
+ * Tracing is off by default, so the first invocation turns it on,
+ * unless it's already enabled with the {@code dart.server.trace.capacity} registry key.
+ */
+public class DumpAnalysisServerTraceAction extends DumbAwareAction {
+  private static final Logger LOG = Logger.getInstance(DumpAnalysisServerTraceAction.class);
+  private static final String GROUP_DISPLAY_ID = "Dart Analysis Server";
+  private static final int TRACE_CAPACITY = 300;
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    final Project project = e.getProject();
+    final DartAnalysisServerService service = project == null ? null : DartAnalysisServerService.getInstance(project);
+    e.getPresentation().setEnabledAndVisible(service != null && service.isServerProcessActive());
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    final Project project = e.getProject();
+    if (project == null) return;
+
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance(project);
+    final AnalysisServerMetrics metrics = service.getServerMetrics();
+    if (metrics == null) return;
+
+    LOG.info("Dart Analysis Server metrics:\n" + service.getServerMetricsReport());
+
+    if (metrics.getTraceCapacity() == 0) {
+      metrics.setTraceCapacity(TRACE_CAPACITY);
+      Notifications.Bus.notify(new Notification(GROUP_DISPLAY_ID, DartBundle.message("analysis.server.dump.trace.title"),
+                                                DartBundle.message("analysis.server.dump.trace.enabled"),
+                                                NotificationType.INFORMATION), project);
+      return;
+    }
+
+    final String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    final File file = new File(PathManager.getLogPath(), "dart-analysis-server-trace-" + timestamp + ".jsonl");
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      metrics.writeTrace(writer);
+    }
+    catch (IOException ex) {
+      LOG.warn(ex);
+      Notifications.Bus.notify(new Notification(GROUP_DISPLAY_ID, DartBundle.message("analysis.server.dump.trace.error"), ex.getMessage(),
+                                                NotificationType.ERROR), project);
+      return;
+    }
+
+    Notifications.Bus.notify(new Notification(GROUP_DISPLAY_ID, DartBundle.message("analysis.server.dump.trace.title"),
+                                              DartBundle.message("analysis.server.dump.trace.saved.to.0", file.getPath()),
+                                              NotificationType.INFORMATION), project);
+  }
+}
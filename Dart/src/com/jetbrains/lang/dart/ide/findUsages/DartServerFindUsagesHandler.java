@@ -26,6 +26,9 @@ import org.dartlang.analysis.server.protocol.SearchResultKind;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.List;
+
 public class DartServerFindUsagesHandler extends FindUsagesHandler {
   public DartServerFindUsagesHandler(@NotNull final PsiElement element) {
     super(mayBeChangeToNameIdentifier(element));
@@ -81,7 +84,11 @@ public class DartServerFindUsagesHandler extends FindUsagesHandler {
     final VirtualFile file = ReadAction.compute(() -> elementToSearch.getContainingFile().getVirtualFile());
 
     final int offset = elementToSearch.getTextRange().getStartOffset();
-    service.search_findElementReferences(file, offset, searchResultProcessor);
+    final List<SearchResult> results =
+      DartAnalysisServerService.awaitAsyncResult(service.search_findElementReferencesAsync(file, offset), Collections.emptyList());
+    for (SearchResult result : results) {
+      searchResultProcessor.consume(result);
+    }
 
     return true;
   }
@@ -15,6 +15,7 @@ import com.jetbrains.lang.dart.psi.DartComponentName;
 import org.dartlang.analysis.server.protocol.TypeHierarchyItem;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -54,8 +55,9 @@ public class CreateEqualsAndHashcodeFix extends BaseCreateMethodsFix<DartCompone
       return false;
     }
 
-    final List<TypeHierarchyItem> items = DartAnalysisServerService.getInstance(dartClass.getProject())
-      .search_getTypeHierarchy(file, name.getTextRange().getStartOffset(), true);
+    final DartAnalysisServerService das = DartAnalysisServerService.getInstance(project);
+    final List<TypeHierarchyItem> items = DartAnalysisServerService
+      .awaitAsyncResult(das.search_getTypeHierarchyAsync(file, name.getTextRange().getStartOffset(), true), Collections.emptyList());
 
     for (DartClass superClass : DartServerTypeHierarchyTreeStructure.filterSuperClasses(project, items)) {
       if (superClass != null && superClass.getName() != null && !superClass.getName().equals("Object")) {
@@ -59,8 +59,9 @@ public final class DartHierarchyUtil {
     final DartComponentName name = dartClass.getComponentName();
     if (name == null) return Collections.emptyList();
 
-    return DartAnalysisServerService.getInstance(dartClass.getProject())
-      .search_getTypeHierarchy(file, name.getTextRange().getStartOffset(), false);
+    final DartAnalysisServerService das = DartAnalysisServerService.getInstance(dartClass.getProject());
+    return DartAnalysisServerService
+      .awaitAsyncResult(das.search_getTypeHierarchyAsync(file, name.getTextRange().getStartOffset(), false), Collections.emptyList());
   }
 
   public static boolean isExecutable(@NotNull PsiElement component) {
@@ -31,8 +31,9 @@ public class DartCalleeTreeStructure extends DartCallHierarchyTreeStructure {
     PsiFile file = decl.getContainingFile();
     if (file == null) return;
     VirtualFile vFile = file.getVirtualFile();
+    DartAnalysisServerService das = DartAnalysisServerService.getInstance(element.getProject());
     List<DartNavigationRegion> navRegions =
-      DartAnalysisServerService.getInstance(element.getProject()).analysis_getNavigation(vFile, decl.getTextOffset(), decl.getTextLength());
+      DartAnalysisServerService.awaitAsyncResult(das.analysis_getNavigationAsync(vFile, decl.getTextOffset(), decl.getTextLength()), null);
     if (navRegions == null) return;
     resolveReferences(decl, navRegions, results);
   }
@@ -2,11 +2,13 @@
 package com.jetbrains.lang.dart.ide.index;
 
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.indexing.FileContent;
 import com.jetbrains.lang.dart.DartComponentType;
+import com.jetbrains.lang.dart.DartFileType;
 import com.jetbrains.lang.dart.psi.*;
 import com.jetbrains.lang.dart.util.DartControlFlowUtil;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
@@ -19,7 +21,7 @@ import static com.jetbrains.lang.dart.ide.index.DartImportOrExportInfo.Kind;
 
 public class DartIndexUtil {
   // inc when change parser
-  public static final int INDEX_VERSION = 25;
+  public static final int INDEX_VERSION = 26;
 
   private static final Key<DartFileIndexData> ourDartCachesData = Key.create("dart.caches.index.data");
 
@@ -30,13 +32,20 @@ public class DartIndexUtil {
     synchronized (content) {
       indexData = content.getUserData(ourDartCachesData);
       if (indexData != null) return indexData;
-      indexData = indexFileRoots(content.getPsiFile());
+      if (content.getFileType() == DartFileType.INSTANCE && Registry.is("dart.index.lexer.fast.path", true)) {
+        // most files are indexed without building PSI, the lexer-based indexer gives up on anything unusual
+        indexData = DartLexerIndexer.indexFile(content.getContentAsText());
+      }
+      if (indexData == null) {
+        indexData = indexFileRoots(content.getPsiFile());
+      }
+      content.putUserData(ourDartCachesData, indexData);
     }
 
     return indexData;
   }
 
-  private static DartFileIndexData indexFileRoots(PsiFile psiFile) {
+  static DartFileIndexData indexFileRoots(PsiFile psiFile) {
     DartFileIndexData result = new DartFileIndexData();
 
     final DartLibraryStatement libraryStatement = PsiTreeUtil.getChildOfType(psiFile, DartLibraryStatement.class);
@@ -0,0 +1,665 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.jetbrains.lang.dart.DartComponentType;
+import com.jetbrains.lang.dart.lexer.DartLexer;
+import com.jetbrains.lang.dart.util.DartPsiImplUtil;
+import gnu.trove.THashSet;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.jetbrains.lang.dart.DartTokenTypes.*;
+import static com.jetbrains.lang.dart.DartTokenTypesSets.*;
+import static com.jetbrains.lang.dart.ide.index.DartImportOrExportInfo.Kind;
+
+/**
+ * Fills {@link DartFileIndexData} from the {@link DartLexer} token stream, without building PSI.
+ * <p>
+ * Only the shapes of declarations that the parser handles unambiguously are recognized. For anything else, such as syntax errors,
+ * unbalanced brackets or expressions where {@code <} may start type arguments, {@link #indexFile(CharSequence)} returns {@code null}
+ * and the caller falls back to the PSI-based indexing, so that both ways give the same result.
+ */
+final class DartLexerIndexer {
+  private static final TokenSet SKIPPED_TOKENS = TokenSet.orSet(WHITE_SPACES, COMMENTS);
+  private static final TokenSet NON_STRICT_ID = TokenSet.orSet(TokenSet.create(IDENTIFIER), BUILT_IN_IDENTIFIERS);
+  private static final TokenSet TYPE_ARGUMENT_TOKENS = TokenSet.orSet(NON_STRICT_ID, TokenSet.create(COMMA, DOT, QUEST, EXTENDS, VOID));
+  private static final TokenSet MODIFIERS = TokenSet.create(EXTERNAL, STATIC, ABSTRACT, COVARIANT, LATE, FINAL, CONST, VAR);
+  private static final TokenSet GETTER_NAME_FOLLOWERS = TokenSet.create(LPAREN, EXPRESSION_BODY_DEF, LBRACE, SEMICOLON, ASYNC, SYNC, NATIVE);
+  private static final TokenSet OPENING_TOKENS = TokenSet.create(LPAREN, LBRACKET, LBRACE, OPEN_QUOTE, LONG_TEMPLATE_ENTRY_START);
+  private static final TokenSet CLOSING_TOKENS = TokenSet.create(RPAREN, RBRACKET, RBRACE, CLOSING_QUOTE, LONG_TEMPLATE_ENTRY_END);
+  private static final int MAX_OPERATOR_TOKENS = 3;
+
+  private final CharSequence myText;
+  private final IElementType[] myTypes;
+  private final int[] myStarts;
+  private final int[] myEnds;
+  // for each opening token - the index of the matching closing token
+  private final int[] myMatches;
+  private final int myCount;
+
+  private final DartFileIndexData myResult = new DartFileIndexData();
+  // component infos are created when the library name is known
+  private final List<Pair<String, DartComponentType>> myTopLevelComponents = new ArrayList<>();
+  private final List<String> myImportPrefixes = new ArrayList<>();
+
+  private DartLexerIndexer(@NotNull CharSequence text,
+                           @NotNull List<IElementType> types,
+                           @NotNull TIntArrayList starts,
+                           @NotNull TIntArrayList ends) {
+    myText = text;
+    myTypes = types.toArray(IElementType.EMPTY_ARRAY);
+    myStarts = starts.toNativeArray();
+    myEnds = ends.toNativeArray();
+    myCount = myTypes.length;
+    myMatches = new int[myCount];
+  }
+
+  /**
+   * @return index data equal to the one built from PSI, or {@code null} if the file content can't be reliably indexed without PSI
+   */
+  @Nullable
+  static DartFileIndexData indexFile(@NotNull CharSequence text) {
+    final List<IElementType> types = new ArrayList<>();
+    final TIntArrayList starts = new TIntArrayList();
+    final TIntArrayList ends = new TIntArrayList();
+
+    final DartLexer lexer = new DartLexer();
+    lexer.start(text);
+    IElementType tokenType;
+    while ((tokenType = lexer.getTokenType()) != null) {
+      if (tokenType == BAD_CHARACTER) return null;
+      if (!SKIPPED_TOKENS.contains(tokenType)) {
+        types.add(tokenType);
+        starts.add(lexer.getTokenStart());
+        ends.add(lexer.getTokenEnd());
+      }
+      lexer.advance();
+    }
+
+    final DartLexerIndexer indexer = new DartLexerIndexer(text, types, starts, ends);
+    return indexer.matchBrackets() ? indexer.index() : null;
+  }
+
+  private boolean matchBrackets() {
+    final TIntArrayList stack = new TIntArrayList();
+    for (int i = 0; i < myCount; i++) {
+      final IElementType type = myTypes[i];
+      if (OPENING_TOKENS.contains(type)) {
+        stack.add(i);
+      }
+      else if (CLOSING_TOKENS.contains(type)) {
+        if (stack.isEmpty()) return false;
+        final int openIndex = stack.remove(stack.size() - 1);
+        if (getClosingToken(myTypes[openIndex]) != type) return false;
+        myMatches[openIndex] = i;
+      }
+    }
+    return stack.isEmpty();
+  }
+
+  @NotNull
+  private static IElementType getClosingToken(@NotNull IElementType openingToken) {
+    if (openingToken == LPAREN) return RPAREN;
+    if (openingToken == LBRACKET) return RBRACKET;
+    if (openingToken == LBRACE) return RBRACE;
+    if (openingToken == OPEN_QUOTE) return CLOSING_QUOTE;
+    return LONG_TEMPLATE_ENTRY_END;
+  }
+
+  @Nullable
+  private DartFileIndexData index() {
+    int i = 0;
+    while (i < myCount) {
+      i = topLevelDefinition(i);
+      if (i < 0) return null;
+    }
+
+    for (Pair<String, DartComponentType> component : myTopLevelComponents) {
+      myResult.addComponentInfo(component.first, new DartComponentInfo(component.second, myResult.getLibraryName()));
+    }
+    for (String importPrefix : myImportPrefixes) {
+      myResult.addComponentInfo(importPrefix, new DartComponentInfo(DartComponentType.LABEL, null));
+    }
+    return myResult;
+  }
+
+  @Nullable
+  private IElementType typeAt(int index, int limit) {
+    return index < limit ? myTypes[index] : null;
+  }
+
+  private boolean isNonStrictId(int index, int limit) {
+    final IElementType type = typeAt(index, limit);
+    return type != null && NON_STRICT_ID.contains(type);
+  }
+
+  private boolean isStringStart(int index, int limit) {
+    final IElementType type = typeAt(index, limit);
+    return type == OPEN_QUOTE || type == RAW_SINGLE_QUOTED_STRING || type == RAW_TRIPLE_QUOTED_STRING;
+  }
+
+  @NotNull
+  private String getText(int index) {
+    return myText.subSequence(myStarts[index], myEnds[index]).toString();
+  }
+
+  private int skipToken(int index) {
+    return OPENING_TOKENS.contains(myTypes[index]) ? myMatches[index] + 1 : index + 1;
+  }
+
+  private int topLevelDefinition(int i) {
+    i = skipMetadata(i, myCount);
+    if (i < 0) return -1;
+
+    final IElementType type = typeAt(i, myCount);
+    if (type == LIBRARY && isNonStrictId(i + 1, myCount)) return libraryStatement(i + 1);
+    if (type == PART && typeAt(i + 1, myCount) == OF) {
+      myResult.setIsPart(true);
+      return skipToSemicolon(i + 2, myCount);
+    }
+    if (type == PART && isStringStart(i + 1, myCount)) return partStatement(i + 1);
+    if ((type == IMPORT || type == EXPORT) && isStringStart(i + 1, myCount)) return importOrExportStatement(i);
+    if (type == CLASS) return classDefinition(i + 1, true);
+    if (type == ABSTRACT && typeAt(i + 1, myCount) == CLASS) return classDefinition(i + 2, true);
+    if (type == MIXIN && isNonStrictId(i + 1, myCount)) return classDefinition(i + 1, false);
+    if (type == ENUM) return enumDefinition(i + 1);
+    if (type == EXTENSION && (isNonStrictId(i + 1, myCount) || typeAt(i + 1, myCount) == LT)) return extensionDeclaration(i + 1);
+    if (type == TYPEDEF) return functionTypeAlias(i + 1);
+    return declaration(i, myCount, null);
+  }
+
+  private int skipMetadata(int i, int limit) {
+    while (typeAt(i, limit) == AT) {
+      if (!isNonStrictId(++i, limit)) return -1;
+      i++;
+      while (typeAt(i, limit) == DOT) {
+        if (!isNonStrictId(++i, limit)) return -1;
+        i++;
+      }
+      if (typeAt(i, limit) == LT) {
+        i = skipTypeArguments(i, limit);
+        if (i < 0) return -1;
+      }
+      if (typeAt(i, limit) == LPAREN) {
+        i = myMatches[i] + 1;
+      }
+    }
+    return i;
+  }
+
+  private int skipTypeArguments(int i, int limit) {
+    int depth = 0;
+    while (true) {
+      final IElementType type = typeAt(i, limit);
+      if (type == LT) {
+        depth++;
+      }
+      else if (type == GT) {
+        if (--depth == 0) return i + 1;
+      }
+      else if (type == LPAREN) {
+        i = myMatches[i];
+      }
+      else if (type == null || !TYPE_ARGUMENT_TOKENS.contains(type)) {
+        return -1;
+      }
+      i++;
+    }
+  }
+
+  private int skipToSemicolon(int i, int limit) {
+    while (true) {
+      final IElementType type = typeAt(i, limit);
+      if (type == null) return -1;
+      if (type == SEMICOLON) return i + 1;
+      i = skipToken(i);
+    }
+  }
+
+  /**
+   * @return the index after the string literal, or -1 if it is not a plain string literal
+   */
+  private int skipUri(int i, int limit) {
+    final int end;
+    if (typeAt(i, limit) == OPEN_QUOTE) {
+      for (int j = i + 1; j < myMatches[i]; j++) {
+        if (myTypes[j] != REGULAR_STRING_PART) return -1; // string templates
+      }
+      end = myMatches[i] + 1;
+    }
+    else {
+      end = i + 1;
+    }
+    // adjacent string literals
+    return isStringStart(end, limit) ? -1 : end;
+  }
+
+  @NotNull
+  private String getUriString(int start, int end) {
+    final String text = myText.subSequence(myStarts[start], myEnds[end - 1]).toString();
+    return DartPsiImplUtil.getUnquotedDartStringAndItsRange(text).first;
+  }
+
+  private int libraryStatement(int i) {
+    final StringBuilder name = new StringBuilder();
+    while (true) {
+      if (!isNonStrictId(i, myCount)) return -1;
+      if (name.length() > 0) {
+        name.append('.');
+      }
+      name.append(getText(i++));
+
+      final IElementType type = typeAt(i, myCount);
+      if (type == SEMICOLON) break;
+      if (type != DOT) return -1;
+      i++;
+    }
+
+    if (myResult.getLibraryName() == null) {
+      myResult.setLibraryName(name.toString());
+    }
+    return i + 1;
+  }
+
+  private int partStatement(int i) {
+    final int uriEnd = skipUri(i, myCount);
+    if (uriEnd < 0 || typeAt(uriEnd, myCount) != SEMICOLON) return -1;
+    myResult.addPartUri(getUriString(i, uriEnd));
+    return uriEnd + 1;
+  }
+
+  private int importOrExportStatement(int i) {
+    final Kind kind = myTypes[i] == IMPORT ? Kind.Import : Kind.Export;
+    final int uriStart = i + 1;
+    final int uriEnd = skipUri(uriStart, myCount);
+    if (uriEnd < 0) return -1;
+
+    i = uriEnd;
+    while (typeAt(i, myCount) == IF) {
+      if (typeAt(i + 1, myCount) != LPAREN) return -1;
+      i = skipUri(myMatches[i + 1] + 1, myCount);
+      if (i < 0) return -1;
+    }
+
+    String importPrefix = null;
+    if (kind == Kind.Import) {
+      if (typeAt(i, myCount) == DEFERRED) {
+        i++;
+      }
+      if (typeAt(i, myCount) == AS) {
+        if (!isNonStrictId(i + 1, myCount)) return -1;
+        importPrefix = getText(i + 1);
+        i += 2;
+      }
+    }
+
+    final Set<String> showComponentNames = new THashSet<>();
+    final Set<String> hideComponentNames = new THashSet<>();
+    while (typeAt(i, myCount) == SHOW || typeAt(i, myCount) == HIDE) {
+      final Set<String> names = myTypes[i] == SHOW ? showComponentNames : hideComponentNames;
+      do {
+        if (!isNonStrictId(++i, myCount)) return -1;
+        names.add(getText(i++));
+      }
+      while (typeAt(i, myCount) == COMMA);
+    }
+    if (typeAt(i, myCount) != SEMICOLON) return -1;
+
+    myResult.addImportInfo(new DartImportOrExportInfo(kind, getUriString(uriStart, uriEnd), importPrefix, showComponentNames,
+                                                      hideComponentNames));
+    if (importPrefix != null) {
+      myImportPrefixes.add(importPrefix);
+    }
+    return i + 1;
+  }
+
+  private int classDefinition(int nameIndex, boolean allowMixinApplication) {
+    if (!isNonStrictId(nameIndex, myCount)) return -1;
+
+    int i = nameIndex + 1;
+    while (true) {
+      final IElementType type = typeAt(i, myCount);
+      if (type == null || type == SEMICOLON) return -1;
+      if (type == LBRACE) break;
+      if (type == EQ) {
+        if (!allowMixinApplication) return -1;
+        addClass(nameIndex);
+        return skipToSemicolon(i + 1, myCount);
+      }
+      i = skipToken(i);
+    }
+
+    addClass(nameIndex);
+    final int bodyEnd = myMatches[i];
+    i++;
+    while (i < bodyEnd) {
+      i = declaration(i, bodyEnd, getText(nameIndex));
+      if (i < 0) return -1;
+    }
+    return bodyEnd + 1;
+  }
+
+  private void addClass(int nameIndex) {
+    final String name = getText(nameIndex);
+    myResult.addSymbol(name);
+    myResult.addClassName(name);
+    myTopLevelComponents.add(Pair.create(name, DartComponentType.CLASS));
+  }
+
+  private int enumDefinition(int nameIndex) {
+    if (!isNonStrictId(nameIndex, myCount) || typeAt(nameIndex + 1, myCount) != LBRACE) return -1;
+
+    addClass(nameIndex);
+    final int bodyEnd = myMatches[nameIndex + 1];
+    int i = nameIndex + 2;
+    while (i < bodyEnd) {
+      if (!isNonStrictId(i, bodyEnd)) return -1;
+      myResult.addSymbol(getText(i++));
+      if (i == bodyEnd) break;
+      if (myTypes[i++] != COMMA) return -1;
+    }
+    return bodyEnd + 1;
+  }
+
+  private int extensionDeclaration(int i) {
+    // extensions are not indexed, but 'extension' may also be a type name
+    boolean seenOn = false;
+    while (true) {
+      final IElementType type = typeAt(i, myCount);
+      if (type == null || type == SEMICOLON || type == EQ) return -1;
+      if (type == LBRACE) return seenOn ? myMatches[i] + 1 : -1;
+      if (type == ON) {
+        seenOn = true;
+      }
+      i = skipToken(i);
+    }
+  }
+
+  private int functionTypeAlias(int i) {
+    if (isNonStrictId(i, myCount)) {
+      int afterName = i + 1;
+      if (typeAt(afterName, myCount) == LT) {
+        afterName = skipTypeArguments(afterName, myCount);
+      }
+      if (afterName >= 0 && typeAt(afterName, myCount) == EQ) {
+        addTopLevelComponent(i, DartComponentType.TYPEDEF);
+        return skipToSemicolon(afterName + 1, myCount);
+      }
+    }
+
+    int candidate = -1;
+    int nameEnd = -1;
+    while (true) {
+      final IElementType type = typeAt(i, myCount);
+      if (type == LPAREN) {
+        if (candidate < 0 || i != nameEnd) return -1;
+        addTopLevelComponent(candidate, DartComponentType.TYPEDEF);
+        i = myMatches[i] + 1;
+        return typeAt(i, myCount) == SEMICOLON ? i + 1 : -1;
+      }
+      if (isNonStrictId(i, myCount)) {
+        if (isFunctionType(i, myCount)) return -1;
+        candidate = i;
+        nameEnd = ++i;
+      }
+      else if (type == LT) {
+        if (candidate < 0) return -1;
+        i = skipTypeArguments(i, myCount);
+        if (i < 0) return -1;
+        nameEnd = i;
+      }
+      else if (type == VOID || type == DOT || type == QUEST) {
+        i++;
+      }
+      else {
+        return -1;
+      }
+    }
+  }
+
+  private boolean isFunctionType(int i, int limit) {
+    final IElementType next = typeAt(i + 1, limit);
+    return (next == LPAREN || next == LT) && myTypes[i] == IDENTIFIER && "Function".equals(getText(i));
+  }
+
+  /**
+   * Top-level or class member function, getter, setter, operator, constructor or variable declaration list.
+   *
+   * @param className {@code null} for top-level declarations
+   */
+  private int declaration(int i, int limit, @Nullable String className) {
+    i = skipMetadata(i, limit);
+    if (i < 0) return -1;
+
+    boolean finalOrVar = false;
+    boolean isConst = false;
+    boolean accessorAllowed = true;
+    boolean methodAllowed = true;
+    IElementType type;
+    while ((type = typeAt(i, limit)) != null && MODIFIERS.contains(type)) {
+      finalOrVar |= type == FINAL || type == VAR;
+      isConst |= type == CONST;
+      accessorAllowed &= type == EXTERNAL || type == STATIC;
+      methodAllowed &= type == EXTERNAL || type == STATIC || type == CONST;
+      i++;
+    }
+
+    // 'const' is allowed only for constructors; 'abstract', 'late', 'covariant', 'final' and 'var' only for variables
+    final boolean functionAllowed = className != null ? methodAllowed : accessorAllowed;
+
+    if (className != null && type == FACTORY) {
+      return functionAllowed ? factoryConstructor(i + 1, limit) : -1;
+    }
+
+    int candidate = -1;
+    int nameEnd = -1;
+    boolean hasType = false;
+    while (true) {
+      type = typeAt(i, limit);
+      if (type == null) return -1;
+
+      if (type == GET && isNonStrictId(i + 1, limit) && GETTER_NAME_FOLLOWERS.contains(typeAt(i + 2, limit))) {
+        if (!accessorAllowed) return -1;
+        addDeclaration(i + 1, DartComponentType.FUNCTION, className);
+        i += 2;
+        return functionTail(myTypes[i] == LPAREN ? myMatches[i] + 1 : i, limit, false);
+      }
+      if (type == SET && isNonStrictId(i + 1, limit) && typeAt(i + 2, limit) == LPAREN) {
+        if (!accessorAllowed) return -1;
+        addDeclaration(i + 1, DartComponentType.FUNCTION, className);
+        return functionTail(myMatches[i + 2] + 1, limit, false);
+      }
+      if (type == OPERATOR && className != null && typeAt(i + 1, limit) != LPAREN) {
+        return accessorAllowed ? operatorDeclaration(i + 1, limit) : -1;
+      }
+
+      if (isNonStrictId(i, limit)) {
+        if (isFunctionType(i, limit)) {
+          i++;
+          if (myTypes[i] == LT) {
+            i = skipTypeArguments(i, limit);
+            if (i < 0 || typeAt(i, limit) != LPAREN) return -1;
+          }
+          i = myMatches[i] + 1;
+          hasType = true;
+          candidate = -1;
+          continue;
+        }
+        if (candidate >= 0 && myTypes[i - 1] != DOT) {
+          hasType = true;
+        }
+        candidate = i;
+        nameEnd = ++i;
+      }
+      else if (type == LT) {
+        if (candidate < 0) return -1;
+        i = skipTypeArguments(i, limit);
+        if (i < 0) return -1;
+        nameEnd = i;
+      }
+      else if (type == VOID) {
+        hasType = true;
+        candidate = -1;
+        i++;
+      }
+      else if (type == DOT || type == QUEST) {
+        i++;
+      }
+      else if (type == LPAREN) {
+        if (candidate < 0 || i != nameEnd || !functionAllowed) return -1;
+        addDeclaration(candidate, DartComponentType.FUNCTION, className);
+        return functionTail(myMatches[i] + 1, limit, className != null);
+      }
+      else if (type == EQ || type == COMMA || type == SEMICOLON) {
+        if (candidate < 0 || i != candidate + 1 || !(hasType || finalOrVar || isConst)) return -1;
+        return variables(candidate, limit, className);
+      }
+      else {
+        return -1;
+      }
+    }
+  }
+
+  private void addDeclaration(int nameIndex, @NotNull DartComponentType topLevelType, @Nullable String className) {
+    if (className == null) {
+      addTopLevelComponent(nameIndex, topLevelType);
+    }
+    else {
+      myResult.addSymbol(getText(nameIndex));
+    }
+  }
+
+  private void addTopLevelComponent(int nameIndex, @NotNull DartComponentType type) {
+    final String name = getText(nameIndex);
+    myResult.addSymbol(name);
+    myTopLevelComponents.add(Pair.create(name, type));
+  }
+
+  private int factoryConstructor(int i, int limit) {
+    if (!isNonStrictId(i, limit)) return -1;
+    if (typeAt(i + 1, limit) == DOT) {
+      i += 2;
+      if (!isNonStrictId(i, limit)) return -1;
+    }
+    if (typeAt(i + 1, limit) != LPAREN) return -1;
+
+    myResult.addSymbol(getText(i));
+    return functionTail(myMatches[i + 1] + 1, limit, true);
+  }
+
+  private int operatorDeclaration(int i, int limit) {
+    int paren = i;
+    while (typeAt(paren, limit) != LPAREN) {
+      if (typeAt(paren, limit) == null || paren - i >= MAX_OPERATOR_TOKENS) return -1;
+      paren++;
+    }
+    if (paren == i) return -1;
+
+    myResult.addSymbol(myText.subSequence(myStarts[i], myEnds[paren - 1]).toString());
+    return functionTail(myMatches[paren] + 1, limit, true);
+  }
+
+  /**
+   * Skips everything after the parameter list of a function or a method.
+   *
+   * @param allowInitializers whether constructor initializers and redirections are allowed
+   */
+  private int functionTail(int i, int limit, boolean allowInitializers) {
+    while (true) {
+      final IElementType type = typeAt(i, limit);
+      if (type == ASYNC || type == SYNC) {
+        i++;
+        if (typeAt(i, limit) == MUL) {
+          i++;
+        }
+      }
+      else if (type == NATIVE) {
+        i++;
+        if (isStringStart(i, limit)) {
+          i = skipToken(i);
+        }
+      }
+      else if (type == LBRACE) {
+        return myMatches[i] + 1;
+      }
+      else if (type == SEMICOLON) {
+        return i + 1;
+      }
+      else if (type == EXPRESSION_BODY_DEF) {
+        return skipToSemicolon(i + 1, limit);
+      }
+      else if (type == EQ && allowInitializers) {
+        return skipToSemicolon(i + 1, limit);
+      }
+      else if (type == COLON && allowInitializers) {
+        return constructorInitializers(i + 1, limit);
+      }
+      else {
+        return -1;
+      }
+    }
+  }
+
+  private int constructorInitializers(int i, int limit) {
+    while (true) {
+      final IElementType type = typeAt(i, limit);
+      if (type == null) return -1;
+      if (type == SEMICOLON) return i + 1;
+      if (type == LBRACE) {
+        final int next = myMatches[i] + 1;
+        final IElementType nextType = typeAt(next, limit);
+        // a map literal or a closure in the initializer list, not the constructor body
+        if (nextType == COMMA || nextType == SEMICOLON || nextType == LBRACE) return -1;
+        return next;
+      }
+      i = skipToken(i);
+    }
+  }
+
+  private int variables(int i, int limit, @Nullable String className) {
+    while (true) {
+      addDeclaration(i, DartComponentType.GLOBAL_VARIABLE, className);
+      i++;
+      if (typeAt(i, limit) == EQ) {
+        i = skipVariableInitializer(i + 1, limit);
+        if (i < 0) return -1;
+      }
+
+      final IElementType type = typeAt(i, limit);
+      if (type == SEMICOLON) return i + 1;
+      if (type != COMMA || !isNonStrictId(i + 1, limit)) return -1;
+      i++;
+    }
+  }
+
+  /**
+   * @return the index of the comma or semicolon that ends the initializer
+   */
+  private int skipVariableInitializer(final int start, int limit) {
+    // in 'a < b, c > (d)' the comma may separate either variables or type arguments
+    boolean mayBeTypeArguments = false;
+    int i = start;
+    while (true) {
+      final IElementType type = typeAt(i, limit);
+      if (type == null) return -1;
+      if (type == SEMICOLON) return i;
+      if (type == COMMA) return mayBeTypeArguments ? -1 : i;
+      if (type == LT && (i == start || myTypes[i - 1] == CONST)) {
+        // typed collection literal
+        i = skipTypeArguments(i, limit);
+        if (i < 0) return -1;
+        continue;
+      }
+      mayBeTypeArguments |= type == LT;
+      i = skipToken(i);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.ide.index;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
@@ -108,6 +109,21 @@ public class DartLibraryIndex extends ScalarIndexExtension<String> {
       return data.second;
     }
 
+    final String contentHash;
+    try {
+      contentHash = DartSdkLibrariesCache.computeHash(librariesDartFile.contentsToByteArray());
+    }
+    catch (IOException e) {
+      return new BidirectionalMap<>();
+    }
+
+    final BidirectionalMap<String, String> cachedMap =
+      DartSdkLibrariesCache.load(DartSdkLibrariesCache.getCacheDir(), sdkHomePath, contentHash);
+    if (cachedMap != null) {
+      librariesDartFile.putUserData(LIBRARIES_TIME_AND_MAP_KEY, Pair.create(modificationCount, cachedMap));
+      return cachedMap;
+    }
+
     final VirtualFile finalLibrariesDartFile = librariesDartFile;
     return ReadAction.compute(() -> {
       try {
@@ -121,6 +137,8 @@ public class DartLibraryIndex extends ScalarIndexExtension<String> {
         final Pair<Long, BidirectionalMap<String, String>> data1 =
           Pair.create(modificationCount, computeSdkLibUriToRelativePathMap((DartFile)psiFile));
         finalLibrariesDartFile.putUserData(LIBRARIES_TIME_AND_MAP_KEY, data1);
+        ApplicationManager.getApplication().executeOnPooledThread(
+          () -> DartSdkLibrariesCache.save(DartSdkLibrariesCache.getCacheDir(), sdkHomePath, contentHash, data1.second));
         return data1.second;
       }
       catch (IOException e) {
@@ -129,6 +147,17 @@ public class DartLibraryIndex extends ScalarIndexExtension<String> {
     });
   }
 
+  /**
+   * Computes the map in a pooled thread, so that the first resolve after project opening or Dart SDK switch doesn't wait for it.
+   */
+  public static void preloadSdkLibUriToRelativePathMap(@NotNull final Project project, @NotNull final String sdkHomePath) {
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      if (!project.isDisposed()) {
+        getSdkLibUriToRelativePathMap(project, sdkHomePath);
+      }
+    });
+  }
+
   private static BidirectionalMap<String, String> computeSdkLibUriToRelativePathMap(final @NotNull DartFile librariesDartFile) {
 /*
 const Map<String, LibraryInfo> LIBRARIES = const {
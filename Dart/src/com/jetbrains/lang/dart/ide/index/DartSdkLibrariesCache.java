@@ -0,0 +1,96 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.containers.BidirectionalMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Keeps the maps computed by {@link DartLibraryIndex#getSdkLibUriToRelativePathMap} on disk between IDE sessions, one file per Dart SDK.
+ * A cached map is used only if the SDK home path and the hash of the {@code libraries.dart} contents are the same as when it was saved.
+ */
+final class DartSdkLibrariesCache {
+  private static final Logger LOG = Logger.getInstance(DartSdkLibrariesCache.class);
+
+  private static final int VERSION = 1;
+
+  private DartSdkLibrariesCache() {
+  }
+
+  @NotNull
+  static File getCacheDir() {
+    return new File(PathManager.getSystemPath(), "dart/sdk-libraries");
+  }
+
+  @NotNull
+  static String computeHash(byte @NotNull [] contents) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(contents));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Nullable
+  static BidirectionalMap<String, String> load(@NotNull File cacheDir, @NotNull String sdkHomePath, @NotNull String contentHash) {
+    final File file = getCacheFile(cacheDir, sdkHomePath);
+    if (!file.isFile()) return null;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != VERSION || !sdkHomePath.equals(in.readUTF()) || !contentHash.equals(in.readUTF())) return null;
+
+      final int size = in.readInt();
+      final BidirectionalMap<String, String> result = new BidirectionalMap<>();
+      for (int i = 0; i < size; i++) {
+        result.put(in.readUTF(), in.readUTF());
+      }
+      return result;
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to read " + file.getPath(), e);
+      return null;
+    }
+  }
+
+  static void save(@NotNull File cacheDir,
+                   @NotNull String sdkHomePath,
+                   @NotNull String contentHash,
+                   @NotNull Map<String, String> sdkLibUriToRelativePathMap) {
+    final File file = getCacheFile(cacheDir, sdkHomePath);
+    final File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(file);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(VERSION);
+        out.writeUTF(sdkHomePath);
+        out.writeUTF(contentHash);
+        out.writeInt(sdkLibUriToRelativePathMap.size());
+        for (Map.Entry<String, String> entry : sdkLibUriToRelativePathMap.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeUTF(entry.getValue());
+        }
+      }
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      LOG.debug("Failed to write " + file.getPath(), e);
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  @NotNull
+  private static File getCacheFile(@NotNull File cacheDir, @NotNull String sdkHomePath) {
+    // the SDK home path is also stored in the file, so hash collisions only make the cache miss
+    return new File(cacheDir, Integer.toHexString(FileUtil.toSystemIndependentName(sdkHomePath).hashCode()) + ".bin");
+  }
+}
@@ -7,6 +7,7 @@ import com.intellij.codeInsight.daemon.LineMarkerProvider;
 import com.intellij.codeInsight.daemon.impl.PsiElementListNavigator;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.util.DefaultPsiElementCellRenderer;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
@@ -22,7 +23,6 @@ import org.dartlang.analysis.server.protocol.TypeHierarchyItem;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
 import java.util.Set;
 
 public final class DartServerImplementationsMarkerProvider implements LineMarkerProvider {
@@ -71,20 +71,22 @@ public final class DartServerImplementationsMarkerProvider implements LineMarker
     return new LineMarkerInfo<>(anchor, anchor.getTextRange(), AllIcons.Gutter.OverridenMethod,
                                 element -> DaemonBundle.message("class.is.subclassed.too.many"), (e, __) -> {
                                       DartAnalysisServerService das = DartAnalysisServerService.getInstance(name.getProject());
-                                      final List<TypeHierarchyItem> items =
-                                        das.search_getTypeHierarchy(file, anchor.getTextRange().getStartOffset(), false);
-                                      if (items.isEmpty()) {
-                                        return;
-                                      }
-                                      // TODO(scheglov) Consider using just Element(s), not PsiElement(s) for better performance
-                                      final Set<DartComponent> components =
-                                        DartInheritorsSearcher
-                                          .getSubClasses(name.getProject(), GlobalSearchScope.allScope(name.getProject()), items);
-                                      PsiElementListNavigator.openTargets(e, DartResolveUtil.getComponentNameArray(components),
-                                                                          DaemonBundle.message("navigation.title.subclass", name.getName(),
-                                                                                               components.size(), ""),
-                                                                          "Subclasses of " + name.getName(),
-                                                                          new DefaultPsiElementCellRenderer());
+                                      // the hierarchy may take seconds to compute, don't wait for it in EDT
+                                      das.search_getTypeHierarchyAsync(file, anchor.getTextRange().getStartOffset(), false)
+                                        .thenAccept(items -> ApplicationManager.getApplication().invokeLater(() -> {
+                                          if (items.isEmpty() || !name.isValid()) {
+                                            return;
+                                          }
+                                          // TODO(scheglov) Consider using just Element(s), not PsiElement(s) for better performance
+                                          final Set<DartComponent> components =
+                                            DartInheritorsSearcher
+                                              .getSubClasses(name.getProject(), GlobalSearchScope.allScope(name.getProject()), items);
+                                          PsiElementListNavigator.openTargets(e, DartResolveUtil.getComponentNameArray(components),
+                                                                              DaemonBundle.message("navigation.title.subclass", name.getName(),
+                                                                                                   components.size(), ""),
+                                                                              "Subclasses of " + name.getName(),
+                                                                              new DefaultPsiElementCellRenderer());
+                                        }, name.getProject().getDisposed()));
                                     }, GutterIconRenderer.Alignment.RIGHT);
   }
 
@@ -95,21 +97,23 @@ public final class DartServerImplementationsMarkerProvider implements LineMarker
     return new LineMarkerInfo<>(anchor, anchor.getTextRange(), AllIcons.Gutter.OverridenMethod,
                                 element -> DaemonBundle.message("method.is.overridden.too.many"), (e, __) -> {
                                       DartAnalysisServerService das = DartAnalysisServerService.getInstance(name.getProject());
-                                      final List<TypeHierarchyItem> items =
-                                        das.search_getTypeHierarchy(file, anchor.getTextRange().getStartOffset(), false);
-                                      if (items.isEmpty()) {
-                                        return;
-                                      }
-                                      // TODO(scheglov) Consider using just Element(s), not PsiElement(s) for better performance
-                                      final Set<DartComponent> components =
-                                        DartInheritorsSearcher
-                                          .getSubMembers(name.getProject(), GlobalSearchScope.allScope(name.getProject()), items);
-                                      PsiElementListNavigator.openTargets(e, DartResolveUtil.getComponentNameArray(components),
-                                                                          DaemonBundle
-                                                                            .message("navigation.title.overrider.method", name.getName(),
-                                                                                     components.size()),
-                                                                          "Overriding methods of " + name.getName(),
-                                                                          new DefaultPsiElementCellRenderer());
+                                      // the hierarchy may take seconds to compute, don't wait for it in EDT
+                                      das.search_getTypeHierarchyAsync(file, anchor.getTextRange().getStartOffset(), false)
+                                        .thenAccept(items -> ApplicationManager.getApplication().invokeLater(() -> {
+                                          if (items.isEmpty() || !name.isValid()) {
+                                            return;
+                                          }
+                                          // TODO(scheglov) Consider using just Element(s), not PsiElement(s) for better performance
+                                          final Set<DartComponent> components =
+                                            DartInheritorsSearcher
+                                              .getSubMembers(name.getProject(), GlobalSearchScope.allScope(name.getProject()), items);
+                                          PsiElementListNavigator.openTargets(e, DartResolveUtil.getComponentNameArray(components),
+                                                                              DaemonBundle
+                                                                                .message("navigation.title.overrider.method", name.getName(),
+                                                                                         components.size()),
+                                                                              "Overriding methods of " + name.getName(),
+                                                                              new DefaultPsiElementCellRenderer());
+                                        }, name.getProject().getDisposed()));
                                     }, GutterIconRenderer.Alignment.RIGHT);
   }
 }
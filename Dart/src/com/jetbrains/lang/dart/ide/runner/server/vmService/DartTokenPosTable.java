@@ -0,0 +1,100 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Script's token position table from the VM service, packed into sorted primitive arrays: 3 ints per token instead of
+ * a map entry with a boxed line/column pair.
+ */
+final class DartTokenPosTable {
+  private final int[] myTokenPositions;
+  private final int[] myLines;
+  private final int[] myColumns;
+
+  private DartTokenPosTable(int @NotNull [] tokenPositions, int @NotNull [] lines, int @NotNull [] columns) {
+    myTokenPositions = tokenPositions;
+    myLines = lines;
+    myColumns = columns;
+  }
+
+  /**
+   * Each subarray consists of a 1-based line number followed by (tokenPos, 1-based columnNumber) pairs,
+   * see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
+   */
+  @NotNull
+  static DartTokenPosTable create(@NotNull final List<List<Integer>> tokenPosTable) {
+    int size = 0;
+    for (List<Integer> lineAndPairs : tokenPosTable) {
+      size += Math.max(0, lineAndPairs.size() - 1) / 2;
+    }
+
+    // tokenPos in the high half, index in the low half: sorting keeps the table order for equal token positions
+    final long[] keys = new long[size];
+    final int[] lines = new int[size];
+    final int[] columns = new int[size];
+    int index = 0;
+    for (List<Integer> lineAndPairs : tokenPosTable) {
+      if (lineAndPairs.isEmpty()) continue;
+      final int line = Math.max(0, lineAndPairs.get(0) - 1);
+      for (int i = 1; i + 1 < lineAndPairs.size(); i += 2) {
+        keys[index] = ((long)lineAndPairs.get(i) << 32) | index;
+        lines[index] = line;
+        columns[index] = Math.max(0, lineAndPairs.get(i + 1) - 1);
+        index++;
+      }
+    }
+
+    Arrays.sort(keys);
+
+    int count = 0;
+    final int[] sortedTokenPositions = new int[size];
+    final int[] sortedLines = new int[size];
+    final int[] sortedColumns = new int[size];
+    for (long key : keys) {
+      final int tokenPos = (int)(key >> 32);
+      final int originalIndex = (int)key;
+      // the latest entry wins for a duplicated token position
+      if (count == 0 || sortedTokenPositions[count - 1] != tokenPos) {
+        count++;
+      }
+      sortedTokenPositions[count - 1] = tokenPos;
+      sortedLines[count - 1] = lines[originalIndex];
+      sortedColumns[count - 1] = columns[originalIndex];
+    }
+
+    return count == size
+           ? new DartTokenPosTable(sortedTokenPositions, sortedLines, sortedColumns)
+           : new DartTokenPosTable(Arrays.copyOf(sortedTokenPositions, count), Arrays.copyOf(sortedLines, count),
+                                   Arrays.copyOf(sortedColumns, count));
+  }
+
+  /**
+   * @return index to pass to {@link #getLine(int)} and {@link #getColumn(int)}, or -1 if the token position is unknown
+   */
+  int indexOf(final int tokenPos) {
+    final int index = Arrays.binarySearch(myTokenPositions, tokenPos);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * @return 0-based line
+   */
+  int getLine(final int index) {
+    return myLines[index];
+  }
+
+  /**
+   * @return 0-based column
+   */
+  int getColumn(final int index) {
+    return myColumns[index];
+  }
+
+  int size() {
+    return myTokenPositions.length;
+  }
+}
@@ -17,7 +17,6 @@ import com.intellij.openapi.ui.InputValidator;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
@@ -51,7 +50,6 @@ import com.jetbrains.lang.dart.util.DartResolveUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
-import gnu.trove.TIntObjectHashMap;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.element.*;
 import org.dartlang.vm.service.logging.Logging;
@@ -67,6 +65,9 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   private static final String ORG_DARTLANG_APP_PREFIX = "org-dartlang-app://";
 
+  // token position tables kept in memory, the least recently used ones are fetched again when needed
+  private static final int SCRIPT_CACHE_SIZE = 100;
+
   @Nullable private final ExecutionResult myExecutionResult;
   @NotNull private final DartUrlResolver myDartUrlResolver;
 
@@ -79,9 +80,9 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
   @NotNull private final Set<String> mySuspendedIsolateIds = Collections.synchronizedSet(new THashSet<>());
   private String myLatestCurrentIsolateId;
 
-  private final Map<String, LightVirtualFile> myScriptIdToContentMap = new THashMap<>();
-  private final Map<String, TIntObjectHashMap<Pair<Integer, Integer>>> myScriptIdToLinesAndColumnsMap =
-    new THashMap<>();
+  // files are never evicted: a new LightVirtualFile for the same script would open another editor tab and lose its breakpoints
+  private final Map<String, LightVirtualFile> myScriptIdToContentMap = Collections.synchronizedMap(new THashMap<>());
+  private final Map<String, DartTokenPosTable> myScriptIdToTokenPosTableMap = createTokenPosTableCache();
 
   @Nullable private final String myDASExecutionContextId;
   @NotNull private final DebugType myDebugType;
@@ -662,12 +663,10 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
       file = myScriptIdToContentMap.get(scriptRef.getId());
     }
 
-    TIntObjectHashMap<Pair<Integer, Integer>> tokenPosToLineAndColumn = myScriptIdToLinesAndColumnsMap.get(scriptRef.getId());
+    DartTokenPosTable tokenPosTable = myScriptIdToTokenPosTableMap.get(scriptRef.getId());
 
-    if (file != null && tokenPosToLineAndColumn != null) {
-      final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn.get(tokenPos);
-      if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
-      return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
+    if (file != null && tokenPosTable != null) {
+      return createPosition(file, tokenPosTable, tokenPos);
     }
 
     final Script script = myVmServiceWrapper.getScriptSync(isolateId, scriptRef.getId());
@@ -682,42 +681,42 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
       myScriptIdToContentMap.put(scriptRef.getId(), (LightVirtualFile)file);
     }
 
-    if (tokenPosToLineAndColumn == null) {
+    if (tokenPosTable == null) {
       List<List<Integer>> table = script.getTokenPosTable();
       if (table != null) {
-        tokenPosToLineAndColumn = createTokenPosToLineAndColumnMap(table);
-        myScriptIdToLinesAndColumnsMap.put(scriptRef.getId(), tokenPosToLineAndColumn);
+        tokenPosTable = DartTokenPosTable.create(table);
+        myScriptIdToTokenPosTableMap.put(scriptRef.getId(), tokenPosTable);
       }
     }
 
-    final Pair<Integer, Integer> lineAndColumn = tokenPosToLineAndColumn != null ? tokenPosToLineAndColumn.get(tokenPos) : null;
-    if (lineAndColumn == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
+    if (tokenPosTable == null) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
 
-    return XDebuggerUtil.getInstance().createPosition(file, lineAndColumn.first, lineAndColumn.second);
+    return createPosition(file, tokenPosTable, tokenPos);
   }
 
-  private static boolean isDartPatchUri(@NotNull final String uri) {
-    // dart:_builtin or dart:core-patch/core_patch.dart
-    return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
+  @Nullable
+  private static XSourcePosition createPosition(@NotNull final VirtualFile file,
+                                                @NotNull final DartTokenPosTable tokenPosTable,
+                                                final int tokenPos) {
+    final int index = tokenPosTable.indexOf(tokenPos);
+    if (index < 0) return XDebuggerUtil.getInstance().createPositionByOffset(file, 0);
+    return XDebuggerUtil.getInstance().createPosition(file, tokenPosTable.getLine(index), tokenPosTable.getColumn(index));
   }
 
   @NotNull
-  private static TIntObjectHashMap<Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@NotNull final List<List<Integer>> tokenPosTable) {
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
-    final TIntObjectHashMap<Pair<Integer, Integer>> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> lineAndPairs : tokenPosTable) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
+  private static Map<String, DartTokenPosTable> createTokenPosTableCache() {
+    final int capacity = Registry.intValue("dart.debugger.script.cache.size", SCRIPT_CACHE_SIZE);
+    return Collections.synchronizedMap(new LinkedHashMap<String, DartTokenPosTable>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DartTokenPosTable> eldest) {
+        return size() > capacity;
       }
-    }
+    });
+  }
 
-    return result;
+  private static boolean isDartPatchUri(@NotNull final String uri) {
+    // dart:_builtin or dart:core-patch/core_patch.dart
+    return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
   }
 
   @Nullable
@@ -7,6 +7,7 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Alarm;
 import com.intellij.util.concurrency.Semaphore;
 import com.intellij.xdebugger.XSourcePosition;
@@ -20,6 +21,7 @@ import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartAsyncMarker
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceEvaluator;
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceStackFrame;
 import com.jetbrains.lang.dart.ide.runner.server.vmService.frame.DartVmServiceValue;
+import gnu.trove.THashMap;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.consumer.*;
 import org.dartlang.vm.service.element.Stack;
@@ -30,7 +32,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
 
@@ -256,33 +257,9 @@ public class VmServiceWrapper implements Disposable {
       return;
     }
 
-    final AtomicInteger counter = new AtomicInteger(xBreakpoints.size());
-
-    for (final XLineBreakpoint<XBreakpointProperties> xBreakpoint : xBreakpoints) {
-      addBreakpoint(isolateId, xBreakpoint.getSourcePosition(), new VmServiceConsumers.BreakpointConsumerWrapper() {
-        @Override
-        void sourcePositionNotApplicable() {
-          checkDone();
-        }
-
-        @Override
-        public void received(Breakpoint vmBreakpoint) {
-          myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
-          checkDone();
-        }
-
-        @Override
-        public void onError(RPCError error) {
-          myBreakpointHandler.breakpointFailed(xBreakpoint);
-          checkDone();
-        }
-
-        private void checkDone() {
-          if (counter.decrementAndGet() == 0 && onFinished != null) {
-            onFinished.run();
-          }
-        }
-      });
+    final CompletableFuture<Void> future = addBreakpoints(xBreakpoints, Collections.singletonList(isolateId), true);
+    if (onFinished != null) {
+      future.thenRun(onFinished);
     }
   }
 
@@ -302,24 +279,85 @@ public class VmServiceWrapper implements Disposable {
     });
   }
 
-  public void addBreakpointForIsolates(@NotNull final XLineBreakpoint<XBreakpointProperties> xBreakpoint,
-                                       @NotNull final Collection<IsolatesInfo.IsolateInfo> isolateInfos) {
-    for (final IsolatesInfo.IsolateInfo isolateInfo : isolateInfos) {
-      addBreakpoint(isolateInfo.getIsolateId(), xBreakpoint.getSourcePosition(), new VmServiceConsumers.BreakpointConsumerWrapper() {
-        @Override
-        void sourcePositionNotApplicable() {
-        }
+  @NotNull
+  public CompletableFuture<Void> addBreakpointForIsolates(@NotNull final XLineBreakpoint<XBreakpointProperties> xBreakpoint,
+                                                          @NotNull final Collection<IsolatesInfo.IsolateInfo> isolateInfos) {
+    final List<String> isolateIds = new ArrayList<>(isolateInfos.size());
+    for (IsolatesInfo.IsolateInfo isolateInfo : isolateInfos) {
+      isolateIds.add(isolateInfo.getIsolateId());
+    }
+    return addBreakpoints(Collections.singletonList(xBreakpoint), isolateIds, false);
+  }
 
-        @Override
-        public void received(Breakpoint vmBreakpoint) {
-          myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateInfo.getIsolateId(), vmBreakpoint);
+  /**
+   * Pipelined breakpoint installation: URIs are computed once per file, then addBreakpointWithScriptUri requests for all
+   * breakpoints, URIs and isolates are sent at once without waiting for responses in between.
+   *
+   * @param markInvalidOnError whether a breakpoint is marked as invalid if the VM fails to add it for some URI
+   * @return future that completes when the VM has responded to all requests
+   */
+  @NotNull
+  private CompletableFuture<Void> addBreakpoints(@NotNull final Collection<XLineBreakpoint<XBreakpointProperties>> xBreakpoints,
+                                                 @NotNull final Collection<String> isolateIds,
+                                                 final boolean markInvalidOnError) {
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    if (xBreakpoints.isEmpty() || isolateIds.isEmpty()) {
+      result.complete(null);
+      return result;
+    }
+
+    addRequest(() -> {
+      final long start = System.currentTimeMillis();
+      final Map<VirtualFile, Collection<String>> fileToUris = new THashMap<>();
+      final List<CompletableFuture<Void>> responses = new ArrayList<>();
+
+      for (final XLineBreakpoint<XBreakpointProperties> xBreakpoint : xBreakpoints) {
+        final XSourcePosition position = xBreakpoint.getSourcePosition();
+        if (position == null || position.getFile().getFileType() != DartFileType.INSTANCE) continue;
+
+        final Collection<String> uris = fileToUris.computeIfAbsent(position.getFile(), myDebugProcess::getUrisForFile);
+        final int line = position.getLine() + 1;
+
+        for (final String isolateId : isolateIds) {
+          for (String uri : uris) {
+            final CompletableFuture<Void> response = new CompletableFuture<>();
+            responses.add(response);
+
+            myVmService.addBreakpointWithScriptUri(isolateId, uri, line, new BreakpointConsumer() {
+              @Override
+              public void received(Breakpoint vmBreakpoint) {
+                myBreakpointHandler.vmBreakpointAdded(xBreakpoint, isolateId, vmBreakpoint);
+                response.complete(null);
+              }
+
+              @Override
+              public void onError(RPCError error) {
+                if (markInvalidOnError) {
+                  myBreakpointHandler.breakpointFailed(xBreakpoint);
+                }
+                response.complete(null);
+              }
+            });
+          }
         }
+      }
 
-        @Override
-        public void onError(RPCError error) {
+      final long sent = System.currentTimeMillis();
+      CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).whenComplete((r, t) -> {
+        final String message = "Added " + xBreakpoints.size() + " breakpoint(s) in " + isolateIds.size() + " isolate(s) with " +
+                               responses.size() + " request(s) in " + (System.currentTimeMillis() - start) +
+                               " ms (computing URIs and sending took " + (sent - start) + " ms)";
+        if (xBreakpoints.size() > 1) {
+          LOG.info(message);
+        }
+        else {
+          LOG.debug(message);
         }
+        result.complete(null);
       });
-    }
+    });
+
+    return result;
   }
 
   /**
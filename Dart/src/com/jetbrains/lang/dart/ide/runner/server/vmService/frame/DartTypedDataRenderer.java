@@ -0,0 +1,136 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService.frame;
+
+import org.dartlang.vm.service.element.InstanceKind;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the {@code bytes} of typed data lists (Uint8List, Float64List, etc.) in bulk and formats them as rows of several elements,
+ * hex for byte lists, so that the debugger doesn't need a separate value node for each element.
+ */
+final class DartTypedDataRenderer {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private DartTypedDataRenderer() {
+  }
+
+  static boolean isTypedDataKind(@NotNull final InstanceKind kind) {
+    return kind != InstanceKind.List && getElementSize(kind) > 0;
+  }
+
+  /**
+   * @return element size in bytes, or 0 if {@code kind} is not a typed data list kind
+   */
+  static int getElementSize(@NotNull final InstanceKind kind) {
+    switch (kind) {
+      case Uint8ClampedList:
+      case Uint8List:
+      case Int8List:
+        return 1;
+      case Uint16List:
+      case Int16List:
+        return 2;
+      case Uint32List:
+      case Int32List:
+      case Float32List:
+        return 4;
+      case Uint64List:
+      case Int64List:
+      case Float64List:
+        return 8;
+      case Int32x4List:
+      case Float32x4List:
+      case Float64x2List:
+        return 16;
+      default:
+        return 0;
+    }
+  }
+
+  static int getElementsPerRow(@NotNull final InstanceKind kind) {
+    final int elementSize = getElementSize(kind);
+    return elementSize == 1 ? 16 : elementSize == 16 ? 2 : 8;
+  }
+
+  /**
+   * @param bytes little-endian data as sent by the VM, the last row may be incomplete
+   */
+  @NotNull
+  static List<String> formatRows(@NotNull final InstanceKind kind, final byte @NotNull [] bytes) {
+    final int elementSize = getElementSize(kind);
+    final int elementsPerRow = getElementsPerRow(kind);
+    final int elementCount = bytes.length / elementSize;
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+    final List<String> result = new ArrayList<>((elementCount + elementsPerRow - 1) / elementsPerRow);
+    final StringBuilder row = new StringBuilder();
+    for (int i = 0; i < elementCount; i++) {
+      if (i % elementsPerRow != 0) {
+        row.append(elementSize == 1 ? " " : ", ");
+      }
+      appendElement(row, kind, buffer, i * elementSize);
+
+      if (i % elementsPerRow == elementsPerRow - 1 || i == elementCount - 1) {
+        result.add(row.toString());
+        row.setLength(0);
+      }
+    }
+    return result;
+  }
+
+  private static void appendElement(@NotNull final StringBuilder builder,
+                                    @NotNull final InstanceKind kind,
+                                    @NotNull final ByteBuffer buffer,
+                                    final int offset) {
+    switch (kind) {
+      case Uint8ClampedList:
+      case Uint8List:
+      case Int8List:
+        final int b = buffer.get(offset) & 0xFF;
+        builder.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+        break;
+      case Uint16List:
+        builder.append(buffer.getShort(offset) & 0xFFFF);
+        break;
+      case Int16List:
+        builder.append(buffer.getShort(offset));
+        break;
+      case Uint32List:
+        builder.append(Integer.toUnsignedString(buffer.getInt(offset)));
+        break;
+      case Int32List:
+        builder.append(buffer.getInt(offset));
+        break;
+      case Float32List:
+        builder.append(buffer.getFloat(offset));
+        break;
+      case Uint64List:
+        builder.append(Long.toUnsignedString(buffer.getLong(offset)));
+        break;
+      case Int64List:
+        builder.append(buffer.getLong(offset));
+        break;
+      case Float64List:
+        builder.append(buffer.getDouble(offset));
+        break;
+      case Int32x4List:
+        builder.append('[').append(buffer.getInt(offset)).append(", ").append(buffer.getInt(offset + 4)).append(", ")
+          .append(buffer.getInt(offset + 8)).append(", ").append(buffer.getInt(offset + 12)).append(']');
+        break;
+      case Float32x4List:
+        builder.append('[').append(buffer.getFloat(offset)).append(", ").append(buffer.getFloat(offset + 4)).append(", ")
+          .append(buffer.getFloat(offset + 8)).append(", ").append(buffer.getFloat(offset + 12)).append(']');
+        break;
+      case Float64x2List:
+        builder.append('[').append(buffer.getDouble(offset)).append(", ").append(buffer.getDouble(offset + 8)).append(']');
+        break;
+      default:
+        throw new IllegalArgumentException(kind.name());
+    }
+  }
+}
@@ -19,7 +19,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.util.Base64;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 // TODO: implement some combination of XValue.getEvaluationExpression() /
 // XValue.calculateEvaluationExpression() in order to support evaluate expression in variable values.
@@ -40,6 +43,9 @@ public class DartVmServiceValue extends XNamedValue {
   private final boolean myIsException;
 
   private final Ref<Integer> myCollectionChildrenAlreadyShown = new Ref<>(0);
+  // the page after the shown children is requested in advance, so that 'more' is quick
+  @Nullable private CompletableFuture<Instance> myPrefetchedPage;
+  private int myPrefetchedPageOffset;
 
   public DartVmServiceValue(@NotNull final DartVmServiceDebugProcess debugProcess,
                             @NotNull final String isolateId,
@@ -370,38 +376,118 @@ public class DartVmServiceValue extends XNamedValue {
 
   private void computeCollectionChildren(@NotNull final XCompositeNode node) {
     final int offset = myCollectionChildrenAlreadyShown.get();
-    final int count = Math.min(myInstanceRef.getLength() - offset, XCompositeNode.MAX_CHILDREN_TO_SHOW);
+    final int length = myInstanceRef.getLength();
+    final int pageSize = getCollectionPageSize();
+    final int count = Math.min(length - offset, pageSize);
+
+    getCollectionPage(offset, count).whenComplete((instance, throwable) -> {
+      if (throwable != null) {
+        node.setErrorMessage(StringUtil.notNullize(throwable.getMessage()));
+        return;
+      }
+
+      if (DartTypedDataRenderer.isTypedDataKind(myInstanceRef.getKind())) {
+        addTypedDataChildren(node, instance.getBytes());
+      }
+      else if (isListKind(myInstanceRef.getKind())) {
+        addListChildren(node, instance.getElements());
+      }
+      else if (myInstanceRef.getKind() == InstanceKind.Map) {
+        addMapChildren(node, Objects.requireNonNull(instance.getAssociations()));
+      }
+      else {
+        assert false : myInstanceRef.getKind();
+      }
+
+      myCollectionChildrenAlreadyShown.set(offset + count);
+
+      if (offset + count < length) {
+        final int remaining = length - offset - count;
+        node.tooManyChildren(getRemainingChildrenCount(remaining));
+        prefetchCollectionPage(offset + count, Math.min(remaining, pageSize));
+      }
+    });
+  }
 
+  /**
+   * @return the number of child nodes that show the given number of collection elements
+   */
+  private int getRemainingChildrenCount(final int remainingElements) {
+    if (!DartTypedDataRenderer.isTypedDataKind(myInstanceRef.getKind())) return remainingElements;
+    final int elementsPerRow = DartTypedDataRenderer.getElementsPerRow(myInstanceRef.getKind());
+    return (remainingElements + elementsPerRow - 1) / elementsPerRow;
+  }
+
+  /**
+   * Typed data is shown in rows of several elements, so a page contains more elements.
+   */
+  private int getCollectionPageSize() {
+    return DartTypedDataRenderer.isTypedDataKind(myInstanceRef.getKind())
+           ? XCompositeNode.MAX_CHILDREN_TO_SHOW * DartTypedDataRenderer.getElementsPerRow(myInstanceRef.getKind())
+           : XCompositeNode.MAX_CHILDREN_TO_SHOW;
+  }
+
+  @NotNull
+  private synchronized CompletableFuture<Instance> getCollectionPage(final int offset, final int count) {
+    final CompletableFuture<Instance> prefetchedPage = myPrefetchedPage;
+    myPrefetchedPage = null;
+    if (prefetchedPage != null && myPrefetchedPageOffset == offset) {
+      return prefetchedPage;
+    }
+    return requestCollectionPage(offset, count);
+  }
+
+  private synchronized void prefetchCollectionPage(final int offset, final int count) {
+    myPrefetchedPageOffset = offset;
+    myPrefetchedPage = requestCollectionPage(offset, count);
+  }
+
+  @NotNull
+  private CompletableFuture<Instance> requestCollectionPage(final int offset, final int count) {
+    final CompletableFuture<Instance> future = new CompletableFuture<>();
     myDebugProcess.getVmServiceWrapper().getCollectionObject(myIsolateId, myInstanceRef.getId(), offset, count, new GetObjectConsumer() {
       @Override
       public void received(Obj instance) {
-        if (isListKind(myInstanceRef.getKind())) {
-          addListChildren(node, ((Instance)instance).getElements());
-        }
-        else if (myInstanceRef.getKind() == InstanceKind.Map) {
-          addMapChildren(node, Objects.requireNonNull(((Instance)instance).getAssociations()));
-        }
-        else {
-          assert false : myInstanceRef.getKind();
-        }
-
-        myCollectionChildrenAlreadyShown.set(myCollectionChildrenAlreadyShown.get() + count);
-
-        if (offset + count < myInstanceRef.getLength()) {
-          node.tooManyChildren(myInstanceRef.getLength() - offset - count);
-        }
+        future.complete((Instance)instance);
       }
 
       @Override
       public void received(Sentinel sentinel) {
-        node.setErrorMessage(sentinel.getValueAsString());
+        future.completeExceptionally(new RuntimeException(sentinel.getValueAsString()));
       }
 
       @Override
       public void onError(RPCError error) {
-        node.setErrorMessage(error.getMessage());
+        future.completeExceptionally(new RuntimeException(error.getMessage()));
       }
     });
+    return future;
+  }
+
+  private void addTypedDataChildren(@NotNull final XCompositeNode node, @Nullable final String base64Bytes) {
+    if (base64Bytes == null) {
+      node.addChildren(XValueChildrenList.EMPTY, true);
+      return;
+    }
+
+    final InstanceKind kind = myInstanceRef.getKind();
+    final List<String> rows = DartTypedDataRenderer.formatRows(kind, Base64.getDecoder().decode(base64Bytes));
+    final int elementsPerRow = DartTypedDataRenderer.getElementsPerRow(kind);
+    final int length = myInstanceRef.getLength();
+
+    final XValueChildrenList childrenList = new XValueChildrenList(rows.size());
+    int index = myCollectionChildrenAlreadyShown.get();
+    for (String row : rows) {
+      final int lastIndex = Math.min(index + elementsPerRow, length) - 1;
+      childrenList.add("[" + index + ".." + lastIndex + "]", new XValue() {
+        @Override
+        public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
+          node.setPresentation(null, null, row, false);
+        }
+      });
+      index += elementsPerRow;
+    }
+    node.addChildren(childrenList, true);
   }
 
   private void addListChildren(@NotNull final XCompositeNode node, @Nullable final ElementList<InstanceRef> listElements) {
@@ -0,0 +1,245 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.test;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * One line of the {@code dart test --reporter json} output, decoded in a single pass over the text with a fixed set of known fields.
+ * Unknown fields are skipped, so no JSON tree is built for an event.
+ * See https://github.com/dart-lang/test/blob/master/pkgs/test/doc/json_reporter.md
+ */
+final class DartTestEvent {
+  static final int NO_ID = -1;
+
+  @Nullable String type;
+  boolean hasTime;
+  long time;
+  int testId = NO_ID;
+  @Nullable String result;
+  @Nullable String error;
+  @Nullable String stackTrace;
+  @Nullable String message;
+  @Nullable Boolean isFailure;
+  boolean hasCount;
+  int count;
+  @Nullable ItemData test;
+  @Nullable ItemData group;
+  @Nullable ItemData suite;
+
+  /**
+   * Fields of the {@code test}, {@code group} and {@code suite} objects.
+   */
+  static final class ItemData {
+    int id = NO_ID;
+    @Nullable String name;
+    int suiteId = NO_ID;
+    int parentId = NO_ID;
+    // only the innermost group matters
+    int lastGroupId = NO_ID;
+    int testCount = -1;
+    int line = -1;
+    int column = -1;
+    @Nullable String url;
+    @Nullable String path;
+    @Nullable String platform;
+    boolean skip;
+    @Nullable String skipReason;
+  }
+
+  private DartTestEvent() {
+  }
+
+  /**
+   * @throws IOException           if the text is not a JSON object
+   * @throws IllegalStateException if the JSON structure is unexpected
+   */
+  @NotNull
+  static DartTestEvent decode(@NotNull final String text) throws IOException {
+    final JsonReader reader = new JsonReader(new StringReader(text));
+    reader.setLenient(true);
+
+    final DartTestEvent event = new DartTestEvent();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "type":
+          event.type = nextString(reader);
+          break;
+        case "time":
+          final String time = nextString(reader);
+          event.hasTime = time != null;
+          event.time = time != null ? (long)Double.parseDouble(time) : 0;
+          break;
+        case "testID":
+          event.testId = nextInt(reader, NO_ID);
+          break;
+        case "result":
+          event.result = nextString(reader);
+          break;
+        case "error":
+          event.error = nextString(reader);
+          break;
+        case "stackTrace":
+          event.stackTrace = nextString(reader);
+          break;
+        case "message":
+          event.message = nextString(reader);
+          break;
+        case "isFailure":
+          final String isFailure = nextString(reader);
+          event.isFailure = isFailure != null ? Boolean.valueOf(isFailure) : null;
+          break;
+        case "count":
+          event.count = nextInt(reader, -1);
+          event.hasCount = event.count != -1;
+          break;
+        case "test":
+          event.test = readItem(reader);
+          break;
+        case "group":
+          event.group = readItem(reader);
+          break;
+        case "suite":
+          event.suite = readItem(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (reader.peek() != JsonToken.END_DOCUMENT) {
+      throw new MalformedJsonException("Unexpected text after the event: " + text);
+    }
+    return event;
+  }
+
+  @Nullable
+  private static ItemData readItem(@NotNull final JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return null;
+    }
+
+    final ItemData item = new ItemData();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id":
+          item.id = nextInt(reader, NO_ID);
+          break;
+        case "name":
+          item.name = nextString(reader);
+          break;
+        case "suiteID":
+          item.suiteId = nextInt(reader, NO_ID);
+          break;
+        case "parentID":
+          item.parentId = nextInt(reader, NO_ID);
+          break;
+        case "groupIDs":
+          if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              item.lastGroupId = nextInt(reader, NO_ID);
+            }
+            reader.endArray();
+          }
+          else {
+            reader.skipValue();
+          }
+          break;
+        case "testCount":
+          item.testCount = nextInt(reader, -1);
+          break;
+        case "line":
+          item.line = nextInt(reader, -1);
+          break;
+        case "column":
+          item.column = nextInt(reader, -1);
+          break;
+        case "url":
+          item.url = nextString(reader);
+          break;
+        case "path":
+          item.path = nextString(reader);
+          break;
+        case "platform":
+          item.platform = nextString(reader);
+          break;
+        case "metadata":
+          readMetadata(reader, item);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return item;
+  }
+
+  private static void readMetadata(@NotNull final JsonReader reader, @NotNull final ItemData item) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if ("skip".equals(name)) {
+        item.skip = Boolean.parseBoolean(nextString(reader));
+      }
+      else if ("skipReason".equals(name)) {
+        item.skipReason = nextString(reader);
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * @return value of a primitive as a string, {@code null} for JSON null, objects and arrays
+   */
+  @Nullable
+  private static String nextString(@NotNull final JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case STRING:
+      case NUMBER:
+        return reader.nextString();
+      case BOOLEAN:
+        return String.valueOf(reader.nextBoolean());
+      case NULL:
+        reader.nextNull();
+        return null;
+      default:
+        reader.skipValue();
+        return null;
+    }
+  }
+
+  private static int nextInt(@NotNull final JsonReader reader, final int defaultValue) throws IOException {
+    final String value = nextString(reader);
+    if (value == null) return defaultValue;
+    try {
+      return Integer.parseInt(value);
+    }
+    catch (NumberFormatException e) {
+      try {
+        return (int)Double.parseDouble(value);
+      }
+      catch (NumberFormatException e1) {
+        return defaultValue;
+      }
+    }
+  }
+}
@@ -1,28 +1,30 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.ide.runner.test;
 
-import com.google.gson.*;
+import com.google.gson.Gson;
 import com.intellij.execution.testframework.TestConsoleProperties;
 import com.intellij.execution.testframework.sm.ServiceMessageBuilder;
 import com.intellij.execution.testframework.sm.runner.OutputToGeneralTestEventsConverter;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.PathUtil;
 import com.jetbrains.lang.dart.ide.runner.util.DartTestLocationProvider;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import gnu.trove.TIntLongHashMap;
+import gnu.trove.TIntObjectHashMap;
 import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,6 +34,8 @@ import java.util.regex.Pattern;
  * NOTE: The test runner runs tests asynchronously. It is possible to get a 'testDone'
  * event followed some time later by an 'error' event for that same test. That should
  * convert a successful test into a failure. That case is not being handled.
+ * Events are decoded by {@link DartTestEvent} without building a JSON tree. If finished tests are dropped
+ * ({@code dart.test.events.drop.finished.tests} registry key) then such late events are ignored.
  */
 public final class DartTestEventsConverter extends OutputToGeneralTestEventsConverter {
   private static final Logger LOG = Logger.getInstance(DartTestEventsConverter.class.getName());
@@ -46,32 +50,6 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   private static final String TYPE_TEST_START = "testStart";
   private static final String TYPE_TEST_DONE = "testDone";
 
-  private static final String DEF_GROUP = "group";
-  private static final String DEF_SUITE = "suite";
-  private static final String DEF_TEST = "test";
-  private static final String DEF_METADATA = "metadata";
-
-  private static final String JSON_TYPE = "type";
-  private static final String JSON_NAME = "name";
-  private static final String JSON_ID = "id";
-  private static final String JSON_TEST_ID = "testID";
-  private static final String JSON_SUITE_ID = "suiteID";
-  private static final String JSON_PARENT_ID = "parentID";
-  private static final String JSON_GROUP_IDS = "groupIDs";
-  private static final String JSON_RESULT = "result";
-  private static final String JSON_MILLIS = "time";
-  private static final String JSON_COUNT = "count";
-  private static final String JSON_TEST_COUNT = "testCount";
-  private static final String JSON_MESSAGE = "message";
-  private static final String JSON_ERROR_MESSAGE = "error";
-  private static final String JSON_STACK_TRACE = "stackTrace";
-  private static final String JSON_IS_FAILURE = "isFailure";
-  private static final String JSON_PATH = "path";
-  private static final String JSON_PLATFORM = "platform";
-  private static final String JSON_LINE = "line";
-  private static final String JSON_COLUMN = "column";
-  private static final String JSON_URL = "url";
-
   private static final String RESULT_SUCCESS = "success";
   private static final String RESULT_FAILURE = "failure";
   private static final String RESULT_ERROR = "error";
@@ -92,10 +70,12 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   private Key myCurrentOutputType;
   private ServiceMessageVisitor myCurrentVisitor;
   private final TIntLongHashMap myTestIdToTimestamp;
-  private final Map<Integer, Test> myTestData;
-  private final Map<Integer, Group> myGroupData;
-  private final Map<Integer, Suite> mySuiteData;
+  private final TIntObjectHashMap<Test> myTestData;
+  private final TIntObjectHashMap<Group> myGroupData;
+  private final TIntObjectHashMap<Suite> mySuiteData;
   private int mySuitCount;
+  // a finished test is forgotten as soon as it is reported, so memory doesn't grow with the number of tests in the run
+  private boolean myDropFinishedTests;
 
   public DartTestEventsConverter(@NotNull final String testFrameworkName,
                                  @NotNull final TestConsoleProperties consoleProperties,
@@ -103,9 +83,15 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     super(testFrameworkName, consoleProperties);
     myUrlResolver = urlResolver;
     myTestIdToTimestamp = new TIntLongHashMap();
-    myTestData = new HashMap<>();
-    myGroupData = new HashMap<>();
-    mySuiteData = new HashMap<>();
+    myTestData = new TIntObjectHashMap<>();
+    myGroupData = new TIntObjectHashMap<>();
+    mySuiteData = new TIntObjectHashMap<>();
+    myDropFinishedTests = Registry.is("dart.test.events.drop.finished.tests", false);
+  }
+
+  @TestOnly
+  void setDropFinishedTests(boolean dropFinishedTests) {
+    myDropFinishedTests = dropFinishedTests;
   }
 
   @Override
@@ -118,13 +104,20 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return processEventText(text);
   }
 
-  private boolean processEventText(final String text) throws JsonSyntaxException, ParseException {
-    JsonParser jp = new JsonParser();
-    JsonElement elem;
-    try {
-      elem = jp.parse(text);
+  private boolean processEventText(final String text) throws ParseException {
+    final String trimmed = text.trim();
+    if (trimmed.isEmpty()) return false;
+
+    DartTestEvent event = null;
+    if (trimmed.startsWith("{")) {
+      try {
+        event = DartTestEvent.decode(trimmed);
+      }
+      catch (IOException | IllegalStateException | NumberFormatException ignore) {
+      }
     }
-    catch (JsonSyntaxException ex) {
+
+    if (event == null) {
       if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
         final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted("Failed to start");
         final ServiceMessageBuilder testFailed = ServiceMessageBuilder.testFailed("Failed to start");
@@ -135,8 +128,8 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
 
       return doProcessServiceMessages(text);
     }
-    if (elem == null || !elem.isJsonObject()) return false;
-    return process(elem.getAsJsonObject());
+
+    return process(event);
   }
 
   private boolean doProcessServiceMessages(@NotNull final String text) throws ParseException {
@@ -144,46 +137,45 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return super.processServiceMessages(text, myCurrentOutputType, myCurrentVisitor);
   }
 
-  private boolean process(JsonObject obj) throws JsonSyntaxException, ParseException {
-    String type = obj.get(JSON_TYPE).getAsString();
+  private boolean process(@NotNull final DartTestEvent event) throws ParseException {
+    final String type = event.type;
     if (TYPE_TEST_START.equals(type)) {
-      return handleTestStart(obj);
+      return handleTestStart(event);
     }
     else if (TYPE_TEST_DONE.equals(type)) {
-      return handleTestDone(obj);
+      return handleTestDone(event);
     }
     else if (TYPE_ERROR.equals(type)) {
-      return handleError(obj);
+      return handleError(event);
     }
     else if (TYPE_PRINT.equals(type)) {
-      return handlePrint(obj);
+      return handlePrint(event);
     }
     else if (TYPE_GROUP.equals(type)) {
-      return handleGroup(obj);
+      return handleGroup(event);
     }
     else if (TYPE_SUITE.equals(type)) {
-      return handleSuite(obj);
+      return handleSuite(event);
     }
     else if (TYPE_ALL_SUITES.equals(type)) {
-      return handleAllSuites(obj);
+      return handleAllSuites(event);
     }
     else if (TYPE_START.equals(type)) {
-      return handleStart(obj);
+      return handleStart(event);
     }
     else if (TYPE_DONE.equals(type)) {
-      return handleDone(obj);
+      return handleDone(event);
     }
     else {
       return true;
     }
   }
 
-  private boolean handleTestStart(JsonObject obj) throws ParseException {
-    final JsonObject testObj = obj.getAsJsonObject(DEF_TEST);
+  private boolean handleTestStart(DartTestEvent event) throws ParseException {
+    final Test test = getTest(event);
+    if (test == null) return true;
 
-    // Not reached if testObj == null.
-    final Test test = getTest(obj);
-    myTestIdToTimestamp.put(test.getId(), getTimestamp(obj));
+    myTestIdToTimestamp.put(test.getId(), getTimestamp(event));
 
     if (shouldTestBeHiddenIfPassed(test)) {
       // Virtual test that represents loading or compiling a test suite. See lib/src/runner/loader.dart -> Loader.loadFile() in pkg/test source code
@@ -209,7 +201,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     addLocationHint(testStarted, test);
     boolean result = finishMessage(testStarted, test.getId(), test.getValidParentId());
 
-    final Metadata metadata = Metadata.from(testObj.getAsJsonObject(DEF_METADATA));
+    final Metadata metadata = test.getMetadata();
     if (metadata.skip) {
       final ServiceMessageBuilder message = ServiceMessageBuilder.testIgnored(test.getBaseName());
       if (metadata.skipReason != null) message.addAttribute("message", metadata.skipReason);
@@ -231,14 +223,15 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
            group != null && group.getDoneTestsCount() > 0 && test.getBaseName().equals(TEAR_DOWN_ALL_VIRTUAL_TEST_NAME);
   }
 
-  private boolean handleTestDone(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
+  private boolean handleTestDone(DartTestEvent event) throws ParseException {
+    final Test test = getTest(event);
+    if (test == null) return true;
 
     if (!test.myTestStartReported) return true;
 
-    String result = getResult(obj);
+    String result = getResult(event);
     if (!result.equals(RESULT_SUCCESS) && !result.equals(RESULT_FAILURE) && !result.equals(RESULT_ERROR)) {
-      throw new ParseException("Unknown result: " + obj, 0);
+      throw new ParseException("Unknown result: " + result, 0);
     }
 
     test.testDone();
@@ -246,9 +239,14 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     //if (test.getMetadata().skip) return true; // skipped tests are reported as ignored in handleTestStart(). testFinished signal must follow
 
     ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished(test.getBaseName());
-    long duration = getTimestamp(obj) - myTestIdToTimestamp.get(test.getId());
+    long duration = getTimestamp(event) - myTestIdToTimestamp.get(test.getId());
     testFinished.addAttribute("duration", Long.toString(duration));
 
+    if (myDropFinishedTests) {
+      myTestData.remove(test.getId());
+      myTestIdToTimestamp.remove(test.getId());
+    }
+
     return finishMessage(testFinished, test.getId(), test.getValidParentId()) && checkGroupDone(test.getParent());
   }
 
@@ -259,8 +257,8 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return true;
   }
 
-  private boolean handleGroup(JsonObject obj) throws ParseException {
-    Group group = getGroup(obj.getAsJsonObject(DEF_GROUP));
+  private boolean handleGroup(DartTestEvent event) throws ParseException {
+    Group group = getGroup(event.group);
 
     // From spec: The implicit group at the root of each test suite has null name and parentID attributes.
     if (group.getParent() == null && group.getTestCount() > 0) {
@@ -278,17 +276,19 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return finishMessage(groupMsg, group.getId(), group.getValidParentId());
   }
 
-  private boolean handleSuite(JsonObject obj) throws ParseException {
-    Suite suite = getSuite(obj.getAsJsonObject(DEF_SUITE));
+  private boolean handleSuite(DartTestEvent event) throws ParseException {
+    Suite suite = getSuite(event.suite);
     if (!suite.hasPath()) {
       mySuiteData.remove(suite.getId());
     }
     return true;
   }
 
-  private boolean handleError(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
-    final String message = getErrorMessage(obj);
+  private boolean handleError(DartTestEvent event) throws ParseException {
+    final Test test = getTest(event);
+    if (test == null) return true;
+
+    final String message = getErrorMessage(event);
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -324,13 +324,13 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
         }
       }
 
-      if (!getBoolean(obj, JSON_IS_FAILURE)) testError.addAttribute("error", "true");
+      if (!getIsFailure(event)) testError.addAttribute("error", "true");
       testError.addAttribute("message", appendLineBreakIfNeeded(failureMessage));
 
       result &= finishMessage(testError, test.getId(), test.getValidParentId());
     }
 
-    final String stackTrace = getStackTrace(obj);
+    final String stackTrace = getStackTrace(event);
     if (!StringUtil.isEmptyOrSpaces(stackTrace)) {
       final ServiceMessageBuilder stackTraceMessage = ServiceMessageBuilder.testStdErr(test.getBaseName());
       stackTraceMessage.addAttribute("out", appendLineBreakIfNeeded(stackTrace));
@@ -345,15 +345,16 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return message.endsWith("\n") ? message : message + "\n";
   }
 
-  private boolean handleAllSuites(JsonObject obj) {
-    JsonElement elem = obj.get(JSON_COUNT);
-    if (elem == null || !elem.isJsonPrimitive()) return true;
-    mySuitCount = elem.getAsInt();
+  private boolean handleAllSuites(DartTestEvent event) {
+    if (!event.hasCount) return true;
+    mySuitCount = event.count;
     return true;
   }
 
-  private boolean handlePrint(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
+  private boolean handlePrint(DartTestEvent event) throws ParseException {
+    final Test test = getTest(event);
+    if (test == null) return true;
+
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -367,12 +368,12 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     }
 
     ServiceMessageBuilder message = ServiceMessageBuilder.testStdOut(test.getBaseName());
-    message.addAttribute("out", appendLineBreakIfNeeded(getMessage(obj)));
+    message.addAttribute("out", appendLineBreakIfNeeded(getMessage(event)));
 
     return result & finishMessage(message, test.getId(), test.getValidParentId());
   }
 
-  private boolean handleStart(JsonObject obj) throws ParseException {
+  private boolean handleStart(DartTestEvent event) throws ParseException {
     myTestIdToTimestamp.clear();
     myTestData.clear();
     myGroupData.clear();
@@ -382,7 +383,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return doProcessServiceMessages(ServiceMessageBuilder.testsStarted().toString());
   }
 
-  private boolean handleDone(JsonObject obj) throws ParseException {
+  private boolean handleDone(DartTestEvent event) throws ParseException {
     // The test runner has reached the end of the tests.
     processAllTestsDone();
     return true;
@@ -390,7 +391,11 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
 
   private void processAllTestsDone() {
     // All tests are done.
-    for (Group group : myGroupData.values()) {
+    // same order as the groups were started
+    final int[] groupIds = myGroupData.keys();
+    Arrays.sort(groupIds);
+    for (int groupId : groupIds) {
+      final Group group = myGroupData.get(groupId);
       // For package: test prior to v. 0.12.9 there were no Group.testCount field, so need to finish them all at the end.
       // AFAIK the order does not matter. A depth-first post-order traversal of the tree would work
       // if order does matter. Note: Currently, there is no tree representation, just parent links.
@@ -454,101 +459,71 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     messageBuilder.addAttribute("locationHint", location);
   }
 
-  private static long getTimestamp(JsonObject obj) throws ParseException {
-    return getLong(obj, JSON_MILLIS);
+  private static long getTimestamp(@NotNull final DartTestEvent event) throws ParseException {
+    if (!event.hasTime) throw new ParseException("No time in event", 0);
+    return event.time;
   }
 
-  private static long getLong(JsonObject obj, String name) throws ParseException {
-    JsonElement val = obj == null ? null : obj.get(name);
-    if (val == null || !val.isJsonPrimitive()) throw new ParseException("Value is not type long: " + val, 0);
-    return val.getAsLong();
+  private static boolean getIsFailure(@NotNull final DartTestEvent event) throws ParseException {
+    if (event.isFailure == null) throw new ParseException("No isFailure in event", 0);
+    return event.isFailure;
   }
 
-  private static boolean getBoolean(JsonObject obj, String name) throws ParseException {
-    JsonElement val = obj == null ? null : obj.get(name);
-    if (val == null || !val.isJsonPrimitive()) throw new ParseException("Value is not type boolean: " + val, 0);
-    return val.getAsBoolean();
-  }
+  /**
+   * @return {@code null} if the event refers to an unknown (or already dropped) test
+   */
+  @Nullable
+  private Test getTest(@NotNull final DartTestEvent event) throws ParseException {
+    if (event.testId != DartTestEvent.NO_ID) {
+      return myTestData.get(event.testId);
+    }
+    if (event.test == null || event.test.id == DartTestEvent.NO_ID) {
+      throw new ParseException("No testId in json object", 0);
+    }
 
-  @NotNull
-  private Test getTest(JsonObject obj) throws ParseException {
-    return getItem(obj, myTestData);
+    final Test test = Test.from(event.test, myGroupData, mySuiteData);
+    myTestData.put(test.getId(), test);
+    return test;
   }
 
   @NotNull
-  private Group getGroup(JsonObject obj) throws ParseException {
-    return getItem(obj, myGroupData);
-  }
+  private Group getGroup(@Nullable final DartTestEvent.ItemData data) throws ParseException {
+    if (data == null) throw new ParseException("Unexpected null json object", 0);
+    if (data.id == DartTestEvent.NO_ID) throw new ParseException("No id in json object", 0);
 
-  @NotNull
-  private Suite getSuite(JsonObject obj) throws ParseException {
-    return getItem(obj, mySuiteData);
+    final Group group = Group.from(data, myGroupData, mySuiteData);
+    myGroupData.put(group.getId(), group);
+    return group;
   }
 
   @NotNull
-  private <T extends Item> T getItem(JsonObject obj, Map<Integer, T> items) throws ParseException {
-    if (obj == null) throw new ParseException("Unexpected null json object", 0);
-    T item;
-    JsonElement id = obj.get(JSON_ID);
-    if (id != null) {
-      if (items == myTestData) {
-        @SuppressWarnings("unchecked") T type = (T)Test.from(obj, myGroupData, mySuiteData);
-        item = type;
-      }
-      else if (items == myGroupData) {
-        @SuppressWarnings("unchecked") T group = (T)Group.from(obj, myGroupData, mySuiteData);
-        item = group;
-      }
-      else {
-        @SuppressWarnings("unchecked") T suite = (T)Suite.from(obj);
-        item = suite;
-      }
-      items.put(id.getAsInt(), item);
-    }
-    else {
-      JsonElement testId = obj.get(JSON_TEST_ID);
-      if (testId != null) {
-        int baseId = testId.getAsInt();
-        item = items.get(baseId);
-      }
-      else {
-        JsonElement testObj = obj.get(DEF_TEST);
-        if (testObj != null) {
-          return getItem(testObj.getAsJsonObject(), items);
-        }
-        else {
-          throw new ParseException("No testId in json object", 0);
-        }
-      }
-    }
-    return item;
-  }
+  private Suite getSuite(@Nullable final DartTestEvent.ItemData data) throws ParseException {
+    if (data == null) throw new ParseException("Unexpected null json object", 0);
+    if (data.id == DartTestEvent.NO_ID) throw new ParseException("No id in json object", 0);
 
-  @NotNull
-  private static String getErrorMessage(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_ERROR_MESSAGE, "<no error message>");
+    final Suite suite = Suite.from(data);
+    mySuiteData.put(suite.getId(), suite);
+    return suite;
   }
 
   @NotNull
-  private static String getMessage(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_MESSAGE, "<no message>");
+  private static String getErrorMessage(@NotNull final DartTestEvent event) {
+    return StringUtil.notNullize(event.error, "<no error message>");
   }
 
   @NotNull
-  private static String getStackTrace(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_STACK_TRACE, "<no stack trace>");
+  private static String getMessage(@NotNull final DartTestEvent event) {
+    return StringUtil.notNullize(event.message, "<no message>");
   }
 
   @NotNull
-  private static String getResult(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_RESULT, "<no result>");
+  private static String getStackTrace(@NotNull final DartTestEvent event) {
+    return StringUtil.notNullize(event.stackTrace, "<no stack trace>");
   }
 
   @NotNull
-  private static String nonNullJsonValue(JsonObject obj, @NotNull String id, @NotNull String def) {
-    JsonElement val = obj == null ? null : obj.get(id);
-    if (val == null || !val.isJsonPrimitive()) return def;
-    return val.getAsString();
+  private static String getResult(@NotNull final DartTestEvent event) {
+    return StringUtil.notNullize(event.result, "<no result>");
   }
 
   private static class Item {
@@ -562,30 +537,12 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     private final int myColumn;
     private final String myUrl;
 
-    static int extractInt(JsonObject obj, String memberName) {
-      JsonElement elem = obj.get(memberName);
-      if (elem == null || !elem.isJsonPrimitive()) return -1;
-      return elem.getAsInt();
-    }
-
-    static String extractString(JsonObject obj, String memberName, String defaultResult) {
-      JsonElement elem = obj.get(memberName);
-      if (elem == null || elem.isJsonNull()) return defaultResult;
-      return elem.getAsString();
+    static String nameOrDefault(@NotNull final DartTestEvent.ItemData data) {
+      return data.name != null ? data.name : NO_NAME;
     }
 
-    static Metadata extractMetadata(JsonObject obj) {
-      return Metadata.from(obj.get(DEF_METADATA));
-    }
-
-    static Suite lookupSuite(JsonObject obj, Map<Integer, Suite> suites) {
-      JsonElement suiteObj = obj.get(JSON_SUITE_ID);
-      Suite suite = null;
-      if (suiteObj != null && suiteObj.isJsonPrimitive()) {
-        int parentId = suiteObj.getAsInt();
-        suite = suites.get(parentId);
-      }
-      return suite;
+    static Suite lookupSuite(@NotNull final DartTestEvent.ItemData data, @NotNull final TIntObjectHashMap<Suite> suites) {
+      return data.suiteId != DartTestEvent.NO_ID ? suites.get(data.suiteId) : null;
     }
 
     Item(int id, String name, Group parent, Suite suite, Metadata metadata, int line, int column, String url) {
@@ -711,17 +668,16 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     private boolean myTestStartReported = false;
     private boolean myTestErrorReported = false;
 
-    static Test from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      int[] groupIds = GSON.fromJson(obj.get(JSON_GROUP_IDS), (Type)int[].class);
+    static Test from(DartTestEvent.ItemData data, TIntObjectHashMap<Group> groups, TIntObjectHashMap<Suite> suites) {
       Group parent = null;
-      if (groupIds != null && groupIds.length > 0) {
-        parent = groups.get(groupIds[groupIds.length - 1]);
+      if (data.lastGroupId != DartTestEvent.NO_ID) {
+        parent = groups.get(data.lastGroupId);
       }
-      Suite suite = lookupSuite(obj, suites);
-      final int line = extractInt(obj, JSON_LINE);
-      final int column = extractInt(obj, JSON_COLUMN);
-      return new Test(extractInt(obj, JSON_ID), extractString(obj, JSON_NAME, NO_NAME), parent, suite, extractMetadata(obj),
-                      line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, extractString(obj, JSON_URL, null));
+      Suite suite = lookupSuite(data, suites);
+      final int line = data.line;
+      final int column = data.column;
+      return new Test(data.id, nameOrDefault(data), parent, suite, Metadata.from(data),
+                      line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, data.url);
     }
 
     Test(int id, String name, Group parent, Suite suite, Metadata metadata, int line, int column, String url) {
@@ -739,19 +695,16 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     private int myTestCount = 0;
     private int myDoneTestsCount = 0;
 
-    static Group from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      JsonElement parentObj = obj.get(JSON_PARENT_ID);
+    static Group from(DartTestEvent.ItemData data, TIntObjectHashMap<Group> groups, TIntObjectHashMap<Suite> suites) {
       Group parent = null;
-      if (parentObj != null && parentObj.isJsonPrimitive()) {
-        int parentId = parentObj.getAsInt();
-        parent = groups.get(parentId);
+      if (data.parentId != DartTestEvent.NO_ID) {
+        parent = groups.get(data.parentId);
       }
-      Suite suite = lookupSuite(obj, suites);
-      final int line = extractInt(obj, JSON_LINE);
-      final int column = extractInt(obj, JSON_COLUMN);
-      return new Group(extractInt(obj, JSON_ID), extractString(obj, JSON_NAME, NO_NAME), parent, suite, extractMetadata(obj),
-                       extractInt(obj, JSON_TEST_COUNT), line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1,
-                       extractString(obj, JSON_URL, null));
+      Suite suite = lookupSuite(data, suites);
+      final int line = data.line;
+      final int column = data.column;
+      return new Group(data.id, nameOrDefault(data), parent, suite, Metadata.from(data),
+                       data.testCount, line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, data.url);
     }
 
     Group(int id, String name, Group parent, Suite suite, Metadata metadata, int count, int line, int column, String url) {
@@ -780,8 +733,8 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     static Metadata NoMetadata = new Metadata();
     static String NONE = "<none>";
 
-    static Suite from(JsonObject obj) {
-      return new Suite(extractInt(obj, JSON_ID), extractString(obj, JSON_PATH, NONE), extractString(obj, JSON_PLATFORM, NONE));
+    static Suite from(DartTestEvent.ItemData data) {
+      return new Suite(data.id, data.path != null ? data.path : NONE, data.platform != null ? data.platform : NONE);
     }
 
     private final String myPlatform;
@@ -805,12 +758,15 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   private static class Metadata {
-    @SuppressWarnings("unused") private boolean skip; // assigned by GSON via reflection
-    @SuppressWarnings("unused") private String skipReason; // assigned by GSON via reflection
-
-    static Metadata from(JsonElement elem) {
-      if (elem == null) return new Metadata();
-      return GSON.fromJson(elem, (Type)Metadata.class);
+    private boolean skip;
+    private String skipReason;
+
+    static Metadata from(DartTestEvent.ItemData data) {
+      if (!data.skip && data.skipReason == null) return Suite.NoMetadata;
+      final Metadata metadata = new Metadata();
+      metadata.skip = data.skip;
+      metadata.skipReason = data.skipReason;
+      return metadata;
     }
   }
 }
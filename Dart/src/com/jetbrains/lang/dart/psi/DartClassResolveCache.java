@@ -1,23 +1,88 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.psi;
 
+import com.intellij.ProjectTopics;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
 import com.intellij.psi.impl.AnyPsiChangeListener;
 import com.intellij.psi.impl.PsiManagerImpl;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.lang.dart.util.DartClassResolveResult;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
+ * Cached {@link DartClassResolveResult}s. Each result remembers the files that were involved in its computation: the file of the class
+ * itself and the files of all classes in its supertype closure, including type arguments. A change in a file drops only the results
+ * that depend on it. Results with unresolved supertypes may be affected by a change anywhere, so they are dropped on any change.
+ *
  * @author Fedor.Korotkov
  */
 public class DartClassResolveCache {
-  private final ConcurrentMap<DartClass, DartClassResolveResult> myMap = createWeakMap();
+  private static class Dependencies {
+    private final Set<VirtualFile> myFiles = new THashSet<>();
+    private boolean myDependsOnAnyChange;
+    private boolean myDependsOnNonPhysicalFile;
+
+    void addClass(@NotNull final DartClass dartClass) {
+      final PsiFile file = dartClass.getContainingFile();
+      final VirtualFile virtualFile = file == null ? null : file.getViewProvider().getVirtualFile();
+      if (virtualFile == null) {
+        myDependsOnAnyChange = true;
+        return;
+      }
+
+      myFiles.add(virtualFile);
+      if (!dartClass.isPhysical()) {
+        myDependsOnNonPhysicalFile = true;
+      }
+    }
+
+    void addAll(@NotNull final Dependencies other) {
+      myFiles.addAll(other.myFiles);
+      myDependsOnAnyChange |= other.myDependsOnAnyChange;
+      myDependsOnNonPhysicalFile |= other.myDependsOnNonPhysicalFile;
+    }
+  }
+
+  private static class Entry {
+    @NotNull private final DartClassResolveResult myResult;
+    // null while the result is being computed
+    @Nullable private final Dependencies myDependencies;
+
+    Entry(@NotNull final DartClassResolveResult result, @Nullable final Dependencies dependencies) {
+      myResult = result;
+      myDependencies = dependencies;
+    }
+
+    boolean dependsOn(@NotNull final VirtualFile file) {
+      return myDependencies == null || myDependencies.myDependsOnAnyChange || myDependencies.myFiles.contains(file);
+    }
+  }
+
+  private final ConcurrentMap<DartClass, Entry> myMap = createWeakMap();
+  // classes whose results are being computed by the current thread, innermost last
+  private final ThreadLocal<Deque<Dependencies>> myComputations = ThreadLocal.withInitial(ArrayDeque::new);
+  private final AtomicLong myModificationCount = new AtomicLong();
+  private final AtomicLong myHitCount = new AtomicLong();
+  private final AtomicLong myMissCount = new AtomicLong();
 
   public static DartClassResolveCache getInstance(Project project) {
     ProgressIndicatorProvider.checkCanceled(); // We hope this method is being called often enough to cancel daemon processes smoothly
@@ -28,9 +93,56 @@ public class DartClassResolveCache {
     project.getMessageBus().connect().subscribe(PsiManagerImpl.ANY_PSI_CHANGE_TOPIC, new AnyPsiChangeListener() {
       @Override
       public void beforePsiChanged(boolean isPhysical) {
-        myMap.clear();
+        // changes in physical files are handled by the PsiTreeChangeListener below, they come with the file
+        if (!isPhysical) {
+          invalidate(entry -> entry.myDependencies == null || entry.myDependencies.myDependsOnNonPhysicalFile);
+        }
+      }
+    });
+
+    project.getMessageBus().connect().subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        // e.g. package roots are changed
+        invalidate(entry -> true);
       }
     });
+
+    // only the events after a change: they know the added and replaced children, and results computed during the change are dropped too
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        // a generic event comes for the whole file together with the specific events below
+        if (!(event instanceof PsiTreeChangeEventImpl && ((PsiTreeChangeEventImpl)event).isGenericChange())) {
+          fileChanged(event);
+        }
+      }
+
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+    }, project);
   }
 
   private static <K, V> ConcurrentMap<K, V> createWeakMap() {
@@ -38,12 +150,139 @@ public class DartClassResolveCache {
                                            ContainerUtil.canonicalStrategy());
   }
 
+  private void fileChanged(@NotNull final PsiTreeChangeEvent event) {
+    final PsiFile file = event.getFile();
+    final VirtualFile virtualFile = file == null ? null : file.getViewProvider().getVirtualFile();
+    if (virtualFile == null || mayAffectOtherFiles(event)) {
+      // e.g. files are added or removed, imports are changed: a reference in any file may now resolve differently
+      invalidate(entry -> true);
+    }
+    else {
+      invalidate(entry -> entry.dependsOn(virtualFile));
+    }
+  }
+
+  /**
+   * To be called when the resolution of references in the file may have changed without a PSI change, e.g. when the analysis server
+   * has sent new navigation data.
+   */
+  public void dropCachesDependingOn(@NotNull final VirtualFile file) {
+    invalidate(entry -> entry.dependsOn(file));
+  }
+
+  private static boolean mayAffectOtherFiles(@NotNull final PsiTreeChangeEvent event) {
+    final PsiElement parent = event.getParent();
+    if (parent == null) return true;
+    if (parent instanceof PsiFile) {
+      // top-level declarations or directives are added, removed or replaced, whitespace and comments don't matter
+      final PsiElement[] children = {event.getChild(), event.getOldChild(), event.getNewChild()};
+      boolean hasChildren = false;
+      for (PsiElement child : children) {
+        if (child == null) continue;
+        hasChildren = true;
+        if (!(child instanceof PsiWhiteSpace) && !(child instanceof PsiComment)) return true;
+      }
+      return !hasChildren;
+    }
+    if (PsiTreeUtil.getNonStrictParentOfType(parent, DartUriBasedDirective.class, DartLibraryStatement.class,
+                                             DartPartOfStatement.class) != null) {
+      return true;
+    }
+    // a renamed top-level declaration may be referenced from other files
+    final DartComponentName componentName = PsiTreeUtil.getNonStrictParentOfType(parent, DartComponentName.class);
+    final PsiElement declaration = componentName == null ? null : componentName.getParent();
+    return declaration != null && declaration.getParent() instanceof PsiFile;
+  }
+
+  private void invalidate(@NotNull final Predicate<Entry> condition) {
+    myModificationCount.incrementAndGet();
+    for (Map.Entry<DartClass, Entry> mapEntry : myMap.entrySet()) {
+      if (condition.test(mapEntry.getValue())) {
+        myMap.remove(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+  }
+
+  /**
+   * To be called before {@link #put} and the computation of the supertypes. Classes resolved during the computation
+   * become dependencies of {@code dartClass} until {@link #finishComputation}.
+   *
+   * @return modification count to be passed to {@link #finishComputation}
+   */
+  public long startComputation(@NotNull final DartClass dartClass) {
+    final Dependencies dependencies = new Dependencies();
+    dependencies.addClass(dartClass);
+    myComputations.get().addLast(dependencies);
+    return myModificationCount.get();
+  }
+
+  /**
+   * @param result             {@code null} if the computation failed, e.g. was canceled
+   * @param dependsOnAnyChange whether the result may change because of a change in any file, e.g. if a supertype is not resolved
+   */
+  public void finishComputation(@NotNull final DartClass dartClass,
+                                @Nullable final DartClassResolveResult result,
+                                final long modificationCountAtStart,
+                                final boolean dependsOnAnyChange) {
+    final Deque<Dependencies> computations = myComputations.get();
+    final Dependencies dependencies = computations.removeLast();
+    dependencies.myDependsOnAnyChange |= dependsOnAnyChange;
+
+    final Dependencies outerComputation = computations.peekLast();
+    if (outerComputation != null) {
+      outerComputation.addAll(dependencies);
+    }
+
+    if (result != null && myModificationCount.get() == modificationCountAtStart) {
+      myMap.put(dartClass, new Entry(result, dependencies));
+    }
+    else {
+      // the result is incomplete or something has changed while computing
+      myMap.remove(dartClass);
+    }
+  }
+
+  /**
+   * Puts a result that is being computed; it's visible to recursive lookups but is dropped on any change until
+   * {@link #finishComputation} is called.
+   */
   public void put(@NotNull DartClass dartClass, @NotNull DartClassResolveResult result) {
-    myMap.put(dartClass, result);
+    myMap.put(dartClass, new Entry(result, null));
   }
 
   @Nullable
   public DartClassResolveResult get(DartClass dartClass) {
-    return myMap.get(dartClass);
+    final Entry entry = myMap.get(dartClass);
+
+    final Dependencies outerComputation = myComputations.get().peekLast();
+    if (outerComputation != null) {
+      outerComputation.addClass(dartClass);
+      if (entry != null && entry.myDependencies != null) {
+        outerComputation.addAll(entry.myDependencies);
+      }
+    }
+
+    if (entry == null) {
+      myMissCount.incrementAndGet();
+      return null;
+    }
+
+    myHitCount.incrementAndGet();
+    return entry.myResult;
+  }
+
+  public long getHitCount() {
+    return myHitCount.get();
+  }
+
+  public long getMissCount() {
+    return myMissCount.get();
+  }
+
+  @NotNull
+  Set<VirtualFile> getDependencies(@NotNull DartClass dartClass) {
+    final Entry entry = myMap.get(dartClass);
+    return entry == null || entry.myDependencies == null ? Collections.emptySet()
+                                                         : Collections.unmodifiableSet(entry.myDependencies.myFiles);
   }
 }
@@ -150,7 +150,8 @@ public class DartFileReference implements PsiPolyVariantReference {
           final PsiElement parent = reference.getElement().getParent();
           final int parentOffset = parent.getTextRange().getStartOffset();
           final int parentLength = parent.getTextRange().getLength();
-          final List<DartNavigationRegion> regions = das.analysis_getNavigation(virtualFile, parentOffset, parentLength);
+          final List<DartNavigationRegion> regions =
+            DartAnalysisServerService.awaitAsyncResult(das.analysis_getNavigationAsync(virtualFile, parentOffset, parentLength), null);
           if (regions != null) {
             region = DartResolver.findRegion(regions, refOffset, refLength);
           }
@@ -0,0 +1,123 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.resolve;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.jetbrains.lang.dart.DartFileType;
+import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.psi.DartClass;
+import com.jetbrains.lang.dart.psi.DartFile;
+import com.jetbrains.lang.dart.psi.DartFunctionBody;
+import com.jetbrains.lang.dart.psi.DartReference;
+import com.jetbrains.lang.dart.util.DartClassResolveResult;
+import com.jetbrains.lang.dart.util.DartResolveUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves references outside of function bodies and class hierarchies of the files opened in editors in a background read action,
+ * so that the first highlighting pass, hover or navigation finds them in the resolve caches.
+ * References are resolved using the navigation data from the analysis server, so a file is processed only when its navigation data
+ * has arrived, and again each time the caches are dropped because of new navigation data.
+ * The read action is canceled by any write action, e.g. on typing, and is restarted afterwards.
+ */
+public final class DartResolveCacheWarmer {
+  private static final Executor ourExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Dart resolve cache warm-up", 1);
+
+  @NotNull private final DartAnalysisServerService myService;
+  // files opened in editors, waiting for navigation data
+  @NotNull private final Set<VirtualFile> myPendingFiles = ConcurrentHashMap.newKeySet();
+
+  public DartResolveCacheWarmer(@NotNull final DartAnalysisServerService service) {
+    myService = service;
+  }
+
+  public void fileOpened(@NotNull final VirtualFile file) {
+    if (!Registry.is("dart.resolve.cache.warm.up", true)) return;
+
+    if (myService.getNavigation(file).isEmpty()) {
+      myPendingFiles.add(file);
+    }
+    else {
+      scheduleWarmUp(file);
+    }
+  }
+
+  public void fileClosed(@NotNull final VirtualFile file) {
+    myPendingFiles.remove(file);
+  }
+
+  /**
+   * PSI caches are dropped after navigation data arrives, and {@link #psiCachesDropped()} warms up the file then.
+   */
+  public void navigationComputed(@NotNull final VirtualFile file) {
+    myPendingFiles.remove(file);
+  }
+
+  /**
+   * Navigation data of any file drops resolve caches of the whole project, so all files opened in editors are warmed up again.
+   * Warm-ups of the same file are coalesced, so a burst of navigation notifications results in one warm-up per file.
+   */
+  public void psiCachesDropped() {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    if (!Registry.is("dart.resolve.cache.warm.up", true)) return;
+
+    for (VirtualFile file : FileEditorManager.getInstance(myService.getProject()).getOpenFiles()) {
+      if (!myPendingFiles.contains(file) && FileTypeRegistry.getInstance().isFileOfType(file, DartFileType.INSTANCE)) {
+        scheduleWarmUp(file);
+      }
+    }
+  }
+
+  private void scheduleWarmUp(@NotNull final VirtualFile file) {
+    final Project project = myService.getProject();
+    ReadAction
+      .nonBlocking(() -> {
+        final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (psiFile instanceof DartFile) {
+          warmUp((DartFile)psiFile);
+        }
+      })
+      .withDocumentsCommitted(project)
+      .expireWith(myService)
+      .expireWhen(() -> !file.isValid() || !FileEditorManager.getInstance(project).isFileOpen(file))
+      .coalesceBy(this, file)
+      .submit(ourExecutor);
+  }
+
+  static void warmUp(@NotNull final DartFile dartFile) {
+    DartResolveUtil.findLibrary(dartFile);
+
+    dartFile.accept(new PsiRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitElement(@NotNull final PsiElement element) {
+        ProgressManager.checkCanceled();
+
+        if (element instanceof DartFunctionBody) return;
+
+        if (element instanceof DartClass) {
+          DartClassResolveResult.create((DartClass)element);
+        }
+        else if (element instanceof DartReference) {
+          ((DartReference)element).resolve();
+        }
+
+        super.visitElement(element);
+      }
+    });
+  }
+}
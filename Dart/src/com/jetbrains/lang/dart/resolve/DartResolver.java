@@ -15,6 +15,7 @@ import com.intellij.util.ObjectUtils;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.analyzer.DartPackedRegionList;
 import com.jetbrains.lang.dart.analyzer.DartServerData;
 import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationRegion;
 import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationTarget;
@@ -134,15 +135,14 @@ public class DartResolver implements ResolveCache.AbstractResolver<DartReference
                                                 final int offset,
                                                 final int length) {
     int i = findOffsetIndex(regions, offset);
-    if (i >= 0) {
-      DartNavigationRegion midVal = regions.get(i);
-      return midVal.getLength() == length ? midVal : null;
+    if (i >= 0 && getLength(regions, i) == length) {
+      return regions.get(i);
     }
     return null;
   }
 
   private static int findOffsetIndex(@NotNull List<? extends DartNavigationRegion> regions, int offset) {
-    return ObjectUtils.binarySearch(0, regions.size(), mid -> Integer.compare(regions.get(mid).getOffset(), offset));
+    return ObjectUtils.binarySearch(0, regions.size(), mid -> Integer.compare(getOffset(regions, mid), offset));
   }
 
   public static void processRegionsInRange(@NotNull final List<? extends DartNavigationRegion> regions,
@@ -152,30 +152,26 @@ public class DartResolver implements ResolveCache.AbstractResolver<DartReference
 
     // first find the first region that has minimal allowed offset
 
-    int i = ObjectUtils.binarySearch(0, regions.size(), mid -> regions.get(mid).getOffset() < range.getStartOffset() ? -1 : 1);
+    int i = ObjectUtils.binarySearch(0, regions.size(), mid -> getOffset(regions, mid) < range.getStartOffset() ? -1 : 1);
     i = Math.max(0, -i - 2);
-    DartNavigationRegion region = regions.get(i);
-    if (region.getOffset() < range.getStartOffset()) {
+    if (getOffset(regions, i) < range.getStartOffset()) {
       i++;
-      if (i < regions.size()) {
-        region = regions.get(i);
-      }
-      else {
-        return;
-      }
     }
-    while (region.getOffset() + region.getLength() <= range.getEndOffset()) {
-      if (!processor.process(region)) {
-        return;
-      }
 
-      i++;
-      if (i < regions.size()) {
-        region = regions.get(i);
-      }
-      else {
+    for (; i < regions.size() && getOffset(regions, i) + getLength(regions, i) <= range.getEndOffset(); i++) {
+      if (!processor.process(regions.get(i))) {
         return;
       }
     }
   }
+
+  // packed regions are searched without creating region objects
+
+  private static int getOffset(@NotNull final List<? extends DartNavigationRegion> regions, final int index) {
+    return regions instanceof DartPackedRegionList ? ((DartPackedRegionList<?>)regions).getOffset(index) : regions.get(index).getOffset();
+  }
+
+  private static int getLength(@NotNull final List<? extends DartNavigationRegion> regions, final int index) {
+    return regions instanceof DartPackedRegionList ? ((DartPackedRegionList<?>)regions).getLength(index) : regions.get(index).getLength();
+  }
 }
@@ -40,22 +40,34 @@ public class DartClassResolveResult implements Cloneable {
       return new DartClassResolveResult(null);
     }
 
-    DartClassResolveResult resolveResult = DartClassResolveCache.getInstance(dartClass.getProject()).get(dartClass);
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(dartClass.getProject());
+    DartClassResolveResult resolveResult = cache.get(dartClass);
 
     if (resolveResult == null) {
       resolveResult = new DartClassResolveResult(dartClass);
-      DartClassResolveCache.getInstance(dartClass.getProject()).put(dartClass, resolveResult);
-
-      final DartType superClass = dartClass.getSuperClass();
-      if (superClass != null) {
-        final DartClassResolveResult result = DartResolveUtil.resolveClassByType(superClass);
-        result.specializeByParameters(superClass.getTypeArguments());
-        resolveResult.merge(result.getSpecialization());
+      final long modificationCount = cache.startComputation(dartClass);
+      cache.put(dartClass, resolveResult);
+
+      boolean completed = false;
+      boolean hasUnresolvedSupers = false;
+      try {
+        final DartType superClass = dartClass.getSuperClass();
+        if (superClass != null) {
+          final DartClassResolveResult result = DartResolveUtil.resolveClassByType(superClass);
+          result.specializeByParameters(superClass.getTypeArguments());
+          resolveResult.merge(result.getSpecialization());
+          hasUnresolvedSupers = hasUnresolvedReferences(superClass);
+        }
+        for (DartType dartType : DartResolveUtil.getImplementsAndMixinsList(dartClass)) {
+          final DartClassResolveResult result = DartResolveUtil.resolveClassByType(dartType);
+          result.specializeByParameters(dartType.getTypeArguments());
+          resolveResult.merge(result.getSpecialization());
+          hasUnresolvedSupers |= hasUnresolvedReferences(dartType);
+        }
+        completed = true;
       }
-      for (DartType dartType : DartResolveUtil.getImplementsAndMixinsList(dartClass)) {
-        final DartClassResolveResult result = DartResolveUtil.resolveClassByType(dartType);
-        result.specializeByParameters(dartType.getTypeArguments());
-        resolveResult.merge(result.getSpecialization());
+      finally {
+        cache.finishComputation(dartClass, completed ? resolveResult : null, modificationCount, hasUnresolvedSupers);
       }
     }
 
@@ -64,6 +76,21 @@ public class DartClassResolveResult implements Cloneable {
     return clone;
   }
 
+  /**
+   * The class that the type refers to may appear in any file, so the cached result depends on all files.
+   */
+  private static boolean hasUnresolvedReferences(@NotNull final DartType type) {
+    if (type.resolveReference() == null) return true;
+
+    final DartTypeArguments typeArguments = type.getTypeArguments();
+    if (typeArguments != null) {
+      for (DartType argument : typeArguments.getTypeList().getTypeList()) {
+        if (hasUnresolvedReferences(argument)) return true;
+      }
+    }
+    return false;
+  }
+
   private void merge(@NotNull final DartGenericSpecialization otherSpecializations) {
     for (String key : otherSpecializations.map.keySet()) {
       mySpecialization.map.put(key, otherSpecializations.map.get(key));
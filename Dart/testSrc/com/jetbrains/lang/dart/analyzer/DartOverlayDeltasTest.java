@@ -0,0 +1,104 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public class DartOverlayDeltasTest extends BasePlatformTestCase {
+  private static final String TEXT = StringUtil.repeat("void foo() {}\n", 100);
+
+  private Document myDocument;
+  private long myBaseTimestamp;
+  private DartAnalysisServerService.OverlayDeltas myDeltas;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDocument = EditorFactory.getInstance().createDocument(TEXT);
+    myBaseTimestamp = myDocument.getModificationStamp();
+    myDeltas = new DartAnalysisServerService.OverlayDeltas(myBaseTimestamp);
+    myDocument.addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        myDeltas.addEdit(e);
+      }
+    }, getTestRootDisposable());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myDocument = null;
+    myDeltas = null;
+    super.tearDown();
+  }
+
+  private void edit(@NotNull final Runnable runnable) {
+    WriteCommandAction.runWriteCommandAction(getProject(), runnable);
+  }
+
+  @NotNull
+  private static String applyEdits(@NotNull final String text, @NotNull final List<SourceEdit> edits) {
+    final StringBuilder builder = new StringBuilder(text);
+    for (SourceEdit edit : edits) {
+      builder.replace(edit.getOffset(), edit.getOffset() + edit.getLength(), edit.getReplacement());
+    }
+    return builder.toString();
+  }
+
+  public void testEditsCollectedInOrder() {
+    edit(() -> {
+      myDocument.insertString(0, "// comment\n");
+      myDocument.deleteString(15, 18);
+      myDocument.replaceString(100, 105, "bar");
+      myDocument.insertString(myDocument.getTextLength(), "main() {}\n");
+    });
+
+    assertEquals(4, myDeltas.getEdits().size());
+    assertTrue(myDeltas.isApplicable(myBaseTimestamp, myDocument));
+    assertEquals(myDocument.getText(), applyEdits(TEXT, myDeltas.getEdits()));
+  }
+
+  public void testNotApplicableToOtherOverlaidContent() {
+    edit(() -> myDocument.insertString(0, "// comment\n"));
+    assertFalse(myDeltas.isApplicable(null, myDocument));
+    assertFalse(myDeltas.isApplicable(myBaseTimestamp - 1, myDocument));
+  }
+
+  public void testNotApplicableIfDocumentChangedAfterwards() {
+    edit(() -> myDocument.insertString(0, "// comment\n"));
+    final DartAnalysisServerService.OverlayDeltas staleDeltas = myDeltas;
+    myDeltas = new DartAnalysisServerService.OverlayDeltas(myDocument.getModificationStamp());
+    edit(() -> myDocument.insertString(0, "// another comment\n"));
+    assertFalse(staleDeltas.isApplicable(myBaseTimestamp, myDocument));
+  }
+
+  public void testTooManyEditsFallBackToWholeText() {
+    edit(() -> {
+      for (int i = 0; i <= DartAnalysisServerService.MAX_OVERLAY_DELTA_EDITS; i++) {
+        myDocument.insertString(i, "x");
+      }
+    });
+
+    assertTrue(myDeltas.getEdits().isEmpty());
+    assertFalse(myDeltas.isApplicable(myBaseTimestamp, myDocument));
+
+    // once broken, deltas stay broken until the whole text is sent
+    edit(() -> myDocument.insertString(0, "y"));
+    assertTrue(myDeltas.getEdits().isEmpty());
+    assertFalse(myDeltas.isApplicable(myBaseTimestamp, myDocument));
+  }
+
+  public void testDeltasBiggerThanDocumentFallBackToWholeText() {
+    edit(() -> myDocument.replaceString(0, myDocument.getTextLength(), "main() {}\n"));
+    assertFalse(myDeltas.isApplicable(myBaseTimestamp, myDocument));
+  }
+}
@@ -0,0 +1,172 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks {@link DartPackedRegionList} against the straightforward per-region update that was used for lists of region objects.
+ */
+public class DartPackedRegionListTest extends BasePlatformTestCase {
+  private static final int TEXT_LENGTH = 2000;
+
+  private static final class TestRegionList extends DartPackedRegionList<DartServerData.DartRegion> {
+    TestRegionList(@NotNull final List<DartServerData.DartRegion> sortedRegions) {
+      super(sortedRegions.size());
+      for (DartServerData.DartRegion region : sortedRegions) {
+        addRegion(region.getOffset(), region.getLength());
+      }
+    }
+
+    @Override
+    public DartServerData.DartRegion get(int index) {
+      return new DartServerData.DartRegion(getOffset(index), getLength(index));
+    }
+  }
+
+  private static void updateDeletingTouched(@NotNull final List<DartServerData.DartRegion> regions, @NotNull final DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    final int untouchedOffset = deltaLength > 0 ? eventOffset : eventOffset - deltaLength;
+
+    final Iterator<DartServerData.DartRegion> iterator = regions.iterator();
+    while (iterator.hasNext()) {
+      final DartServerData.DartRegion region = iterator.next();
+      if (deltaLength == 0) continue;
+
+      if (untouchedOffset <= region.myOffset) {
+        region.myOffset += deltaLength;
+      }
+      else if (eventOffset < region.myOffset + region.myLength) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private static void updateUpdatingTouched(@NotNull final List<DartServerData.DartRegion> regions, @NotNull final DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+
+    final Iterator<DartServerData.DartRegion> iterator = regions.iterator();
+    while (iterator.hasNext()) {
+      final DartServerData.DartRegion region = iterator.next();
+
+      if (deltaLength > 0) {
+        if (eventOffset <= region.myOffset) {
+          region.myOffset += deltaLength;
+        }
+        else if (eventOffset < region.myOffset + region.myLength) {
+          region.myLength += deltaLength;
+        }
+      }
+      else if (deltaLength < 0) {
+        final int eventRightOffset = eventOffset - deltaLength;
+        final int regionRightOffset = region.myOffset + region.myLength;
+
+        if (eventRightOffset <= region.myOffset) {
+          region.myOffset += deltaLength;
+        }
+        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
+          region.myLength += deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  @NotNull
+  private static List<DartServerData.DartRegion> createRegions(@NotNull final Random random, final int count, final int maxLength) {
+    final List<DartServerData.DartRegion> regions = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final int offset = random.nextInt(TEXT_LENGTH - maxLength);
+      regions.add(new DartServerData.DartRegion(offset, 1 + random.nextInt(maxLength)));
+    }
+    regions.sort((r1, r2) -> Integer.compare(r1.getOffset(), r2.getOffset()));
+    return regions;
+  }
+
+  private void doTest(final boolean updateTouched, final long seed) {
+    final Random random = new Random(seed);
+    final List<DartServerData.DartRegion> expected = createRegions(random, 300, 40);
+    final TestRegionList packed = new TestRegionList(expected);
+
+    final Document document = EditorFactory.getInstance().createDocument(StringUtil.repeat("x", TEXT_LENGTH));
+    document.addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        if (updateTouched) {
+          updateUpdatingTouched(expected, e);
+          packed.updateUpdatingTouched(e);
+        }
+        else {
+          updateDeletingTouched(expected, e);
+          packed.updateDeletingTouched(e);
+        }
+      }
+    }, getTestRootDisposable());
+
+    for (int step = 0; step < 500 && !expected.isEmpty(); step++) {
+      final int offset = random.nextInt(document.getTextLength());
+      final int oldLength = random.nextInt(3) == 0 ? 0 : random.nextInt(Math.min(20, document.getTextLength() - offset) + 1);
+      final int newLength = random.nextInt(3) == 0 ? 0 : random.nextInt(20);
+      WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + oldLength,
+                                                                                        StringUtil.repeat("y", newLength)));
+
+      assertEquals("seed " + seed + ", step " + step, expected, new ArrayList<>(packed));
+    }
+  }
+
+  public void testDeletingTouched() {
+    for (long seed = 0; seed < 20; seed++) {
+      doTest(false, seed);
+    }
+  }
+
+  public void testUpdatingTouched() {
+    for (long seed = 0; seed < 20; seed++) {
+      doTest(true, seed);
+    }
+  }
+
+  public void testTypingShiftsRegionsAtOffset() {
+    final List<DartServerData.DartRegion> regions = new ArrayList<>();
+    regions.add(new DartServerData.DartRegion(0, 5));
+    regions.add(new DartServerData.DartRegion(10, 5));
+    regions.add(new DartServerData.DartRegion(20, 5));
+    final TestRegionList packed = new TestRegionList(regions);
+
+    final Document document = EditorFactory.getInstance().createDocument(StringUtil.repeat("x", 30));
+    document.addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(@NotNull DocumentEvent e) {
+        packed.updateDeletingTouched(e);
+      }
+    }, getTestRootDisposable());
+
+    // typing right at the start of a region shifts it, typing inside a region deletes it
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(10, "yy"));
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(2, "y"));
+    assertEquals(2, packed.size());
+    assertEquals(13, packed.getOffset(0));
+    assertEquals(23, packed.getOffset(1));
+
+    // deleting a range that touches a region deletes it, regions after it are compacted
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.deleteString(12, 14));
+    assertEquals(1, packed.size());
+    assertEquals(21, packed.getOffset(0));
+    assertEquals(5, packed.getLength(0));
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.internal.remote.ByteRequestSink;
+import com.google.dart.server.internal.remote.RequestPriority;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DartRequestPriorityTest extends TestCase {
+  /**
+   * Blocks the first write until released, so that the following requests stay in the queue.
+   */
+  private static class BlockingOutputStream extends OutputStream {
+    private final CountDownLatch myRelease = new CountDownLatch(1);
+    private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      write(new byte[]{(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) {
+      try {
+        myRelease.await();
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      synchronized (myBytes) {
+        myBytes.write(b, off, len);
+      }
+    }
+
+    @NotNull
+    List<String> getWrittenIds() {
+      final String text;
+      synchronized (myBytes) {
+        text = new String(myBytes.toByteArray(), StandardCharsets.UTF_8);
+      }
+      final List<String> ids = new ArrayList<>();
+      for (String line : text.split("\n")) {
+        if (!line.trim().isEmpty()) {
+          ids.add(new JsonParser().parse(line).getAsJsonObject().get("id").getAsString());
+        }
+      }
+      return ids;
+    }
+  }
+
+  @NotNull
+  private static JsonObject request(@NotNull String id, @NotNull String method, @NotNull String file) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("file", file);
+    final JsonObject request = new JsonObject();
+    request.addProperty("id", id);
+    request.addProperty("method", method);
+    request.add("params", params);
+    return request;
+  }
+
+  public void testPriorityLanes() throws Exception {
+    final BlockingOutputStream stream = new BlockingOutputStream();
+    final ByteRequestSink sink = new ByteRequestSink(stream, null);
+    final List<String> superseded = Collections.synchronizedList(new ArrayList<>());
+    sink.setSupersededRequestListener((id, survivorId) -> superseded.add(id + "->" + survivorId));
+
+    // taken by the writer thread right away, the writer is then blocked
+    sink.add(request("0", "analysis.getErrors", "/a.dart"));
+    while (sink.getQueueSize() > 0) {
+      Thread.sleep(1);
+    }
+
+    sink.add(request("1", "search.getTypeHierarchy", "/a.dart"));
+    sink.add(request("2", "analysis.getErrors", "/b.dart"));
+    sink.add(request("3", "analysis.getHover", "/a.dart"));
+    sink.add(request("4", "analysis.updateContent", "/a.dart"));
+    sink.add(request("5", "completion.getSuggestions", "/a.dart"));
+    sink.add(request("6", "analysis.getErrors", "/b.dart"));
+    assertEquals(5, sink.getQueueSize());
+
+    stream.myRelease.countDown();
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (stream.getWrittenIds().size() < 6 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    // the hover overtakes the background search, the completion doesn't overtake the content update,
+    // the first getErrors for b.dart is superseded by the identical later one
+    assertEquals(Arrays.asList("0", "3", "1", "4", "5", "6"), stream.getWrittenIds());
+    assertEquals(Collections.singletonList("2->6"), superseded);
+    assertEquals(5, sink.getMaxQueueSize());
+
+    sink.close();
+  }
+
+  public void testSearchesAreNotSuperseded() throws Exception {
+    final BlockingOutputStream stream = new BlockingOutputStream();
+    final ByteRequestSink sink = new ByteRequestSink(stream, null);
+    final List<String> superseded = Collections.synchronizedList(new ArrayList<>());
+    sink.setSupersededRequestListener((id, survivorId) -> superseded.add(id + "->" + survivorId));
+
+    sink.add(request("0", "analysis.getErrors", "/a.dart"));
+    while (sink.getQueueSize() > 0) {
+      Thread.sleep(1);
+    }
+
+    // each search gets its own search id in the response and its own search.results notifications
+    sink.add(request("1", "search.findElementReferences", "/a.dart"));
+    sink.add(request("2", "search.findElementReferences", "/a.dart"));
+    assertEquals(2, sink.getQueueSize());
+
+    stream.myRelease.countDown();
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (stream.getWrittenIds().size() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    assertEquals(Arrays.asList("0", "1", "2"), stream.getWrittenIds());
+    assertEquals(Collections.emptyList(), superseded);
+
+    sink.close();
+  }
+
+  public void testPriorityOverride() throws Exception {
+    final BlockingOutputStream stream = new BlockingOutputStream();
+    final ByteRequestSink sink = new ByteRequestSink(stream, null);
+
+    sink.add(request("0", "analysis.getErrors", "/a.dart"));
+    while (sink.getQueueSize() > 0) {
+      Thread.sleep(1);
+    }
+
+    // bulk formatting is queued behind the interactive requests, though edit.format itself is interactive
+    sink.add(request("1", "edit.format", "/a.dart"), RequestPriority.BACKGROUND);
+    sink.add(request("2", "edit.format", "/b.dart"), RequestPriority.BACKGROUND);
+    sink.add(request("3", "analysis.getHover", "/c.dart"));
+
+    stream.myRelease.countDown();
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (stream.getWrittenIds().size() < 4 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    assertEquals(Arrays.asList("0", "3", "1", "2"), stream.getWrittenIds());
+
+    sink.close();
+  }
+}
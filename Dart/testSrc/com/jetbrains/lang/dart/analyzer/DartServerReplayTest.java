@@ -0,0 +1,354 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.dart.server.GetHoverConsumer;
+import com.google.dart.server.internal.remote.RemoteAnalysisServerImpl;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import org.dartlang.analysis.server.protocol.HoverInformation;
+import org.dartlang.analysis.server.protocol.RequestError;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Feeds recorded or generated server messages to {@link DartAnalysisServerService} through a real {@link RemoteAnalysisServerImpl}
+ * connected to a {@link ReplayServerSocket}, so it doesn't need Dart SDK.
+ */
+public class DartServerReplayTest extends DartCodeInsightFixtureTestCase {
+  private static final Set<String> SUGGESTION_KINDS = ImmutableSet.of("CLASS", "FUNCTION", "TOP_LEVEL_VARIABLE");
+
+  private RemoteAnalysisServerImpl myServer;
+
+  @Override
+  protected String getBasePath() {
+    return "/analysisServer/replay";
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      if (myServer != null) {
+        myServer.server_shutdown();
+      }
+    }
+    catch (Throwable e) {
+      addSuppressedException(e);
+    }
+    finally {
+      myServer = null;
+      super.tearDown();
+    }
+  }
+
+  private void startServer(@NotNull ReplayServerSocket socket) throws Exception {
+    myServer = new RemoteAnalysisServerImpl(socket, false);
+    myServer.addAnalysisServerListener(DartAnalysisServerService.getInstance(getProject()).getAnalysisServerListener_TESTS_ONLY());
+    myServer.start();
+  }
+
+  public void testRecordedSession() throws Exception {
+    final VirtualFile file = myFixture.addFileToProject("foo.dart", "class Foo {}\nmain() { new Foo(); }").getVirtualFile();
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance(getProject());
+    // full errors are kept only for visible files
+    service.getServerData_TESTS_ONLY().setVisibleFiles(Collections.singleton(file.getPath()));
+
+    final ReplayServerSocket socket = ReplayServerSocket.load(new File(getTestDataPath(), "session.jsonl"));
+    startServer(socket);
+    socket.replay(socket.getNotifications());
+
+    assertEquals(4, service.getHighlight(file).size());
+    assertEquals(2, service.getNavigation(file).size());
+    assertEquals(file.getPath(), service.getNavigation(file).get(1).getTargets().get(0).getFile());
+    assertEquals(1, service.getErrors(file).size());
+    assertEquals("instantiate_abstract_class", service.getErrors(file).get(0).getCode());
+
+    final List<String> labels = new ArrayList<>();
+    service.getAvailableSuggestionSetIndex(1).processSuggestions("fB", SUGGESTION_KINDS, suggestion -> labels.add(suggestion.getLabel()));
+    assertEquals(Collections.singletonList("fooBar"), labels);
+
+    final AtomicReference<HoverInformation[]> hovers = new AtomicReference<>();
+    myServer.analysis_getHover(file.getPath(), 6, new GetHoverConsumer() {
+      @Override
+      public void computedHovers(HoverInformation[] result) {
+        hovers.set(result);
+      }
+
+      @Override
+      public void onError(RequestError requestError) {
+        fail(requestError.getMessage());
+      }
+    });
+    socket.replay(Collections.emptyList());
+    assertEquals("class Foo", hovers.get()[0].getElementDescription());
+
+    socket.replay(Collections.singletonList(flushResults(Collections.singletonList(file.getPath()))));
+    assertEmpty(service.getHighlight(file));
+    assertEmpty(service.getNavigation(file));
+    assertEmpty(service.getErrors(file));
+  }
+
+  public void testHighlightsAndNavigation() throws Exception {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    startServer(socket);
+    final DartServerData serverData = DartAnalysisServerService.getInstance(getProject()).getServerData_TESTS_ONLY();
+    // results left by other tests in the same light project
+    serverData.clearData();
+
+    final List<JsonObject> notifications = new ArrayList<>();
+    final List<String> paths = generatePaths(20);
+    for (String path : paths) {
+      notifications.add(highlights(path, 5000));
+      notifications.add(navigation(path, 5000));
+    }
+    socket.replay(notifications);
+
+    final String report = serverData.getRetainedDataReport();
+    assertTrue(report, report.contains("highlight: 20 files, 100000 regions"));
+    assertTrue(report, report.contains("navigation: 20 files, 100000 regions"));
+  }
+
+  public void testErrors() throws Exception {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    startServer(socket);
+    final DartServerData serverData = DartAnalysisServerService.getInstance(getProject()).getServerData_TESTS_ONLY();
+    serverData.clearData();
+
+    final List<String> paths = generatePaths(500);
+    serverData.setVisibleFiles(new HashSet<>(paths));
+
+    // the second notification for a file replaces the errors of the first one
+    for (int errorCount : new int[]{10, 7}) {
+      final List<JsonObject> notifications = new ArrayList<>();
+      for (String path : paths) {
+        notifications.add(errors(path, errorCount));
+      }
+      socket.replay(notifications);
+    }
+
+    final String report = serverData.getRetainedDataReport();
+    assertTrue(report, report.startsWith("full errors: 500 files, 3500 errors"));
+    assertTrue(report, report.contains("error summaries: 0 files"));
+  }
+
+  public void testErrorSummariesOfInvisibleFiles() throws Exception {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    startServer(socket);
+    final DartServerData serverData = DartAnalysisServerService.getInstance(getProject()).getServerData_TESTS_ONLY();
+    // results left by other tests in the same light project
+    serverData.clearData();
+
+    final List<String> paths = generatePaths(3);
+    serverData.setVisibleFiles(Collections.singleton(paths.get(0)));
+
+    final List<JsonObject> notifications = new ArrayList<>();
+    for (String path : paths) {
+      notifications.add(errors(path, 10));
+    }
+    socket.replay(notifications);
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().startsWith("full errors: 1 files, 10 errors"));
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().contains("error summaries: 2 files"));
+
+    serverData.setVisibleFiles(Collections.emptySet());
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().startsWith("full errors: 0 files"));
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().contains("error summaries: 3 files"));
+
+    socket.replay(Collections.singletonList(flushResults(paths)));
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().contains("error summaries: 0 files"));
+  }
+
+  public void testAvailableSuggestions() throws Exception {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    startServer(socket);
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance(getProject());
+
+    socket.replay(Collections.singletonList(availableSuggestions(50, 500)));
+
+    for (int id = 1; id <= 50; id++) {
+      final DartSuggestionSetIndex index = service.getAvailableSuggestionSetIndex(id);
+      assertNotNull("suggestion set " + id, index);
+
+      // candidates may include other labels, the completion contributor filters them with the prefix matcher
+      final List<String> labels = new ArrayList<>();
+      index.processSuggestions("Widget", SUGGESTION_KINDS, suggestion -> labels.add(suggestion.getLabel()));
+      assertEquals("suggestion set " + id, 250, labels.stream().filter(label -> label.startsWith("Widget")).count());
+    }
+  }
+
+  public void testFlushResults() throws Exception {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    startServer(socket);
+    final DartServerData serverData = DartAnalysisServerService.getInstance(getProject()).getServerData_TESTS_ONLY();
+    serverData.clearData();
+
+    final List<String> paths = generatePaths(200);
+    final List<JsonObject> notifications = new ArrayList<>();
+    for (String path : paths) {
+      notifications.add(highlights(path, 500));
+      notifications.add(navigation(path, 500));
+      notifications.add(errors(path, 10));
+    }
+    socket.replay(notifications);
+    assertTrue(serverData.getRetainedDataReport(), serverData.getRetainedDataReport().contains("highlight: 200 files"));
+
+    socket.replay(Collections.singletonList(flushResults(paths)));
+    final String report = serverData.getRetainedDataReport();
+    assertTrue(report, report.startsWith("full errors: 0 files"));
+    assertTrue(report, report.contains("error summaries: 0 files"));
+    assertTrue(report, report.contains("highlight: 0 files"));
+    assertTrue(report, report.contains("navigation: 0 files"));
+  }
+
+  @NotNull
+  private static List<String> generatePaths(int count) {
+    final List<String> paths = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      paths.add("/src/lib/file" + i + ".dart");
+    }
+    return paths;
+  }
+
+  @NotNull
+  private static JsonObject notification(@NotNull String event, @NotNull JsonObject params) {
+    final JsonObject notification = new JsonObject();
+    notification.addProperty("event", event);
+    notification.add("params", params);
+    return notification;
+  }
+
+  @NotNull
+  private static JsonObject highlights(@NotNull String path, int regionCount) {
+    final JsonArray regions = new JsonArray();
+    for (int i = 0; i < regionCount; i++) {
+      final JsonObject region = new JsonObject();
+      region.addProperty("type", i % 3 == 0 ? "KEYWORD" : "LOCAL_VARIABLE_REFERENCE");
+      region.addProperty("offset", i * 10);
+      region.addProperty("length", 5);
+      regions.add(region);
+    }
+
+    final JsonObject params = new JsonObject();
+    params.addProperty("file", path);
+    params.add("regions", regions);
+    return notification("analysis.highlights", params);
+  }
+
+  @NotNull
+  private static JsonObject navigation(@NotNull String path, int regionCount) {
+    final int targetCount = Math.max(1, regionCount / 10);
+    final JsonArray targets = new JsonArray();
+    for (int i = 0; i < targetCount; i++) {
+      final JsonObject target = new JsonObject();
+      target.addProperty("kind", "CLASS");
+      target.addProperty("fileIndex", i % 2);
+      target.addProperty("offset", i * 100);
+      target.addProperty("length", 3);
+      target.addProperty("startLine", i + 1);
+      target.addProperty("startColumn", 1);
+      targets.add(target);
+    }
+
+    final JsonArray regions = new JsonArray();
+    for (int i = 0; i < regionCount; i++) {
+      final JsonArray regionTargets = new JsonArray();
+      regionTargets.add(i % targetCount);
+      final JsonObject region = new JsonObject();
+      region.addProperty("offset", i * 10);
+      region.addProperty("length", 5);
+      region.add("targets", regionTargets);
+      regions.add(region);
+    }
+
+    final JsonArray files = new JsonArray();
+    files.add(path);
+    files.add("/sdk/lib/core/core.dart");
+
+    final JsonObject params = new JsonObject();
+    params.addProperty("file", path);
+    params.add("regions", regions);
+    params.add("targets", targets);
+    params.add("files", files);
+    return notification("analysis.navigation", params);
+  }
+
+  @NotNull
+  private static JsonObject errors(@NotNull String path, int errorCount) {
+    final JsonArray errors = new JsonArray();
+    for (int i = 0; i < errorCount; i++) {
+      final JsonObject location = new JsonObject();
+      location.addProperty("file", path);
+      location.addProperty("offset", i * 20);
+      location.addProperty("length", 4);
+      location.addProperty("startLine", i + 1);
+      location.addProperty("startColumn", 1);
+
+      final JsonObject error = new JsonObject();
+      error.addProperty("severity", i % 2 == 0 ? "ERROR" : "WARNING");
+      error.addProperty("type", "STATIC_WARNING");
+      error.add("location", location);
+      error.addProperty("message", "Undefined name 'x" + i + "'.");
+      error.addProperty("code", "undefined_identifier");
+      errors.add(error);
+    }
+
+    final JsonObject params = new JsonObject();
+    params.addProperty("file", path);
+    params.add("errors", errors);
+    return notification("analysis.errors", params);
+  }
+
+  @NotNull
+  private static JsonObject availableSuggestions(int libraryCount, int suggestionsPerLibrary) {
+    final String[] kinds = SUGGESTION_KINDS.toArray(new String[0]);
+    final JsonArray libraries = new JsonArray();
+    for (int libraryId = 1; libraryId <= libraryCount; libraryId++) {
+      final String uri = "package:pkg" + libraryId + "/lib.dart";
+      final JsonArray items = new JsonArray();
+      for (int i = 0; i < suggestionsPerLibrary; i++) {
+        final String label = (i % 2 == 0 ? "get" : "Widget") + Integer.toString(i * 7919 + libraryId, Character.MAX_RADIX);
+        final JsonObject element = new JsonObject();
+        element.addProperty("kind", kinds[i % kinds.length]);
+        element.addProperty("name", label);
+        element.addProperty("flags", 0);
+
+        final JsonObject item = new JsonObject();
+        item.addProperty("label", label);
+        item.addProperty("declaringLibraryUri", uri);
+        item.add("element", element);
+        items.add(item);
+      }
+
+      final JsonObject library = new JsonObject();
+      library.addProperty("id", libraryId);
+      library.addProperty("uri", uri);
+      library.add("items", items);
+      libraries.add(library);
+    }
+
+    final JsonObject params = new JsonObject();
+    params.add("changedLibraries", libraries);
+    params.add("removedLibraries", new JsonArray());
+    return notification("completion.availableSuggestions", params);
+  }
+
+  @NotNull
+  private static JsonObject flushResults(@NotNull List<String> paths) {
+    final JsonArray files = new JsonArray();
+    for (String path : paths) {
+      files.add(path);
+    }
+
+    final JsonObject params = new JsonObject();
+    params.add("files", files);
+    return notification("analysis.flushResults", params);
+  }
+}
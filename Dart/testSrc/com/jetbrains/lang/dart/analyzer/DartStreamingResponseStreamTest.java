@@ -0,0 +1,150 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.internal.remote.StreamingByteResponseStream;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.intellij.openapi.util.text.StringUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DartStreamingResponseStreamTest extends TestCase {
+  /**
+   * Returns at most {@code chunkSize} bytes per read and sleeps before returning the chunk that contains {@code pauseOffset},
+   * like a server that writes a large message in parts.
+   */
+  private static class ChunkedInputStream extends InputStream {
+    private final byte[] myBytes;
+    private final int myChunkSize;
+    private final int myPauseOffset;
+    private final long myPauseMillis;
+    private int myPos;
+
+    ChunkedInputStream(@NotNull final String text, final int chunkSize, final int pauseOffset, final long pauseMillis) {
+      myBytes = text.getBytes(StandardCharsets.UTF_8);
+      myChunkSize = chunkSize;
+      myPauseOffset = pauseOffset;
+      myPauseMillis = pauseMillis;
+    }
+
+    @Override
+    public int read() {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) {
+      if (myPos >= myBytes.length) return -1;
+      if (myPos <= myPauseOffset && myPauseOffset < myPos + myChunkSize) {
+        try {
+          Thread.sleep(myPauseMillis);
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      final int count = Math.min(Math.min(len, myChunkSize), myBytes.length - myPos);
+      System.arraycopy(myBytes, myPos, b, off, count);
+      myPos += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      // makes the reader block for each chunk, like reading from a process
+      return 0;
+    }
+  }
+
+  @NotNull
+  private static StreamingByteResponseStream createStream(@NotNull final String text) {
+    return new StreamingByteResponseStream(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), null, null);
+  }
+
+  @NotNull
+  private static List<String> takeIds(@NotNull final StreamingByteResponseStream stream) throws Exception {
+    final List<String> ids = new ArrayList<>();
+    JsonObject message;
+    while ((message = stream.take()) != null) {
+      ids.add(message.get("id").getAsString());
+    }
+    return ids;
+  }
+
+  public void testMessagesAndDebugLines() throws Exception {
+    final String text = "Observatory listening on http://127.0.0.1:8181\n" +
+                        "{\"id\":\"1\",\"result\":{\"text\":\"}{\\\"\"}}\n" +
+                        "debug line with { and }\n" +
+                        "{\"id\":\"2\",\"result\":{\"list\":[1,{\"a\":[]}]}}\r\n" +
+                        "{\"id\":\"3\"}\n" +
+                        "{\"id\":\"4\"}\n";
+    final StreamingByteResponseStream stream = createStream(text);
+    assertEquals(Arrays.asList("1", "2", "3", "4"), takeIds(stream));
+    assertEquals(4, stream.getMetrics().getMessages());
+    assertEquals("{\"id\":\"4\"}".length(), stream.getMetrics().getLastMessageLength());
+  }
+
+  public void testMessageSplitIntoChunks() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      text.append("{\"id\":\"").append(i).append("\",\"params\":{\"text\":\"").append(StringUtil.repeat("x", 10_000)).append("\"}}\n");
+    }
+    final StreamingByteResponseStream stream =
+      new StreamingByteResponseStream(new ChunkedInputStream(text.toString(), 7, -1, 0), null, null);
+    assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), takeIds(stream));
+  }
+
+  public void testRecoveryAfterMalformedMessage() throws Exception {
+    final StreamingByteResponseStream stream = createStream("{\"id\":\"1\"}\n{\"id\" \"2\"}\n{\"id\":\"3\"}\n");
+    assertEquals("1", stream.take().get("id").getAsString());
+    try {
+      stream.take();
+      fail("malformed message must not be decoded");
+    }
+    catch (JsonSyntaxException ignored) {
+    }
+    assertEquals("3", stream.take().get("id").getAsString());
+    assertNull(stream.take());
+  }
+
+  public void testStreamEnd() throws Exception {
+    final AtomicBoolean ended = new AtomicBoolean();
+    final StreamingByteResponseStream stream =
+      new StreamingByteResponseStream(new ByteArrayInputStream("{\"id\":\"1\"}\n".getBytes(StandardCharsets.UTF_8)), null,
+                                      () -> assertFalse("reported twice", ended.getAndSet(true)));
+    assertNotNull(stream.take());
+    assertFalse(ended.get());
+    assertNull(stream.take());
+    assertTrue(ended.get());
+    assertNull(stream.take());
+  }
+
+  public void testDebugStreamGetsMessageBeginning() throws Exception {
+    final List<String> debugLines = new ArrayList<>();
+    final String longText = StringUtil.repeat("x", 10_000);
+    final String text = "{\"id\":\"1\",\"text\":\"" + longText + "\"}\n";
+    final StreamingByteResponseStream stream =
+      new StreamingByteResponseStream(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), debugLines::add, null);
+    assertNotNull(stream.take());
+    assertEquals(1, debugLines.size());
+    assertTrue(debugLines.get(0).contains("{\"id\":\"1\""));
+    assertTrue(debugLines.get(0).length() < longText.length());
+  }
+
+  public void testWaitingForServerOutputIsNotDecodeTime() throws Exception {
+    final String text = "{\"id\":\"1\",\"params\":{\"text\":\"" + StringUtil.repeat("x", 1000) + "\"}}\n";
+    final StreamingByteResponseStream stream =
+      new StreamingByteResponseStream(new ChunkedInputStream(text, 100, 500, 500), null, null);
+    assertNotNull(stream.take());
+    assertTrue("decode time: " + stream.getMetrics().getDecodeMillis(), stream.getMetrics().getDecodeMillis() < 250);
+  }
+}
@@ -0,0 +1,204 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.dart.server.AnalysisServerSocket;
+import com.google.dart.server.internal.remote.AnalysisServerMetrics;
+import com.google.dart.server.internal.remote.ByteLineReaderStream;
+import com.google.dart.server.internal.remote.RequestSink;
+import com.google.dart.server.internal.remote.ResponseStream;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link AnalysisServerSocket} that plays back a recorded session instead of running the Dart Analysis Server,
+ * so that the plugin-side handling of server messages can be tested and measured without Dart SDK.
+ * <p>
+ * Notifications are played back by {@link #replay(List)}. A request gets the response that was recorded for the next request
+ * with the same method, or an empty result if there's no such response.
+ */
+public class ReplayServerSocket implements AnalysisServerSocket {
+  private static final JsonObject END_OF_STREAM = new JsonObject();
+
+  private final Map<String, Deque<JsonObject>> myMethodToResponses = new THashMap<>();
+  private final List<JsonObject> myNotifications = new ArrayList<>();
+  private final List<JsonObject> mySentRequests = Collections.synchronizedList(new ArrayList<>());
+
+  private final BlockingQueue<JsonObject> myQueue = new LinkedBlockingQueue<>();
+  private final Object myProcessedLock = new Object();
+  private long myQueuedCount;
+  private long myProcessedCount;
+  private volatile boolean myOpen;
+
+  private final RequestSink myRequestSink = new RequestSink() {
+    @Override
+    public void add(JsonObject request) {
+      mySentRequests.add(request);
+
+      final String id = request.get("id").getAsString();
+      final Deque<JsonObject> responses = myMethodToResponses.get(request.get("method").getAsString());
+      final JsonObject recorded = responses == null ? null : responses.pollFirst();
+
+      final JsonObject response = new JsonObject();
+      if (recorded != null) {
+        for (Map.Entry<String, JsonElement> entry : recorded.entrySet()) {
+          response.add(entry.getKey(), entry.getValue());
+        }
+      }
+      else {
+        response.add("result", new JsonObject());
+      }
+      response.addProperty("id", id);
+      enqueue(response);
+    }
+
+    @Override
+    public void close() {
+      myOpen = false;
+      myQueue.add(END_OF_STREAM);
+    }
+  };
+
+  private final ResponseStream myResponseStream = new ResponseStream() {
+    @Override
+    public void lastRequestProcessed() {
+      synchronized (myProcessedLock) {
+        myProcessedCount++;
+        myProcessedLock.notifyAll();
+      }
+    }
+
+    @Override
+    public JsonObject take() throws Exception {
+      final JsonObject message = myQueue.take();
+      return message == END_OF_STREAM ? null : message;
+    }
+  };
+
+  /**
+   * Creates a socket that plays back the given notifications and answers all requests with an empty result.
+   */
+  public ReplayServerSocket(@NotNull List<JsonObject> notifications) {
+    myNotifications.addAll(notifications);
+  }
+
+  /**
+   * Reads a trace written by {@link AnalysisServerMetrics#writeTrace}.
+   * Responses to the requests that are not in the trace are skipped.
+   */
+  @NotNull
+  public static ReplayServerSocket load(@NotNull File traceFile) throws IOException {
+    final ReplayServerSocket socket = new ReplayServerSocket(Collections.emptyList());
+    final Map<String, String> requestIdToMethod = new THashMap<>();
+
+    try (BufferedReader reader = Files.newBufferedReader(traceFile.toPath(), StandardCharsets.UTF_8)) {
+      final JsonParser parser = new JsonParser();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) continue;
+
+        final JsonObject entry = parser.parse(line).getAsJsonObject();
+        final JsonObject message = entry.getAsJsonObject("message");
+        if ("request".equals(entry.get("direction").getAsString())) {
+          requestIdToMethod.put(message.get("id").getAsString(), message.get("method").getAsString());
+        }
+        else if (message.has("event")) {
+          socket.myNotifications.add(message);
+        }
+        else {
+          final String method = message.has("id") ? requestIdToMethod.get(message.get("id").getAsString()) : null;
+          if (method != null) {
+            socket.myMethodToResponses.computeIfAbsent(method, k -> new ArrayDeque<>()).add(message);
+          }
+        }
+      }
+    }
+
+    return socket;
+  }
+
+  /**
+   * Notifications in the order they were recorded.
+   */
+  @NotNull
+  public List<JsonObject> getNotifications() {
+    return Collections.unmodifiableList(myNotifications);
+  }
+
+  @NotNull
+  public List<JsonObject> getSentRequests() {
+    synchronized (mySentRequests) {
+      return new ArrayList<>(mySentRequests);
+    }
+  }
+
+  /**
+   * Passes the messages to the client and waits until all of them are processed.
+   */
+  public void replay(@NotNull List<JsonObject> messages) throws InterruptedException {
+    for (JsonObject message : messages) {
+      enqueue(message);
+    }
+    waitForProcessed();
+  }
+
+  private void enqueue(@NotNull JsonObject message) {
+    synchronized (myProcessedLock) {
+      myQueuedCount++;
+    }
+    myQueue.add(message);
+  }
+
+  private void waitForProcessed() throws InterruptedException {
+    synchronized (myProcessedLock) {
+      while (myProcessedCount < myQueuedCount) {
+        myProcessedLock.wait();
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public ByteLineReaderStream getErrorStream() {
+    return null;
+  }
+
+  @Override
+  public RequestSink getRequestSink() {
+    return myRequestSink;
+  }
+
+  @Override
+  public ResponseStream getResponseStream() {
+    return myResponseStream;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return myOpen;
+  }
+
+  @Override
+  public void start() {
+    myOpen = true;
+  }
+
+  @Override
+  public void stop() {
+    if (myOpen) {
+      myRequestSink.close();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.coverage;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+
+public class DartCoverageDataTest extends TestCase {
+  public void testMergedHits() throws IOException {
+    final String json = "{\"type\": \"CodeCoverage\", \"coverage\": [\n" +
+                        "  {\"source\": \"package:foo/foo.dart\", \"script\": {\"type\": \"@Script\", \"id\": \"1\"}, \"hits\": [3, 1, 5, 0]},\n" +
+                        "  {\"hits\": [7, 2, 3, 4], \"source\": \"package:foo/foo.dart\"},\n" +
+                        "  {\"source\": \"package:foo/range.dart\", \"hits\": [\"2-4\", 1, 6, 3]},\n" +
+                        "  {\"source\": \"package:foo/empty.dart\", \"hits\": []},\n" +
+                        "  {\"script\": {}, \"hits\": [1, 1]}\n" +
+                        "]}";
+    final Map<String, DartFileCoverageData> data = DartCoverageData.read(new StringReader(json)).getMergedDartFileCoverageData();
+    assertEquals(Arrays.asList("package:foo/foo.dart", "package:foo/range.dart", "package:foo/empty.dart"),
+                 Arrays.asList(data.keySet().toArray()));
+
+    final DartFileCoverageData foo = data.get("package:foo/foo.dart");
+    assertEquals(7, foo.getMaxLine());
+    final int[] fooHits = foo.getLineHits(100);
+    assertEquals(8, fooHits.length);
+    assertEquals(-1, fooHits[2]);
+    assertEquals(5, fooHits[3]);
+    assertEquals(0, fooHits[5]);
+    assertEquals(2, fooHits[7]);
+
+    final DartFileCoverageData range = data.get("package:foo/range.dart");
+    assertEquals(6, range.getMaxLine());
+    assertEquals("[-1, -1, 1, 1, 1, -1, 3]", Arrays.toString(range.getLineHits(100)));
+
+    assertEquals(-1, data.get("package:foo/empty.dart").getMaxLine());
+  }
+
+  public void testLinesAfterFileEndIgnored() throws IOException {
+    final String json = "{\"coverage\": [{\"source\": \"a.dart\", \"hits\": [2, 1, \"3-2000000000\", 4, 2147483647, 5]}]}";
+    final DartFileCoverageData data = DartCoverageData.read(new StringReader(json)).getMergedDartFileCoverageData().get("a.dart");
+    assertEquals(Integer.MAX_VALUE, data.getMaxLine());
+    assertEquals("[-1, -1, 1, 4, 4]", Arrays.toString(data.getLineHits(4)));
+    assertEquals(0, data.getLineHits(-1).length);
+  }
+
+  public void testMalformed() {
+    for (String json : Arrays.asList("", "[]", "{\"coverage\": [{\"source\": \"a.dart\", \"hits\": [1, \"x\"]}]}", "{\"coverage\": [")) {
+      try {
+        DartCoverageData.read(new StringReader(json));
+        fail("Exception expected for " + json);
+      }
+      catch (IOException ignore) {
+      }
+    }
+  }
+}
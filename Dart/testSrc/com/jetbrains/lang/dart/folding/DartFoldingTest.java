@@ -2,12 +2,24 @@
 package com.jetbrains.lang.dart.folding;
 
 import com.intellij.codeInsight.folding.CodeFoldingSettings;
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
 import com.intellij.util.Consumer;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.DartFileType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class DartFoldingTest extends DartCodeInsightFixtureTestCase {
 
   private void doTest() {
@@ -149,4 +161,74 @@ public class DartFoldingTest extends DartCodeInsightFixtureTestCase {
   public void testCustomRegions() {
     doTest();
   }
+
+  public void testIncrementalRegionsInGeneratedFile() {
+    final PsiFile file = myFixture.configureByText("model.g.dart", generateModelFile(20));
+    final Document document = myFixture.getEditor().getDocument();
+    assertEquals(buildFoldRegions(createCopy(document)), buildFoldRegions(file));
+
+    insertInToString(document, 5, "    final prefix = 'a';\n");
+    assertEquals(buildFoldRegions(createCopy(document)), buildFoldRegions(file));
+
+    insertInToString(document, 10, "    if (id == null) {\n      return '';\n    }\n");
+    assertEquals(buildFoldRegions(createCopy(document)), buildFoldRegions(file));
+  }
+
+  public void testLargeGeneratedFile() {
+    final int classCount = 2000;
+    final int editCount = 20;
+    final PsiFile file = myFixture.configureByText("model.freezed.dart", generateModelFile(classCount));
+    final Document document = myFixture.getEditor().getDocument();
+    buildFoldRegions(file);
+
+    for (int i = 0; i < editCount; i++) {
+      insertInToString(document, 1000, "    final x" + i + " = " + i + ";\n");
+      buildFoldRegions(file);
+    }
+    assertEquals(buildFoldRegions(createCopy(document)), buildFoldRegions(file));
+  }
+
+  @NotNull
+  private static String generateModelFile(final int classCount) {
+    final StringBuilder builder = new StringBuilder();
+    builder.append("// GENERATED CODE - DO NOT MODIFY BY HAND\n\n");
+    builder.append("part of 'model.dart';\n\n");
+    for (int i = 0; i < classCount; i++) {
+      builder.append("/// Implementation of [Model").append(i).append("].\n")
+        .append("/// Generated.\n")
+        .append("class _$Model").append(i).append(" implements Model").append(i).append(" {\n")
+        .append("  const _$Model").append(i).append("({this.id, this.name});\n\n")
+        .append("  @override\n  final int id;\n  @override\n  final String name;\n\n")
+        .append("  @override\n  String toString() {\n    return 'Model").append(i).append("(id: $id, name: $name)';\n  }\n\n")
+        .append("  Map<String, dynamic> toJson() => <String, dynamic>{\n    'id': id,\n    'name': name,\n  };\n")
+        .append("}\n\n");
+    }
+    return builder.toString();
+  }
+
+  private void insertInToString(@NotNull final Document document, final int classIndex, @NotNull final String text) {
+    final String classStart = "class _$Model" + classIndex + " ";
+    final String methodStart = "String toString() {\n";
+    final int offset = document.getText().indexOf(methodStart, document.getText().indexOf(classStart)) + methodStart.length();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.insertString(offset, text);
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+  }
+
+  @NotNull
+  private PsiFile createCopy(@NotNull final Document document) {
+    return PsiFileFactory.getInstance(getProject()).createFileFromText("copy.dart", DartFileType.INSTANCE, document.getText());
+  }
+
+  @NotNull
+  private static List<String> buildFoldRegions(@NotNull final PsiFile file) {
+    final Document document = EditorFactory.getInstance().createDocument(file.getText());
+    final List<String> result = new ArrayList<>();
+    for (FoldingDescriptor descriptor : new DartFoldingBuilder().buildFoldRegions(file, document, false)) {
+      result.add(descriptor.getRange() + " " + descriptor.getElement().getElementType());
+    }
+    Collections.sort(result);
+    return result;
+  }
 }
@@ -0,0 +1,138 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.psi.PsiFile;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks that {@link DartLexerIndexer} gives the same {@link DartFileIndexData} as the PSI-based indexing, or gives up.
+ */
+public class DartLexerIndexerTest extends DartCodeInsightFixtureTestCase {
+  private void doTest(@NotNull String text) {
+    final PsiFile file = myFixture.configureByText("foo.dart", text);
+    final DartFileIndexData expected = DartIndexUtil.indexFileRoots(file);
+    final DartFileIndexData actual = DartLexerIndexer.indexFile(text);
+
+    assertNotNull("Lexer-based indexer gave up", actual);
+    assertEquals(expected.getLibraryName(), actual.getLibraryName());
+    assertEquals(expected.isPart(), actual.isPart());
+    assertEquals(sorted(expected.getClassNames()), sorted(actual.getClassNames()));
+    assertEquals(sorted(expected.getSymbols()), sorted(actual.getSymbols()));
+    assertEquals(expected.getComponentInfoMap(), actual.getComponentInfoMap());
+    assertEquals(expected.getImportAndExportInfos(), actual.getImportAndExportInfos());
+    assertEquals(expected.getPartUris(), actual.getPartUris());
+  }
+
+  private static void doTestFallback(@NotNull String text) {
+    assertNull(DartLexerIndexer.indexFile(text));
+  }
+
+  @NotNull
+  private static List<String> sorted(@NotNull List<String> list) {
+    final List<String> result = new ArrayList<>(list);
+    Collections.sort(result);
+    return result;
+  }
+
+  public void testDirectives() {
+    doTest("// comment\n" +
+           "@deprecated\n" +
+           "library my.lib . name;\n" +
+           "\n" +
+           "import 'dart:async';\n" +
+           "import \"package:foo/foo.dart\" as foo show A, B hide C;\n" +
+           "import 'package:bar/bar.dart' deferred as bar;\n" +
+           "import 'a.dart' if (dart.library.io) 'a_io.dart' if (dart.library.html) 'a_html.dart' show X;\n" +
+           "import r'raw.dart';\n" +
+           "export 'src/x.dart' show Y, Z hide W;\n" +
+           "export '''triple.dart''';\n" +
+           "part 'part1.dart';\n" +
+           "part \"part2.dart\";\n");
+  }
+
+  public void testPartOf() {
+    doTest("part of my.lib;\n" +
+           "\n" +
+           "class PartClass {}\n" +
+           "var partVariable;\n");
+  }
+
+  public void testClassMembers() {
+    doTest("library members;\n" +
+           "\n" +
+           "abstract class Base<T extends Comparable<T>> extends Object with M implements Comparable<Base<T>> {\n" +
+           "  static const int constant = 1, other = 2;\n" +
+           "  final Map<String, List<int>> map = <String, List<int>>{'a': [1, 2]};\n" +
+           "  late final String lateField;\n" +
+           "  covariant num cov;\n" +
+           "  void Function(int, String)? callback;\n" +
+           "  int _count = 0;\n" +
+           "\n" +
+           "  Base();\n" +
+           "  Base.named(this._count) : super();\n" +
+           "  const Base.constant() : _count = 0, lateField = '';\n" +
+           "  factory Base.create() = _Impl;\n" +
+           "  factory Base.fromJson(Map json) => _Impl();\n" +
+           "\n" +
+           "  int get count => _count;\n" +
+           "  set count(int value) { _count = value; }\n" +
+           "  bool operator ==(Object other) => identical(this, other);\n" +
+           "  T operator [](int index);\n" +
+           "  void operator []=(int index, T value) {}\n" +
+           "  Base<T> operator -() => this;\n" +
+           "  Future<void> load() async { await null; }\n" +
+           "  Stream<int> numbers() async* { yield 1; }\n" +
+           "  Iterable<T> items<S>(S s) sync* {}\n" +
+           "  String toString() => 'Base $_count ${map.length}';\n" +
+           "  @override int get hashCode => 0;\n" +
+           "  external void externalMethod();\n" +
+           "}\n" +
+           "\n" +
+           "class _Impl<T extends Comparable<T>> extends Base<T> {}\n" +
+           "mixin M on Object { void mixinMethod() {} }\n" +
+           "enum Color { red, green, blue, }\n" +
+           "class Mixed = Object with M;\n" +
+           "extension StringExt on String { int get twice => length * 2; }\n");
+  }
+
+  public void testTopLevelDeclarations() {
+    doTest("library top.level;\n" +
+           "\n" +
+           "typedef int Compare<T>(T a, T b);\n" +
+           "typedef Callback = void Function(String message);\n" +
+           "typedef Mapper<T> = T Function(Object value);\n" +
+           "\n" +
+           "const answer = 42;\n" +
+           "final list = <int>[1, 2, 3], second = [];\n" +
+           "var a = 1, b = f(1, 2), c;\n" +
+           "int? nullable;\n" +
+           "late String lateGlobal;\n" +
+           "Map<String, int> typed = {'a': 1};\n" +
+           "void Function()? globalCallback;\n" +
+           "String interpolated = 'x ${a + 1} $b';\n" +
+           "\n" +
+           "get topGetter => 1;\n" +
+           "set topSetter(value) {}\n" +
+           "int get typedGetter { return 1; }\n" +
+           "main() { print('hello'); }\n" +
+           "void withClosure() { var f = () { return {1: 2}; }; }\n" +
+           "Future<int> asyncFunction() async => 1;\n" +
+           "T genericFunction<T extends Object>(T t) => t;\n" +
+           "external int externalFunction();\n" +
+           "int f(int x, int y) => x + y;\n");
+  }
+
+  public void testFallback() {
+    doTestFallback("class A { void foo( }");
+    doTestFallback("var s = 'not closed\nclass A {}");
+    doTestFallback("int;");
+    doTestFallback("var a = b < c, d = e > (f);");
+    doTestFallback("import 'a${b}.dart';");
+    doTestFallback("class A { B() : x = {}; }");
+  }
+}
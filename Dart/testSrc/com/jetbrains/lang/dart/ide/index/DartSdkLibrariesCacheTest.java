@@ -0,0 +1,59 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.index;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.BidirectionalMap;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+public class DartSdkLibrariesCacheTest extends TestCase {
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("dart-sdk-libraries", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSaveAndLoad() {
+    final String hash =
+      DartSdkLibrariesCache.computeHash("const Map<String, LibraryInfo> LIBRARIES = const {};".getBytes(StandardCharsets.UTF_8));
+    final String otherHash = DartSdkLibrariesCache.computeHash("// changed".getBytes(StandardCharsets.UTF_8));
+    assertFalse(hash.equals(otherHash));
+
+    final BidirectionalMap<String, String> map = new BidirectionalMap<>();
+    map.put("dart:core", "core/core.dart");
+    map.put("dart:async", "async/async.dart");
+    map.put("dart:_internal", "internal/internal.dart");
+
+    assertNull(DartSdkLibrariesCache.load(myCacheDir, "/sdk", hash));
+    DartSdkLibrariesCache.save(myCacheDir, "/sdk", hash, map);
+
+    final BidirectionalMap<String, String> loaded = DartSdkLibrariesCache.load(myCacheDir, "/sdk", hash);
+    assertNotNull(loaded);
+    assertEquals(new HashMap<>(map), new HashMap<>(loaded));
+    assertEquals("dart:core", loaded.getKeysByValue("core/core.dart").get(0));
+
+    assertNull(DartSdkLibrariesCache.load(myCacheDir, "/sdk", otherHash));
+    assertNull(DartSdkLibrariesCache.load(myCacheDir, "/other/sdk", hash));
+
+    DartSdkLibrariesCache.save(myCacheDir, "/sdk", otherHash, new BidirectionalMap<>());
+    assertNull(DartSdkLibrariesCache.load(myCacheDir, "/sdk", hash));
+    final BidirectionalMap<String, String> emptyMap = DartSdkLibrariesCache.load(myCacheDir, "/sdk", otherHash);
+    assertNotNull(emptyMap);
+    assertTrue(emptyMap.isEmpty());
+  }
+}
@@ -0,0 +1,39 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DartTokenPosTableTest extends TestCase {
+  public void testLookup() {
+    final DartTokenPosTable table = DartTokenPosTable.create(Arrays.asList(
+      Arrays.asList(3, 40, 5, 45, 9),
+      Arrays.asList(1, 10, 1, 12, 3),
+      Collections.emptyList(),
+      Collections.singletonList(7),
+      Arrays.asList(8, 45, 2, 100, 0)
+    ));
+
+    assertEquals(4, table.size());
+    assertEquals(-1, table.indexOf(0));
+    assertEquals(-1, table.indexOf(11));
+    assertEquals(-1, table.indexOf(1000));
+
+    assertPosition(table, 10, 0, 0);
+    assertPosition(table, 12, 0, 2);
+    assertPosition(table, 40, 2, 4);
+    // duplicated token position: the latest entry wins
+    assertPosition(table, 45, 7, 1);
+    // 1-based column 0 is clamped
+    assertPosition(table, 100, 7, 0);
+  }
+
+  private static void assertPosition(DartTokenPosTable table, int tokenPos, int line, int column) {
+    final int index = table.indexOf(tokenPos);
+    assertTrue(index >= 0);
+    assertEquals(line, table.getLine(index));
+    assertEquals(column, table.getColumn(index));
+  }
+}
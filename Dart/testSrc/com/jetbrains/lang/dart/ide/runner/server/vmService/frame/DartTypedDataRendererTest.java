@@ -0,0 +1,44 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService.frame;
+
+import junit.framework.TestCase;
+import org.dartlang.vm.service.element.InstanceKind;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DartTypedDataRendererTest extends TestCase {
+  public void testBytes() {
+    final byte[] bytes = new byte[18];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)(i * 15);
+    }
+    assertEquals(Arrays.asList("00 0f 1e 2d 3c 4b 5a 69 78 87 96 a5 b4 c3 d2 e1", "f0 ff"),
+                 DartTypedDataRenderer.formatRows(InstanceKind.Uint8List, bytes));
+    assertEquals(Collections.emptyList(), DartTypedDataRenderer.formatRows(InstanceKind.Int8List, new byte[0]));
+  }
+
+  public void testNumbers() {
+    final ByteBuffer buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(-1).putInt(7).putInt(Integer.MIN_VALUE);
+    assertEquals(Collections.singletonList("4294967295, 7, 2147483648"),
+                 DartTypedDataRenderer.formatRows(InstanceKind.Uint32List, buffer.array()));
+    assertEquals(Collections.singletonList("-1, 7, -2147483648"),
+                 DartTypedDataRenderer.formatRows(InstanceKind.Int32List, buffer.array()));
+
+    final ByteBuffer doubles = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    doubles.putDouble(1.5).putDouble(-2);
+    assertEquals(Collections.singletonList("1.5, -2.0"), DartTypedDataRenderer.formatRows(InstanceKind.Float64List, doubles.array()));
+    assertEquals(Collections.singletonList("[1.5, -2.0]"), DartTypedDataRenderer.formatRows(InstanceKind.Float64x2List, doubles.array()));
+  }
+
+  public void testKinds() {
+    assertTrue(DartTypedDataRenderer.isTypedDataKind(InstanceKind.Uint8ClampedList));
+    assertFalse(DartTypedDataRenderer.isTypedDataKind(InstanceKind.List));
+    assertFalse(DartTypedDataRenderer.isTypedDataKind(InstanceKind.Map));
+    assertEquals(16, DartTypedDataRenderer.getElementsPerRow(InstanceKind.Uint8List));
+    assertEquals(8, DartTypedDataRenderer.getElementsPerRow(InstanceKind.Float32List));
+  }
+}
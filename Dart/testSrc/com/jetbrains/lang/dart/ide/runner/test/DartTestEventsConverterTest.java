@@ -221,6 +221,82 @@ public class DartTestEventsConverterTest extends BaseSMTRunnerTestCase {
     runTest(Sample2Events, Sample2Signals, new int[]{});
   }
 
+  public void testSample1DropFinishedTests() {
+    myEventsConverter.setDropFinishedTests(true);
+    runTest(Sample1Events, Sample1Signals, Sample1Parents);
+  }
+
+  public void testReplayOfManyTests() {
+    final int suiteCount = 100;
+    final int testsPerSuite = 200;
+    final List<String> events = generateReporterOutput(suiteCount, testsPerSuite);
+
+    final TestConsoleProperties consoleProperties = createConsoleProperties();
+    final DartTestEventsConverter converter = new DartTestEventsConverter(DartTestRunningState.DART_FRAMEWORK_NAME, consoleProperties,
+                                                                          DartUrlResolver.getInstance(getProject(), getSourceRoot()));
+    converter.setDropFinishedTests(true);
+    final CountingEventsProcessor processor = new CountingEventsProcessor(consoleProperties.getProject());
+    converter.setProcessor(processor);
+
+    try {
+      final Key key = new Key("stdout");
+      for (String event : events) {
+        converter.process(event, key);
+      }
+      // suite started and finished, test started and finished, print in every 10th test
+      assertEquals(suiteCount * (2 + testsPerSuite * 2 + testsPerSuite / 10), processor.count);
+    }
+    finally {
+      Disposer.dispose(processor);
+    }
+  }
+
+  /**
+   * Output of {@code pub run test -r json} for the given number of suites, each with a single group of passing tests.
+   */
+  @NotNull
+  private static List<String> generateReporterOutput(int suiteCount, int testsPerSuite) {
+    final List<String> events = new ArrayList<>();
+    events.add("{\"protocolVersion\":\"0.1.0\",\"runnerVersion\":\"1.14.4\",\"pid\":1234,\"type\":\"start\",\"time\":0}\n");
+    events.add("{\"count\":" + suiteCount + ",\"type\":\"allSuites\",\"time\":1}\n");
+
+    int id = 0;
+    int time = 2;
+    for (int suite = 0; suite < suiteCount; suite++) {
+      final int suiteId = id++;
+      final String path = "/project/test/suite" + suite + "_test.dart";
+      events.add("{\"suite\":{\"id\":" + suiteId + ",\"platform\":\"vm\",\"path\":\"" + path + "\"},\"type\":\"suite\",\"time\":" + time++ + "}\n");
+
+      final int loadingId = id++;
+      events.add("{\"test\":{\"id\":" + loadingId + ",\"name\":\"loading " + path + "\",\"suiteID\":" + suiteId +
+                 ",\"groupIDs\":[],\"metadata\":{\"skip\":false,\"skipReason\":null},\"line\":null,\"column\":null,\"url\":null}," +
+                 "\"type\":\"testStart\",\"time\":" + time++ + "}\n");
+      events.add("{\"testID\":" + loadingId + ",\"result\":\"success\",\"skipped\":false,\"hidden\":true,\"type\":\"testDone\",\"time\":" +
+                 time++ + "}\n");
+
+      final int groupId = id++;
+      events.add("{\"group\":{\"id\":" + groupId + ",\"suiteID\":" + suiteId + ",\"parentID\":null,\"name\":null," +
+                 "\"metadata\":{\"skip\":false,\"skipReason\":null},\"testCount\":" + testsPerSuite +
+                 ",\"line\":null,\"column\":null,\"url\":null},\"type\":\"group\",\"time\":" + time++ + "}\n");
+
+      for (int test = 0; test < testsPerSuite; test++) {
+        final int testId = id++;
+        events.add("{\"test\":{\"id\":" + testId + ",\"name\":\"test number " + test + "\",\"suiteID\":" + suiteId +
+                   ",\"groupIDs\":[" + groupId + "],\"metadata\":{\"skip\":false,\"skipReason\":null},\"line\":" + (test + 10) +
+                   ",\"column\":5,\"url\":\"file://" + path + "\"},\"type\":\"testStart\",\"time\":" + time++ + "}\n");
+        if (test % 10 == 0) {
+          events.add("{\"testID\":" + testId + ",\"messageType\":\"print\",\"message\":\"output of test " + test +
+                     "\",\"type\":\"print\",\"time\":" + time++ + "}\n");
+        }
+        events.add("{\"testID\":" + testId + ",\"result\":\"success\",\"skipped\":false,\"hidden\":false,\"type\":\"testDone\"," +
+                   "\"time\":" + time++ + "}\n");
+      }
+    }
+
+    events.add("{\"success\":true,\"type\":\"done\",\"time\":" + time + "}\n");
+    return events;
+  }
+
   public void testLoadFailure() {
     String[] events = {
       "{'test':{'id':0,'name':'loading test/formatter_test.dart','groupIDs':[],'metadata':{'skip':false,'skipReason':null}},'type':'testStart','time':0}\n",
@@ -430,6 +506,56 @@ public class DartTestEventsConverterTest extends BaseSMTRunnerTestCase {
     }
   }
 
+  /**
+   * Only counts the events, so that the benchmark measures the converter rather than the test tree UI.
+   */
+  private class CountingEventsProcessor extends DartTestEventsProcessor {
+    int count;
+
+    CountingEventsProcessor(Project project) {
+      super(project, DartTestRunningState.DART_FRAMEWORK_NAME);
+    }
+
+    @Override
+    public void onStartTesting() {
+    }
+
+    @Override
+    public void onTestStarted(@NotNull TestStartedEvent testStartedEvent) {
+      count++;
+    }
+
+    @Override
+    public void onTestFinished(@NotNull TestFinishedEvent testFinishedEvent) {
+      count++;
+    }
+
+    @Override
+    public void onTestFailure(@NotNull TestFailedEvent testFailedEvent) {
+      count++;
+    }
+
+    @Override
+    public void onTestIgnored(@NotNull TestIgnoredEvent testIgnoredEvent) {
+      count++;
+    }
+
+    @Override
+    public void onTestOutput(@NotNull TestOutputEvent testOutputEvent) {
+      count++;
+    }
+
+    @Override
+    public void onSuiteStarted(@NotNull TestSuiteStartedEvent suiteStartedEvent) {
+      count++;
+    }
+
+    @Override
+    public void onSuiteFinished(@NotNull TestSuiteFinishedEvent suiteFinishedEvent) {
+      count++;
+    }
+  }
+
   private class DartTestEventsProcessor extends GeneralTestEventsProcessor {
     List<String> signals = new ArrayList<>();
 
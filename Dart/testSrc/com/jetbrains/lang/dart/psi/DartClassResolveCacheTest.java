@@ -0,0 +1,81 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.psi;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.util.DartClassResolveResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class DartClassResolveCacheTest extends DartCodeInsightFixtureTestCase {
+  public void testInvalidatedByChangeInSupertypeFile() {
+    final PsiFile fileA = myFixture.addFileToProject("a.dart", "class A<T> { void foo() {} }");
+    final PsiFile fileB = myFixture.addFileToProject("b.dart", "import 'a.dart';\nimport 'c.dart';\nclass B extends A<C> {}");
+    final PsiFile fileC = myFixture.addFileToProject("c.dart", "class C { void bar() {} }");
+    final PsiFile fileD = myFixture.addFileToProject("d.dart", "class D { void baz() {} }");
+    final DartClass classB = PsiTreeUtil.findChildOfType(fileB, DartClass.class);
+    assertNotNull(classB);
+
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(getProject());
+    assertResolvedFromCache(cache, classB, false);
+    assertEquals(new HashSet<>(Arrays.asList(fileA.getVirtualFile(), fileB.getVirtualFile(), fileC.getVirtualFile())),
+                 cache.getDependencies(classB));
+    assertResolvedFromCache(cache, classB, true);
+
+    insertInMethodBody(fileD, "baz");
+    assertResolvedFromCache(cache, classB, true);
+
+    insertString(fileD, 0, "// comment\n\n");
+    assertResolvedFromCache(cache, classB, true);
+
+    insertInMethodBody(fileC, "bar");
+    assertResolvedFromCache(cache, classB, false);
+    assertResolvedFromCache(cache, classB, true);
+
+    insertInMethodBody(fileA, "foo");
+    assertResolvedFromCache(cache, classB, false);
+  }
+
+  public void testUnresolvedSupertypeInvalidatedByAnyChange() {
+    final PsiFile fileB = myFixture.addFileToProject("b.dart", "class B extends Unknown {}");
+    final PsiFile fileD = myFixture.addFileToProject("d.dart", "class D { void baz() {} }");
+    final DartClass classB = PsiTreeUtil.findChildOfType(fileB, DartClass.class);
+    assertNotNull(classB);
+
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(getProject());
+    assertResolvedFromCache(cache, classB, false);
+    assertResolvedFromCache(cache, classB, true);
+
+    insertInMethodBody(fileD, "baz");
+    assertResolvedFromCache(cache, classB, false);
+  }
+
+  private static void assertResolvedFromCache(@NotNull final DartClassResolveCache cache,
+                                              @NotNull final DartClass dartClass,
+                                              final boolean expectedHit) {
+    final long hitCount = cache.getHitCount();
+    final long missCount = cache.getMissCount();
+    assertEquals(dartClass, DartClassResolveResult.create(dartClass).getDartClass());
+    assertEquals(expectedHit, cache.getHitCount() > hitCount && cache.getMissCount() == missCount);
+  }
+
+  private void insertInMethodBody(@NotNull final PsiFile file, @NotNull final String methodName) {
+    final int offset = file.getText().indexOf(methodName + "() {") + methodName.length() + 4;
+    insertString(file, offset, " var x = 1; ");
+  }
+
+  private void insertString(@NotNull final PsiFile file, final int offset, @NotNull final String text) {
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.insertString(offset, text);
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.resolve;
+
+import com.intellij.openapi.application.impl.NonBlockingReadActionImpl;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.lang.dart.DartCodeInsightFixtureTestCase;
+import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.psi.DartClass;
+import com.jetbrains.lang.dart.psi.DartClassResolveCache;
+import com.jetbrains.lang.dart.psi.DartFile;
+import com.jetbrains.lang.dart.util.DartClassResolveResult;
+
+import java.util.Collection;
+
+public class DartResolveCacheWarmerTest extends DartCodeInsightFixtureTestCase {
+  public void testClassHierarchiesCached() {
+    myFixture.addFileToProject("a.dart", "class A<T> {}");
+    final PsiFile file = myFixture.addFileToProject("b.dart", "import 'a.dart';\n" +
+                                                              "class B extends A<C> { void foo() { new A(); } }\n" +
+                                                              "class C implements A<B> {}");
+    DartResolveCacheWarmer.warmUp((DartFile)file);
+
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(getProject());
+    final Collection<DartClass> classes = PsiTreeUtil.findChildrenOfType(file, DartClass.class);
+    assertEquals(2, classes.size());
+    for (DartClass dartClass : classes) {
+      final long missCount = cache.getMissCount();
+      DartClassResolveResult.create(dartClass);
+      assertEquals(missCount, cache.getMissCount());
+    }
+  }
+
+  public void testWarmedUpAgainAfterCachesDropped() {
+    myFixture.addFileToProject("a.dart", "class A<T> {}");
+    final PsiFile file = myFixture.configureByText("b.dart", "import 'a.dart';\n" +
+                                                             "class B extends A<C> {}\n" +
+                                                             "class C implements A<B> {}");
+    DartResolveCacheWarmer.warmUp((DartFile)file);
+
+    // what happens when navigation data for the file arrives
+    final DartClassResolveCache cache = DartClassResolveCache.getInstance(getProject());
+    cache.dropCachesDependingOn(file.getVirtualFile());
+    PsiManager.getInstance(getProject()).dropPsiCaches();
+    new DartResolveCacheWarmer(DartAnalysisServerService.getInstance(getProject())).psiCachesDropped();
+    NonBlockingReadActionImpl.waitForAsyncTaskCompletion();
+
+    final Collection<DartClass> classes = PsiTreeUtil.findChildrenOfType(file, DartClass.class);
+    assertEquals(2, classes.size());
+    for (DartClass dartClass : classes) {
+      final long missCount = cache.getMissCount();
+      DartClassResolveResult.create(dartClass);
+      assertEquals(missCount, cache.getMissCount());
+    }
+  }
+}
@@ -13,6 +13,8 @@
  */
 package com.google.dart.server;
 
+import org.dartlang.analysis.server.protocol.RequestError;
+
 /**
  * The interface {@code UpdateContentConsumer} defines the behavior of objects that consume
  * 'analysis.updateContent' responses.
@@ -24,4 +26,12 @@ public interface UpdateContentConsumer extends Consumer {
    * A response to the request was received.
    */
   public void onResponse();
+
+  /**
+   * The content could not be updated, for example because a {@code ChangeContentOverlay} didn't
+   * match the overlaid content that the server has (INVALID_OVERLAY_CHANGE).
+   * 
+   * @param requestError the reason why the content was not updated
+   */
+  public void onError(RequestError requestError);
 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing and size statistics of the communication with the analysis server, and a bounded trace of
+ * the last requests and responses.
+ * <p>
+ * The round-trip latency of a request is measured from the moment it is passed to the
+ * {@link RequestSink} until its response is taken from the {@link ResponseStream}, so it includes
+ * the time spent in the request queue, in the pipe and in the server. The time spent by the client
+ * in processing of the decoded responses and notifications is measured separately.
+ *
+ * @coverage dart.server.remote
+ */
+public class AnalysisServerMetrics {
+  private static class PendingRequest {
+    private final String method;
+    private final long sentNanos;
+
+    PendingRequest(String method, long sentNanos) {
+      this.method = method;
+      this.sentNanos = sentNanos;
+    }
+  }
+
+  private static class TraceEntry {
+    private final long timeMillis;
+    private final boolean request;
+    private final JsonObject message;
+
+    TraceEntry(long timeMillis, boolean request, JsonObject message) {
+      this.timeMillis = timeMillis;
+      this.request = request;
+      this.message = message;
+    }
+  }
+
+  private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> latencyMicros = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> processingMicros = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> notificationLengths = new ConcurrentHashMap<>();
+
+  /**
+   * The last requests and responses, guarded by itself. The messages are kept as they are and
+   * serialized only when the trace is written.
+   */
+  private final ArrayDeque<TraceEntry> trace = new ArrayDeque<>();
+  private volatile int traceCapacity;
+
+  /**
+   * Set the number of the last requests and responses to keep for {@link #writeTrace(Writer)},
+   * {@code 0} disables tracing.
+   */
+  public void setTraceCapacity(int traceCapacity) {
+    this.traceCapacity = Math.max(0, traceCapacity);
+    synchronized (trace) {
+      while (trace.size() > this.traceCapacity) {
+        trace.removeFirst();
+      }
+    }
+  }
+
+  /**
+   * Return the number of the last requests and responses kept for {@link #writeTrace(Writer)},
+   * {@code 0} if tracing is disabled.
+   */
+  public int getTraceCapacity() {
+    return traceCapacity;
+  }
+
+  /**
+   * Records that the request with the given id is being sent to the server.
+   */
+  void requestSent(String id, JsonObject request) {
+    JsonElement method = request.get("method");
+    pendingRequests.put(id, new PendingRequest(method != null ? method.getAsString() : "unknown", System.nanoTime()));
+    addTraceEntry(true, request);
+  }
+
+  /**
+   * Records that a response or a notification has been taken from the {@link ResponseStream}.
+   *
+   * @param messageLength the length of the message as read from the stream, or {@code -1} if it is
+   *          not known
+   * @return the request method or the notification event the message belongs to, or {@code null}
+   *         if it is not known
+   */
+  String responseReceived(JsonObject response, long messageLength) {
+    addTraceEntry(false, response);
+
+    JsonElement event = response.get("event");
+    if (event != null && event.isJsonPrimitive()) {
+      String eventName = event.getAsString();
+      if (messageLength >= 0) {
+        histogram(notificationLengths, eventName).record(messageLength);
+      }
+      return eventName;
+    }
+
+    JsonElement id = response.get("id");
+    PendingRequest request = id != null && id.isJsonPrimitive() ? pendingRequests.remove(id.getAsString()) : null;
+    if (request == null) {
+      return null;
+    }
+    histogram(latencyMicros, request.method).record(toMicros(System.nanoTime() - request.sentNanos));
+    return request.method;
+  }
+
+  /**
+   * Forgets the requests that will never be responded because the server has stopped or restarted.
+   */
+  void clearPendingRequests() {
+    pendingRequests.clear();
+  }
+
+  /**
+   * Records the time spent by the client in processing of a response or a notification.
+   */
+  void messageProcessed(String methodOrEvent, long nanos) {
+    if (methodOrEvent != null) {
+      histogram(processingMicros, methodOrEvent).record(toMicros(nanos));
+    }
+  }
+
+  /**
+   * Return the round-trip latencies in microseconds, keyed by the request method.
+   */
+  public Map<String, Histogram> getLatencyMicros() {
+    return Collections.unmodifiableMap(latencyMicros);
+  }
+
+  /**
+   * Return the times in microseconds spent in processing of the responses and notifications, keyed
+   * by the request method or the notification event.
+   */
+  public Map<String, Histogram> getProcessingMicros() {
+    return Collections.unmodifiableMap(processingMicros);
+  }
+
+  /**
+   * Return the lengths of the notifications as read from the stream, keyed by the notification
+   * event.
+   */
+  public Map<String, Histogram> getNotificationLengths() {
+    return Collections.unmodifiableMap(notificationLengths);
+  }
+
+  /**
+   * Return the number of requests that have been sent but have not been responded yet.
+   */
+  public int getPendingRequestCount() {
+    return pendingRequests.size();
+  }
+
+  /**
+   * Write the traced requests and responses, one JSON object per line. Each line contains the time
+   * in milliseconds, the direction ({@code "request"} or {@code "response"}) and the message
+   * itself, so that the file can be replayed.
+   */
+  public void writeTrace(Writer writer) throws IOException {
+    List<TraceEntry> entries;
+    synchronized (trace) {
+      entries = new ArrayList<>(trace);
+    }
+    for (TraceEntry entry : entries) {
+      writer.write("{\"time\":");
+      writer.write(Long.toString(entry.timeMillis));
+      writer.write(entry.request ? ",\"direction\":\"request\",\"message\":" : ",\"direction\":\"response\",\"message\":");
+      writer.write(entry.message.toString());
+      writer.write("}\n");
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("Pending requests: ").append(getPendingRequestCount()).append('\n');
+    appendHistograms(builder, "Round-trip latency, microseconds", latencyMicros);
+    appendHistograms(builder, "Processing time, microseconds", processingMicros);
+    appendHistograms(builder, "Notification length, characters", notificationLengths);
+    return builder.toString();
+  }
+
+  private void addTraceEntry(boolean request, JsonObject message) {
+    int capacity = traceCapacity;
+    if (capacity == 0) {
+      return;
+    }
+    synchronized (trace) {
+      if (trace.size() >= capacity) {
+        trace.removeFirst();
+      }
+      trace.addLast(new TraceEntry(System.currentTimeMillis(), request, message));
+    }
+  }
+
+  private static void appendHistograms(StringBuilder builder, String title, Map<String, Histogram> histograms) {
+    builder.append(title).append(":\n");
+    for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+      builder.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    }
+  }
+
+  private static Histogram histogram(Map<String, Histogram> histograms, String key) {
+    return histograms.computeIfAbsent(key, k -> new Histogram());
+  }
+
+  private static long toMicros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+}
@@ -14,6 +14,7 @@
 package com.google.dart.server.internal.remote;
 
 import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.dart.server.internal.remote.utilities.RequestUtilities;
 import com.google.gson.JsonObject;
 
 import java.io.OutputStream;
@@ -21,16 +22,50 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.concurrent.TimeUnit;
 
 /**
  * An {@link OutputStream} based implementation of {@link RequestSink}.
+ * <p>
+ * Requests are written in the order of their {@link RequestPriority}: an interactive request
+ * overtakes the background requests that were added before it, but not the editor-sync ones. A
+ * background request that is identical to a newer one and may be answered by its response (see
+ * {@link RequestPriority#getSupersedeKey}) is not written at all, its
+ * {@link SupersededRequestListener} is told which request answers it instead.
  *
  * @coverage dart.server.remote
  */
 public class ByteRequestSink implements RequestSink {
+  /**
+   * The listener to be notified when a queued background request is dropped.
+   */
+  public interface SupersededRequestListener {
+    /**
+     * Called before the identical request {@code survivorId} is queued, so before any response to
+     * it can be received.
+     *
+     * @param id         the identifier of the dropped request
+     * @param survivorId the identifier of the request whose response answers the dropped one
+     */
+    public void requestSuperseded(String id, String survivorId);
+  }
+
+  private static class QueuedLine {
+    private final String line;
+    private final String id;
+    private final RequestPriority priority;
+    private final String supersedeKey;
+
+    QueuedLine(String line, String id, RequestPriority priority, String supersedeKey) {
+      this.line = line;
+      this.id = id;
+      this.priority = priority;
+      this.supersedeKey = supersedeKey;
+    }
+  }
+
   /**
    * The {@link PrintWriter} to print JSON strings to.
    */
@@ -40,9 +75,18 @@ public class ByteRequestSink implements RequestSink {
    */
   private DebugPrintStream debugStream;
   /**
-   * The queue of lines.
+   * The queue of lines, guarded by itself.
+   */
+  private final LinkedList<QueuedLine> lineQueue = new LinkedList<QueuedLine>();
+  /**
+   * The maximum observed size of {@link #lineQueue}, guarded by {@link #lineQueue}.
+   */
+  private int maxQueueSize;
+  private boolean closed;
+  /**
+   * The listener to notify about the dropped requests, may be {@code null}.
    */
-  private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  private volatile SupersededRequestListener supersededRequestListener;
 
   /**
    * Initializes a newly created request sink.
@@ -56,32 +100,113 @@ public class ByteRequestSink implements RequestSink {
     new LinesWriterThread().start();
   }
 
+  /**
+   * Set the listener to notify about the dropped background requests. It is called from
+   * {@link #add(JsonObject)}, so it must not block.
+   */
+  public void setSupersededRequestListener(SupersededRequestListener listener) {
+    supersededRequestListener = listener;
+  }
+
   @Override
   public void add(JsonObject request) {
+    add(request, RequestPriority.of(request));
+  }
+
+  /**
+   * Put the request into the sink with the given priority instead of the priority of its method.
+   */
+  public void add(JsonObject request, RequestPriority priority) {
     String text = request.toString();
     if (debugStream != null) {
       if (!text.contains("server.getVersion")) {
         debugStream.println(System.currentTimeMillis() + " => " + text);
       }
     }
-    lineQueue.add(text);
+
+    String supersedeKey = RequestPriority.getSupersedeKey(request);
+    QueuedLine queuedLine = new QueuedLine(text, RequestUtilities.getId(request), priority, supersedeKey);
+    synchronized (lineQueue) {
+      if (supersedeKey != null) {
+        for (Iterator<QueuedLine> iterator = lineQueue.iterator(); iterator.hasNext(); ) {
+          QueuedLine queued = iterator.next();
+          if (supersedeKey.equals(queued.supersedeKey)) {
+            iterator.remove();
+            notifySuperseded(queued.id, queuedLine.id);
+          }
+        }
+      }
+      lineQueue.addLast(queuedLine);
+      maxQueueSize = Math.max(maxQueueSize, lineQueue.size());
+      lineQueue.notifyAll();
+    }
   }
 
   @Override
   public void close() {
     writer.close();
-    lineQueue.add(ByteResponseStream.EOF_LINE);
+    synchronized (lineQueue) {
+      closed = true;
+      lineQueue.notifyAll();
+    }
+  }
+
+  /**
+   * Return the number of lines that are waiting to be written.
+   */
+  public int getQueueSize() {
+    synchronized (lineQueue) {
+      return lineQueue.size();
+    }
+  }
+
+  /**
+   * Return the maximum number of lines that have been waiting to be written at the same time.
+   */
+  public int getMaxQueueSize() {
+    synchronized (lineQueue) {
+      return maxQueueSize;
+    }
   }
 
   public void waitForFlush() {
     while (true) {
-      if (lineQueue.isEmpty()) {
+      if (getQueueSize() == 0) {
         return;
       }
       Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
     }
   }
 
+  /**
+   * Remove and return the next line to write: the first interactive line that is preceded only by
+   * background lines, or the first line otherwise.
+   */
+  private QueuedLine pollNextLine() {
+    QueuedLine first = lineQueue.peekFirst();
+    if (first == null || first.priority != RequestPriority.BACKGROUND) {
+      return lineQueue.pollFirst();
+    }
+    for (Iterator<QueuedLine> iterator = lineQueue.iterator(); iterator.hasNext(); ) {
+      QueuedLine queued = iterator.next();
+      if (queued.priority == RequestPriority.EDITOR_SYNC) {
+        break;
+      }
+      if (queued.priority == RequestPriority.INTERACTIVE) {
+        iterator.remove();
+        return queued;
+      }
+    }
+    return lineQueue.pollFirst();
+  }
+
+  private void notifySuperseded(String id, String survivorId) {
+    SupersededRequestListener listener = supersededRequestListener;
+    if (listener != null) {
+      listener.requestSuperseded(id, survivorId);
+    }
+  }
+
   private class LinesWriterThread extends Thread {
     public LinesWriterThread() {
       setName("ByteRequestSink.LinesWriterThread");
@@ -92,12 +217,18 @@ public class ByteRequestSink implements RequestSink {
     public void run() {
       while (true) {
         try {
-          String line = lineQueue.take();
-          if (line == ByteResponseStream.EOF_LINE) {
-            return;
+          QueuedLine line;
+          synchronized (lineQueue) {
+            while (!closed && lineQueue.isEmpty()) {
+              lineQueue.wait();
+            }
+            if (closed) {
+              return;
+            }
+            line = pollNextLine();
           }
 
-          writer.println(line);
+          writer.println(line.line);
           writer.flush();
         }
         catch (InterruptedException e) {
@@ -13,6 +13,7 @@
  */
 package com.google.dart.server.internal.remote;
 
+import com.google.common.io.CountingInputStream;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
@@ -80,6 +81,9 @@ public class ByteResponseStream implements ResponseStream {
    */
   private final DebugPrintStream debugStream;
   private final Runnable onStreamEndRunnable;
+  private final CountingInputStream countingStream;
+  private final ResponseStreamMetrics metrics = new ResponseStreamMetrics();
+  private long lastCount;
 
   /**
    * The queue of lines.
@@ -93,12 +97,18 @@ public class ByteResponseStream implements ResponseStream {
    * @param debugStream the {@link PrintStream} to print all lines to, may be {@code null}
    */
   public ByteResponseStream(InputStream stream, DebugPrintStream debugStream, Runnable onStreamEndRunnable) {
-    reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    countingStream = new CountingInputStream(stream);
+    reader = new BufferedReader(new InputStreamReader(countingStream, StandardCharsets.UTF_8));
     this.debugStream = debugStream;
     this.onStreamEndRunnable = onStreamEndRunnable;
     new LinesReaderThread().start();
   }
 
+  @Override
+  public ResponseStreamMetrics getMetrics() {
+    return metrics;
+  }
+
   @Override
   public void lastRequestProcessed() {
   }
@@ -111,7 +121,12 @@ public class ByteResponseStream implements ResponseStream {
       return null;
     }
     try {
-      return (JsonObject) new JsonParser().parse(line);
+      long startNanos = System.nanoTime();
+      JsonObject response = (JsonObject) new JsonParser().parse(line);
+      long count = countingStream.getCount();
+      metrics.messageDecoded(count - lastCount, line.length(), System.nanoTime() - startNanos);
+      lastCount = count;
+      return response;
     } catch (JsonSyntaxException e) {
       // Include the line in the message so that we can better diagnose the problem
       throw new JsonSyntaxException("Parse server message failed: " + line, e);
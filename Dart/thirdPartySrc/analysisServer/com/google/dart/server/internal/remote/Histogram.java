@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative values that computes percentiles without keeping all
+ * recorded values.
+ * <p>
+ * Values below 16 have a bucket each, every further power of two range is split into 16 equal
+ * buckets, so the relative error of a reported percentile is less than 1/16.
+ *
+ * @coverage dart.server.remote
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(bucketIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double)sum.get() / n;
+  }
+
+  /**
+   * Return the value that is greater than or equal to the given percentage of the recorded values,
+   * or {@code 0} if nothing has been recorded.
+   *
+   * @param percentile the percentage in the range {@code [0, 100]}
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      total += buckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long target = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(bucketUpperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count %d, p50 %d, p95 %d, p99 %d, max %d", getCount(), getValueAtPercentile(50),
+                         getValueAtPercentile(95), getValueAtPercentile(99), getMax());
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int)value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int)(value >>> shift) & (SUB_BUCKET_COUNT - 1);
+    return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    int subBucket = index % SUB_BUCKET_COUNT;
+    long lowerBound = (long)(SUB_BUCKET_COUNT + subBucket) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
@@ -92,6 +92,11 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
   private final AtomicLong lastResponseTime = new AtomicLong(0);
   private final AtomicLong lastRequestTime = new AtomicLong(0);
 
+  /**
+   * The latencies, sizes and trace of the requests and responses.
+   */
+  private final AnalysisServerMetrics metrics = new AnalysisServerMetrics();
+
   /**
    * The following is a subset of the list provided in the `allFixes` list,
    * dart-sdk-dir/analysis_server/lib/src/edit/fix/dartfix_info.dart
@@ -120,6 +125,12 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
    */
   private final Object consumerMapLock = new Object();
 
+  /**
+   * A mapping between the ids of the requests that were sent and the ids of the identical requests
+   * that {@link ByteRequestSink} dropped in their favor, guarded by itself.
+   */
+  private final Map<String, List<String>> supersededIdsMap = Maps.newHashMap();
+
   /**
    * The unique ID for the next request.
    */
@@ -372,6 +383,17 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     sendRequestToServer(id, RequestUtilities.generateEditFormat(id, file, selectionOffset, selectionLength, lineLength), consumer);
   }
 
+  /**
+   * Same as {@link #edit_format(String, int, int, int, FormatConsumer)}, but the request has the
+   * {@link RequestPriority#BACKGROUND} priority, so that formatting many files doesn't delay the
+   * interactive requests.
+   */
+  public void edit_formatInBackground(String file, int selectionOffset, int selectionLength, int lineLength, FormatConsumer consumer) {
+    String id = generateUniqueId();
+    JsonObject request = RequestUtilities.generateEditFormat(id, file, selectionOffset, selectionLength, lineLength);
+    sendRequestToServer(id, request, consumer, RequestPriority.BACKGROUND);
+  }
+
   @Override
   public void edit_getAssists(String file, int offset, int length, GetAssistsConsumer consumer) {
     String id = generateUniqueId();
@@ -743,7 +765,12 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     // Analysis Domain
     //
     if (consumer instanceof UpdateContentConsumer) {
-      ((UpdateContentConsumer)consumer).onResponse();
+      if (requestError != null) {
+        ((UpdateContentConsumer)consumer).onError(requestError);
+      }
+      else {
+        ((UpdateContentConsumer)consumer).onResponse();
+      }
     }
     //
     // Completion Domain
@@ -864,6 +891,23 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     synchronized (consumerMapLock) {
       consumerMap.remove(idString);
     }
+
+    // the dropped identical requests get the same response
+    List<String> supersededIds;
+    synchronized (supersededIdsMap) {
+      supersededIds = supersededIdsMap.remove(idString);
+    }
+    if (supersededIds != null) {
+      for (String supersededId : supersededIds) {
+        JsonObject supersededResponse = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : response.entrySet()) {
+          supersededResponse.add(entry.getKey(), entry.getValue());
+        }
+        supersededResponse.addProperty("id", supersededId);
+        metrics.responseReceived(supersededResponse, -1);
+        processResponse(supersededResponse);
+      }
+    }
   }
 
   private void notifyRequestListeners(JsonObject request) {
@@ -903,20 +947,49 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
    * @param consumer the {@link Consumer} to process a response
    */
   public void sendRequestToServer(String id, JsonObject request, Consumer consumer) {
+    sendRequestToServer(id, request, consumer, null);
+  }
+
+  /**
+   * @param priority the priority to write the request with instead of the priority of its method,
+   *                 may be {@code null}
+   */
+  private void sendRequestToServer(String id, JsonObject request, Consumer consumer, RequestPriority priority) {
     notifyRequestListeners(request);
     synchronized (consumerMapLock) {
       consumerMap.put(id, consumer);
     }
     lastRequestTime.set(System.currentTimeMillis());
+    metrics.requestSent(id, request);
     synchronized (requestSinkLock) {
-      requestSink.add(request);
+      if (priority != null && requestSink instanceof ByteRequestSink) {
+        ((ByteRequestSink)requestSink).add(request, priority);
+      }
+      else {
+        requestSink.add(request);
+      }
     }
   }
 
   private void startServer() throws Exception {
     socket.start();
     consumerMap.clear();
+    clearSupersededIds();
+    metrics.clearPendingRequests();
     requestSink = socket.getRequestSink();
+    if (requestSink instanceof ByteRequestSink) {
+      // dropped background requests get the response to the identical request that was sent, on the reader thread
+      ((ByteRequestSink)requestSink).setSupersededRequestListener((id, survivorId) -> {
+        synchronized (supersededIdsMap) {
+          List<String> ids = supersededIdsMap.get(survivorId);
+          if (ids == null) {
+            ids = new ArrayList<>();
+            supersededIdsMap.put(survivorId, ids);
+          }
+          ids.add(id);
+        }
+      });
+    }
     responseStream = socket.getResponseStream();
     errorStream = socket.getErrorStream();
     new ServerResponseReaderThread(responseStream).start();
@@ -1004,6 +1077,14 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
 
   private void stopServer() {
     socket.stop();
+    clearSupersededIds();
+    metrics.clearPendingRequests();
+  }
+
+  private void clearSupersededIds() {
+    synchronized (supersededIdsMap) {
+      supersededIdsMap.clear();
+    }
   }
 
   private void stopWatcher() {
@@ -1068,6 +1149,10 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     }
   }
 
+  public AnalysisServerMetrics getMetrics() {
+    return metrics;
+  }
+
   public long getLastRequestMillis() {
     return lastRequestTime.get();
   }
@@ -1134,13 +1219,20 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
         try {
           JsonObject response = stream.take();
           if (response == null) {
+            // the server has exited, requests sent to it will never be responded
+            metrics.clearPendingRequests();
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
+          ResponseStreamMetrics streamMetrics = stream.getMetrics();
+          String methodOrEvent =
+            metrics.responseReceived(response, streamMetrics != null ? streamMetrics.getLastMessageLength() : -1);
+          long startNanos = System.nanoTime();
           try {
             processResponse(response);
           }
           finally {
+            metrics.messageProcessed(methodOrEvent, System.nanoTime() - startNanos);
             stream.lastRequestProcessed();
           }
         }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Set;
+
+/**
+ * The order in which {@link ByteRequestSink} writes queued requests to the server.
+ *
+ * @coverage dart.server.remote
+ */
+public enum RequestPriority {
+  /**
+   * Requests that the user is waiting for, such as completion or hover. They are written before
+   * the {@link #BACKGROUND} requests that were queued earlier.
+   */
+  INTERACTIVE,
+
+  /**
+   * Requests that change the state of the server, such as content updates, priority files and
+   * subscriptions, and all requests not known to be interactive or background. They keep their
+   * place in the queue, and no request overtakes them, so that the requests that follow are
+   * computed against the updated state.
+   */
+  EDITOR_SYNC,
+
+  /**
+   * Requests that nobody is waiting for interactively, such as searches for line markers. A queued
+   * background request whose response is its whole result, such as {@code analysis.getErrors}, is
+   * dropped if an identical one is added before it is written.
+   */
+  BACKGROUND;
+
+  private static final Set<String> INTERACTIVE_METHODS = ImmutableSet.of(
+      "analysis.getHover",
+      "analysis.getImportedElements",
+      "analysis.getNavigation",
+      "completion.getSuggestionDetails",
+      "completion.getSuggestions",
+      "edit.format",
+      "edit.getAssists",
+      "edit.getFixes",
+      "edit.getPostfixCompletion",
+      "edit.getRefactoring",
+      "edit.getStatementCompletion",
+      "edit.importElements",
+      "edit.isPostfixCompletionApplicable",
+      "execution.getSuggestions");
+
+  private static final Set<String> BACKGROUND_METHODS = ImmutableSet.of(
+      "analysis.getErrors",
+      "analysis.getLibraryDependencies",
+      "search.findElementReferences",
+      "search.findMemberDeclarations",
+      "search.findMemberReferences",
+      "search.findTopLevelDeclarations",
+      "search.getTypeHierarchy");
+
+  /**
+   * The {@link #BACKGROUND} methods whose response carries the whole result, so that one response
+   * can answer several identical requests. The {@code search.find*} methods are not here: their
+   * results come as {@code search.results} notifications for the search id of the response, and
+   * each request has to get its own search.
+   */
+  private static final Set<String> SUPERSEDABLE_METHODS = ImmutableSet.of(
+      "analysis.getErrors",
+      "analysis.getLibraryDependencies",
+      "search.getTypeHierarchy");
+
+  /**
+   * Return the priority of the given request.
+   */
+  public static RequestPriority of(JsonObject request) {
+    JsonElement method = request.get("method");
+    if (method == null) {
+      return EDITOR_SYNC;
+    }
+    String methodName = method.getAsString();
+    if (INTERACTIVE_METHODS.contains(methodName)) {
+      return INTERACTIVE;
+    }
+    if (BACKGROUND_METHODS.contains(methodName)) {
+      return BACKGROUND;
+    }
+    return EDITOR_SYNC;
+  }
+
+  /**
+   * Return the key that identifies the given request among the queued ones: the method and all
+   * parameters, so for per-file requests such as {@code analysis.getErrors} it is the method and
+   * the file. Return {@code null} if the request may not be superseded by an identical one.
+   */
+  static String getSupersedeKey(JsonObject request) {
+    JsonElement method = request.get("method");
+    if (method == null || !SUPERSEDABLE_METHODS.contains(method.getAsString())) {
+      return null;
+    }
+    JsonElement params = request.get("params");
+    return method.getAsString() + (params != null ? params.toString() : "");
+  }
+}
@@ -30,4 +30,11 @@ public interface ResponseStream {
    * Takes the the next response from the stream. Blocks if no response available.
    */
   JsonObject take() throws Exception;
+
+  /**
+   * Returns the throughput counters of this stream, or {@code null} if they are not collected.
+   */
+  default ResponseStreamMetrics getMetrics() {
+    return null;
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters of a {@link ResponseStream}. Used to compare different ways of decoding the
+ * server output.
+ *
+ * @coverage dart.server.remote
+ */
+public class ResponseStreamMetrics {
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong messages = new AtomicLong();
+  private final AtomicLong decodeNanos = new AtomicLong();
+  private volatile long lastMessageLength = -1;
+
+  /**
+   * Records that one message of the given size has been decoded in the given time.
+   *
+   * @param messageBytes the number of bytes read from the stream for the message, may be
+   *          approximate because of buffering
+   * @param messageLength the exact number of characters of the message
+   */
+  public void messageDecoded(long messageBytes, long messageLength, long messageDecodeNanos) {
+    bytes.addAndGet(messageBytes);
+    messages.incrementAndGet();
+    decodeNanos.addAndGet(messageDecodeNanos);
+    lastMessageLength = messageLength;
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  public long getMessages() {
+    return messages.get();
+  }
+
+  /**
+   * The number of characters of the last decoded message, or {@code -1} if nothing has been
+   * decoded yet.
+   */
+  public long getLastMessageLength() {
+    return lastMessageLength;
+  }
+
+  /**
+   * The time spent in decoding messages, not including the time spent waiting for the server
+   * output.
+   */
+  public long getDecodeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(decodeNanos.get());
+  }
+
+  /**
+   * The number of bytes decoded per second of decoding time.
+   */
+  public double getBytesPerSecond() {
+    return perSecond(bytes.get());
+  }
+
+  /**
+   * The number of messages decoded per second of decoding time.
+   */
+  public double getMessagesPerSecond() {
+    return perSecond(messages.get());
+  }
+
+  private double perSecond(long count) {
+    long nanos = decodeNanos.get();
+    return nanos == 0 ? 0 : count * (double)TimeUnit.SECONDS.toNanos(1) / nanos;
+  }
+
+  @Override
+  public String toString() {
+    long uptimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    return String.format("%d messages, %d bytes in %d ms of decoding (%.0f messages/s, %.0f bytes/s), uptime %d ms",
+                         getMessages(), getBytes(), getDecodeMillis(), getMessagesPerSecond(), getBytesPerSecond(),
+                         uptimeMillis);
+  }
+}
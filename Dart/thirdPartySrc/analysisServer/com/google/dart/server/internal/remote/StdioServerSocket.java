@@ -52,6 +52,12 @@ public class StdioServerSocket implements AnalysisServerSocket {
    */
   private String clientVersion;
 
+  /**
+   * Whether the server output should be decoded by {@link StreamingByteResponseStream} instead of
+   * {@link ByteResponseStream}.
+   */
+  private boolean streamingResponseReader;
+
   public StdioServerSocket(String runtimePath, List<String> additionalVmArguments,
       String analysisServerPath, List<String> additionalServerArguments,
       DebugPrintStream debugStream) {
@@ -108,6 +114,38 @@ public class StdioServerSocket implements AnalysisServerSocket {
     clientVersion = version;
   }
 
+  /**
+   * Set whether the server output should be decoded directly from the byte stream, without
+   * intermediate lines. Must be set before the server has been started.
+   */
+  public void setStreamingResponseReader(boolean streamingResponseReader) {
+    this.streamingResponseReader = streamingResponseReader;
+  }
+
+  /**
+   * Return the throughput counters of the response stream, or {@code null} if the server has not
+   * been started.
+   */
+  public ResponseStreamMetrics getResponseStreamMetrics() {
+    return responseStream != null ? responseStream.getMetrics() : null;
+  }
+
+  /**
+   * Return the number of requests waiting to be written to the server, or {@code -1} if the server
+   * has not been started.
+   */
+  public int getRequestQueueSize() {
+    return requestSink instanceof ByteRequestSink ? ((ByteRequestSink)requestSink).getQueueSize() : -1;
+  }
+
+  /**
+   * Return the maximum number of requests that have been waiting to be written to the server at the
+   * same time, or {@code -1} if the server has not been started.
+   */
+  public int getMaxRequestQueueSize() {
+    return requestSink instanceof ByteRequestSink ? ((ByteRequestSink)requestSink).getMaxQueueSize() : -1;
+  }
+
   @Override
   public void start() throws Exception {
     String[] arguments = computeProcessArguments();
@@ -127,7 +165,9 @@ public class StdioServerSocket implements AnalysisServerSocket {
     ProcessBuilder processBuilder = new ProcessBuilder(arguments);
     process = processBuilder.start();
     requestSink = new ByteRequestSink(process.getOutputStream(), debugStream);
-    responseStream = new ByteResponseStream(process.getInputStream(), debugStream, () -> requestSink.close());
+    responseStream = streamingResponseReader
+                     ? new StreamingByteResponseStream(process.getInputStream(), debugStream, () -> requestSink.close())
+                     : new ByteResponseStream(process.getInputStream(), debugStream, () -> requestSink.close());
     errorStream = new ByteLineReaderStream(process.getErrorStream());
   }
 
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import com.google.common.io.CountingInputStream;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An {@link InputStream} based implementation of {@link ResponseStream} that decodes JSON objects
+ * directly from the byte stream with a single reusable {@link JsonReader}. Unlike
+ * {@link ByteResponseStream} it doesn't create a {@link String} for each line and doesn't queue
+ * them, so large notifications are materialized only once, as the {@link JsonObject} that is
+ * handed to the processors.
+ * <p>
+ * Messages are decoded on the thread that calls {@link #take()}.
+ *
+ * @coverage dart.server.remote
+ */
+public class StreamingByteResponseStream implements ResponseStream {
+  /**
+   * Only this many first characters of each message are passed to the {@link DebugPrintStream}.
+   */
+  private static final int MAX_DEBUG_CHARS = 1024;
+
+  /**
+   * A {@link Reader} that passes through only complete top-level JSON objects that start at the
+   * beginning of a line, dropping non-JSON (debug) lines in between, and that tracks where each
+   * message starts and ends.
+   */
+  private class MessageFilterReader extends Reader {
+    private final Reader delegate;
+    private final char[] buffer = new char[8192];
+    private int bufferPos;
+    private int bufferEnd;
+
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private boolean atLineStart = true;
+    private boolean skippingLine;
+
+    private long messageStartNanos;
+    private long messageWaitNanos;
+    private long messageStartBytes;
+    private long messageLength;
+    private final StringBuilder debugPrefix = new StringBuilder();
+
+    MessageFilterReader(Reader delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int count = 0;
+      while (count < len) {
+        if (bufferPos == bufferEnd) {
+          // do not block if there's something to return already, JsonReader will ask again when needed
+          if (count > 0 && !delegate.ready()) {
+            break;
+          }
+          long readStartNanos = System.nanoTime();
+          bufferEnd = delegate.read(buffer, 0, buffer.length);
+          // mostly waiting for the server output, which is not a part of the decoding time
+          messageWaitNanos += System.nanoTime() - readStartNanos;
+          bufferPos = 0;
+          if (bufferEnd <= 0) {
+            bufferEnd = 0;
+            return count > 0 ? count : -1;
+          }
+        }
+
+        char c = buffer[bufferPos++];
+        if (depth == 0) {
+          if (c == '\n' || c == '\r') {
+            atLineStart = true;
+            skippingLine = false;
+            continue;
+          }
+          if (skippingLine || !atLineStart || c != '{') {
+            // ignore non-JSON (debug) lines
+            skippingLine = true;
+            atLineStart = false;
+            continue;
+          }
+          messageStarted();
+        }
+
+        atLineStart = false;
+        updateNesting(c);
+        if (debugStream != null && debugPrefix.length() < MAX_DEBUG_CHARS) {
+          debugPrefix.append(c);
+        }
+        cbuf[off + count++] = c;
+        messageLength++;
+        if (depth == 0) {
+          // the message is complete, do not let JsonReader buffer the beginning of the next one
+          break;
+        }
+      }
+      return count;
+    }
+
+    private void messageStarted() {
+      messageStartNanos = System.nanoTime();
+      messageWaitNanos = 0;
+      // the counting stream is ahead of the current position because of buffering, but it all evens out over many messages
+      messageStartBytes = countingStream.getCount();
+      messageLength = 0;
+      debugPrefix.setLength(0);
+    }
+
+    private void updateNesting(char c) {
+      if (inString) {
+        if (escape) {
+          escape = false;
+        }
+        else if (c == '\\') {
+          escape = true;
+        }
+        else if (c == '"') {
+          inString = false;
+        }
+      }
+      else if (c == '"') {
+        inString = true;
+      }
+      else if (c == '{' || c == '[') {
+        depth++;
+      }
+      else if (c == '}' || c == ']') {
+        depth--;
+      }
+    }
+
+    /**
+     * Forgets the current message, used to recover after a malformed message.
+     */
+    void reset() {
+      depth = 0;
+      inString = false;
+      escape = false;
+      atLineStart = false;
+      skippingLine = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  private final CountingInputStream countingStream;
+  private final MessageFilterReader filterReader;
+  private final JsonParser parser = new JsonParser();
+  private JsonReader jsonReader;
+
+  /**
+   * The {@link DebugPrintStream} to print all messages to.
+   */
+  private final DebugPrintStream debugStream;
+  private final Runnable onStreamEndRunnable;
+  private final ResponseStreamMetrics metrics = new ResponseStreamMetrics();
+  private boolean eof;
+
+  /**
+   * Initializes a newly created response stream.
+   *
+   * @param stream the byte stream to read JSON objects from
+   * @param debugStream the {@link PrintStream} to print the beginning of each message to, may be
+   *          {@code null}
+   */
+  public StreamingByteResponseStream(InputStream stream, DebugPrintStream debugStream, Runnable onStreamEndRunnable) {
+    this.countingStream = new CountingInputStream(stream);
+    this.filterReader = new MessageFilterReader(new InputStreamReader(countingStream, StandardCharsets.UTF_8));
+    this.jsonReader = createJsonReader();
+    this.debugStream = debugStream;
+    this.onStreamEndRunnable = onStreamEndRunnable;
+  }
+
+  private JsonReader createJsonReader() {
+    JsonReader reader = new JsonReader(filterReader);
+    // the stream is a sequence of top-level objects
+    reader.setLenient(true);
+    return reader;
+  }
+
+  @Override
+  public ResponseStreamMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public void lastRequestProcessed() {
+  }
+
+  @Override
+  public synchronized JsonObject take() throws Exception {
+    if (eof) {
+      return null;
+    }
+
+    JsonElement element;
+    try {
+      element = jsonReader.peek() == JsonToken.END_DOCUMENT ? null : parser.parse(jsonReader);
+    }
+    catch (MalformedJsonException | JsonSyntaxException e) {
+      // JsonReader can't continue after a syntax error, start from the next line
+      String message = "Parse server message failed: " + filterReader.debugPrefix;
+      filterReader.reset();
+      jsonReader = createJsonReader();
+      throw new JsonSyntaxException(message, e);
+    }
+    catch (IOException | JsonIOException e) {
+      // the stream is closed
+      element = null;
+    }
+
+    if (element == null || !element.isJsonObject()) {
+      eof = true;
+      if (onStreamEndRunnable != null) {
+        onStreamEndRunnable.run();
+      }
+      return null;
+    }
+
+    metrics.messageDecoded(countingStream.getCount() - filterReader.messageStartBytes, filterReader.messageLength,
+                           System.nanoTime() - filterReader.messageStartNanos - filterReader.messageWaitNanos);
+
+    // debug output
+    if (debugStream != null) {
+      debugStream.println(System.currentTimeMillis() + " <= " + filterReader.debugPrefix);
+    }
+
+    return element.getAsJsonObject();
+  }
+}
@@ -858,6 +858,48 @@ public final class FlexCommonUtils {
     return result;
   }
 
+  /**
+   * @return maximum heap size in megabytes of the JVM started with the {@link #getCommandLineForSdkTool} command line,
+   *         or 0 if it is not set in megabytes
+   */
+  public static int getSdkToolHeapSizeMb(final @NotNull JpsProject project, final @NotNull JpsSdk<?> sdk) {
+    // the last -Xmx option wins, and the greedy pattern finds the last one
+    final Matcher matcher = XMX_PATTERN.matcher(StringUtil.join(getCommandLineForSdkTool(project, sdk, null, ""), " "));
+    if (matcher.matches()) {
+      try {
+        return Integer.parseInt(matcher.group(2));
+      }
+      catch (NumberFormatException e) {/*ignore*/}
+    }
+    return 0;
+  }
+
+  /**
+   * @return maximum heap size in megabytes that the SDK gives to its own command line tools in {@code bin/jvm.config},
+   *         or 0 if it is not set there in megabytes
+   */
+  public static int getSdkJvmConfigHeapSizeMb(final @NotNull JpsSdk<?> sdk) {
+    if (sdk.getSdkType() == JpsFlexmojosSdkType.INSTANCE) return 0;
+
+    final Properties properties = new Properties();
+    try (InputStream inputStream = new FileInputStream(FileUtil.toSystemDependentName(sdk.getHomePath() + "/bin/jvm.config"))) {
+      properties.load(inputStream);
+    }
+    catch (IOException e) {
+      return 0;
+    }
+
+    final String javaArgs = properties.getProperty("java.args");
+    final Matcher matcher = javaArgs == null ? null : XMX_PATTERN.matcher(javaArgs);
+    if (matcher != null && matcher.matches()) {
+      try {
+        return Integer.parseInt(matcher.group(2));
+      }
+      catch (NumberFormatException e) {/*ignore*/}
+    }
+    return 0;
+  }
+
   public static String getD32IfNeeded(boolean customJavaHomeSet, String javaHome) {
     return (!customJavaHomeSet && SystemInfo.isMac && is64BitJava6(javaHome)) ? "-d32" : null;
   }
@@ -19,6 +19,7 @@ import com.intellij.flex.imports.FlexAutoImportsTest;
 import com.intellij.flex.imports.FlexOptimizeImportsTest;
 import com.intellij.flex.intentions.*;
 import com.intellij.flex.parser.ActionScriptParsingTest;
+import com.intellij.flex.parser.FlexImporterPerformanceTest;
 import com.intellij.flex.parser.FlexImporterTest;
 import com.intellij.flex.projectView.FlexProjectViewTest;
 import com.intellij.flex.refactoring.*;
@@ -107,6 +108,7 @@ public class FlexTestSuite {
 
     //com.intellij.flex.parser.*
     testSuite.addTestSuite(ActionScriptParsingTest.class);
+    testSuite.addTestSuite(FlexImporterPerformanceTest.class);
     testSuite.addTestSuite(FlexImporterTest.class);
 
     //com.intellij.flex.projectView.*
@@ -0,0 +1,97 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.flex.parser;
+
+import com.intellij.lang.javascript.JavaScriptSupportLoader;
+import com.intellij.lang.javascript.flex.importer.FlexImporter;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileCachedData;
+import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.util.ThrowableConsumer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs each of the bytecode dumpers over all SWF, SWC and ABC files of the importer test data and logs throughput and
+ * allocated bytes per pass, so that decoder changes can be compared. There's no time budget, the numbers are to be compared
+ * between runs on the same machine.
+ * <p>
+ * The stub dumper needs registered JavaScript element types, so the test runs with an application.
+ */
+public class FlexImporterPerformanceTest extends BasePlatformTestCase {
+  private static final Logger LOG = Logger.getInstance(FlexImporterPerformanceTest.class);
+  private static final int PASSES = 5;
+
+  private List<byte[]> myContents;
+  private long myTotalSize;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myContents = new ArrayList<>();
+    myTotalSize = 0;
+    final File[] files = new File(FlexImporterTest.getTestDataPath()).listFiles(
+      file -> file.getName().endsWith(".swf") || file.getName().endsWith(".swc") || file.getName().endsWith(".abc"));
+    assertNotNull(files);
+    for (File file : files) {
+      final byte[] contents = FlexImporterTest.loadContents(file);
+      myContents.add(contents);
+      myTotalSize += contents.length;
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myContents = null;
+    super.tearDown();
+  }
+
+  public void testAbcDumper() throws Exception {
+    doTest("AbcDumper", contents -> FlexImporter.dumpContentsFromStream(new ByteArrayInputStream(contents), true));
+  }
+
+  public void testAS3InterfaceDumper() throws Exception {
+    doTest("AS3InterfaceDumper", contents -> FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(contents)));
+  }
+
+  public void testAS3InterfaceStubDumper() throws Exception {
+    doTest("AS3InterfaceStubDumper", contents -> FlexImporter.buildStubsInterface(
+      contents, new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData())));
+  }
+
+  private void doTest(@NotNull final String dumperName, @NotNull final ThrowableConsumer<byte[], Exception> dumper) throws Exception {
+    final long allocatedBefore = getAllocatedBytes();
+    final long start = System.nanoTime();
+    for (int i = 0; i < PASSES; i++) {
+      for (byte[] contents : myContents) {
+        dumper.consume(contents);
+      }
+    }
+    final long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    final long allocatedAfter = getAllocatedBytes();
+    final String allocation = allocatedBefore < 0
+                              ? "allocation not measured"
+                              : StringUtil.formatFileSize((allocatedAfter - allocatedBefore) / PASSES) + " allocated per pass";
+
+    LOG.info(dumperName + ": " + PASSES * myTotalSize * 1_000_000_000L / elapsedNanos / 1024 + " KB/s, " + allocation +
+             ", input " + StringUtil.formatFileSize(myTotalSize) + " in " + myContents.size() + " files");
+  }
+
+  /**
+   * @return bytes allocated by the current thread so far, or -1 if the JVM can't tell
+   */
+  private static long getAllocatedBytes() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
@@ -69,8 +69,24 @@ public class FlexImporterTest extends TestCase {
     doTestFor("hotbook.swf");
   }
 
-  private void doTestFor(final String fileName) throws IOException {
-    final File file = new File(getTestDataPath() + fileName);
+  public final void testBogusUncompressedLengthInHeader() throws Exception {
+    final byte[] contents = loadContents(new File(getTestDataPath() + "employeedirectory.swf"));
+    final String expected = FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(contents));
+
+    // the little-endian length of the uncompressed file follows the signature and the version
+    for (int length : new int[]{Integer.MAX_VALUE, 9, 0}) {
+      final byte[] patched = contents.clone();
+      for (int i = 0; i < 4; i++) {
+        patched[4 + i] = (byte)(length >>> (8 * i));
+      }
+      assertEquals("header length " + length, expected, FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(patched)));
+    }
+  }
+
+  /**
+   * @return contents of the file, or of the library.swf in it if it's a SWC
+   */
+  static byte[] loadContents(final File file) throws IOException {
     final byte[] contents;
 
     if (file.getName().endsWith(".swc")) {
@@ -88,6 +104,11 @@ public class FlexImporterTest extends TestCase {
     else {
       contents = FileUtil.loadFileBytes(file);
     }
+    return contents;
+  }
+
+  private void doTestFor(final String fileName) throws IOException {
+    final byte[] contents = loadContents(new File(getTestDataPath() + fileName));
 
     String result = FlexImporter.buildInterfaceFromStream(new ByteArrayInputStream(contents));
     String resultFileName = getTestDataPath() + fileName + ".txt";
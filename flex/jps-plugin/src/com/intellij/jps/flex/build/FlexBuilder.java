@@ -36,13 +36,15 @@ import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import org.jetbrains.jps.model.JpsProject;
 import org.jetbrains.jps.model.library.sdk.JpsSdk;
 import org.jetbrains.jps.model.module.JpsModule;
+import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTarget> {
 
@@ -135,16 +137,33 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
       }
     }
 
-    for (JpsFlexBuildConfiguration bc : bcsToCompile) {
-      final Status status = compileBuildConfiguration(context, bc, myBuiltInCompilerHandler);
+    // RLMs optimized for the application are linked against its link report, so the application is compiled first.
+    // RLMs and runtime stylesheets don't depend on each other and are compiled in parallel.
+    final List<CompilationResult> results =
+      new ArrayList<>(compileIndependentBCs(context, bcsToCompile.subList(0, 1), myBuiltInCompilerHandler, 1));
+    if (results.get(0) != null && results.get(0).status == Status.Ok && bcsToCompile.size() > 1) {
+      final int maxParallelCompilations = getMaxParallelCompilations(mainBC, myBuiltInCompilerHandler);
+      results.addAll(compileIndependentBCs(context, bcsToCompile.subList(1, bcsToCompile.size()), myBuiltInCompilerHandler,
+                                           maxParallelCompilations));
+    }
+    else {
+      // the other BCs are not compiled after failure or cancellation of the main one
+      results.addAll(Collections.nCopies(bcsToCompile.size() - 1, null));
+    }
 
-      switch (status) {
+    boolean failed = false;
+    for (int i = 0; i < bcsToCompile.size(); i++) {
+      final JpsFlexBuildConfiguration bc = bcsToCompile.get(i);
+      final CompilationResult result = results.get(i);
+      if (result == null) continue; // not started after failure or cancellation of another BC
+
+      switch (result.status) {
         case Ok:
           outputConsumer.registerOutputFile(new File(mainBC.getActualOutputFilePath()), dirtyFilePaths);
           FlexBuilderUtils.performPostCompileActions(context, bc, dirtyFilePaths, outputConsumer);
           context.processMessage(
             new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
-                                FlexCommonBundle.message("compilation.successful")));
+                                FlexCommonBundle.message("compilation.successful.in.0", StringUtil.formatDuration(result.timeMillis))));
           break;
 
         case Failed:
@@ -152,16 +171,116 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
                                  ? FlexCommonBundle.message("compilation.failed")
                                  : FlexCommonBundle.message("compilation.failed.dependent.will.be.skipped");
           context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO, message));
-
-          throw new StopBuildException();
+          failed = true;
+          break;
 
         case Cancelled:
           context.processMessage(
             new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.INFO,
                                 FlexCommonBundle.message("compilation.cancelled")));
-          return;
+          break;
       }
     }
+
+    if (failed) {
+      throw new StopBuildException();
+    }
+  }
+
+  /**
+   * Compiles build configurations that don't depend on each other, up to {@code maxParallelCompilations} at once.
+   * No more compilations are started after a failure or cancellation.
+   *
+   * @return results in the order of {@code bcs}, {@code null} for the BCs that haven't been compiled
+   */
+  private static List<CompilationResult> compileIndependentBCs(final CompileContext context,
+                                                               final List<JpsFlexBuildConfiguration> bcs,
+                                                               final JpsBuiltInFlexCompilerHandler builtInCompilerHandler,
+                                                               final int maxParallelCompilations) {
+    final CompilationResult[] results = new CompilationResult[bcs.size()];
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final AtomicBoolean stopped = new AtomicBoolean();
+    final int workersCount = Math.max(1, Math.min(maxParallelCompilations, bcs.size()));
+    final Semaphore semaphore = new Semaphore();
+
+    for (int i = 0; i < workersCount; i++) {
+      semaphore.down();
+      final Runnable worker = () -> {
+        try {
+          int index;
+          while (!stopped.get() && (index = nextIndex.getAndIncrement()) < bcs.size()) {
+            final JpsFlexBuildConfiguration bc = bcs.get(index);
+            if (context.getCancelStatus().isCanceled()) {
+              // reported like a compilation cancelled while running
+              results[index] = new CompilationResult(Status.Cancelled, 0);
+              stopped.set(true);
+              break;
+            }
+
+            final long start = System.currentTimeMillis();
+            Status status;
+            try {
+              status = compileBuildConfiguration(context, bc, builtInCompilerHandler);
+            }
+            catch (RuntimeException e) {
+              LOG.error(e);
+              context.processMessage(new CompilerMessage(FlexBuilderUtils.getCompilerName(bc), BuildMessage.Kind.ERROR, e.toString()));
+              status = Status.Failed;
+            }
+            final long timeMillis = System.currentTimeMillis() - start;
+            LOG.info(FlexBuilderUtils.getCompilerName(bc) + ": " + status + " in " + timeMillis + " ms");
+
+            results[index] = new CompilationResult(status, timeMillis);
+            if (status != Status.Ok) {
+              stopped.set(true);
+            }
+          }
+        }
+        finally {
+          semaphore.up();
+        }
+      };
+
+      if (i == workersCount - 1) {
+        worker.run();
+      }
+      else {
+        SharedThreadPool.getInstance().execute(worker);
+      }
+    }
+
+    semaphore.waitFor();
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Compilations with the built-in compiler share the heap of its process with the applications it keeps for incremental builds,
+   * see {@link JpsBuiltInFlexCompilerHandler#getMaxParallelCompilations}. Each mxmlc, compc or ASC 2.0 compilation starts a JVM
+   * with the same heap size, so their number is limited by the free physical memory. Both limits are within
+   * {@link JpsFlexCompilerProjectExtension#MAX_PARALLEL_COMPILATIONS}.
+   */
+  private static int getMaxParallelCompilations(final JpsFlexBuildConfiguration bc,
+                                                final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
+    final JpsProject project = bc.getModule().getProject();
+    final int maxParallelCompilations = JpsFlexCompilerProjectExtension.getInstance(project).MAX_PARALLEL_COMPILATIONS;
+    if (maxParallelCompilations <= 1) return 1;
+
+    final JpsSdk<?> sdk = bc.getSdk();
+    assert sdk != null;
+    if (isBuiltInCompilerUsed(bc, builtInCompilerHandler)) {
+      return JpsBuiltInFlexCompilerHandler.getMaxParallelCompilations(project, sdk, maxParallelCompilations);
+    }
+
+    final int heapSizeMb = FlexCommonUtils.getSdkToolHeapSizeMb(project, sdk);
+    if (heapSizeMb <= 0) return 1;
+
+    final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    final long limit = osBean instanceof com.sun.management.OperatingSystemMXBean
+                       ? ((com.sun.management.OperatingSystemMXBean)osBean).getFreePhysicalMemorySize() / (1024 * 1024) / heapSizeMb
+                       : 1;
+
+    LOG.debug("parallel compilations: " + limit + ", compiler heap size: " + heapSizeMb + " MB");
+    return (int)Math.max(1, Math.min(maxParallelCompilations, limit));
   }
 
   /**
@@ -356,15 +475,9 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
     final JpsSdk<?> sdk = bc.getSdk();
     assert sdk != null;
 
-    final boolean asc20 = bc.isPureAs() &&
-                          FlexCommonUtils.containsASC20(sdk.getHomePath()) &&
-                          (JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).PREFER_ASC_20 ||
-                           FlexCommonUtils.isAirSdkWithoutFlex(sdk));
-    final boolean builtIn = !asc20 &&
-                            JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).USE_BUILT_IN_COMPILER &&
-                            builtInCompilerHandler.canBeUsedForSdk(sdk.getHomePath());
+    final boolean asc20 = isASC20Used(bc);
 
-    if (builtIn) {
+    if (isBuiltInCompilerUsed(bc, builtInCompilerHandler)) {
       return doCompileWithBuiltInCompiler(context, bc, configFiles, compilerName, builtInCompilerHandler);
     }
 
@@ -395,6 +508,26 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
     }
   }
 
+  private static boolean isASC20Used(final JpsFlexBuildConfiguration bc) {
+    final JpsSdk<?> sdk = bc.getSdk();
+    assert sdk != null;
+
+    return bc.isPureAs() &&
+           FlexCommonUtils.containsASC20(sdk.getHomePath()) &&
+           (JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).PREFER_ASC_20 ||
+            FlexCommonUtils.isAirSdkWithoutFlex(sdk));
+  }
+
+  private static boolean isBuiltInCompilerUsed(final JpsFlexBuildConfiguration bc,
+                                               final JpsBuiltInFlexCompilerHandler builtInCompilerHandler) {
+    final JpsSdk<?> sdk = bc.getSdk();
+    assert sdk != null;
+
+    return !isASC20Used(bc) &&
+           JpsFlexCompilerProjectExtension.getInstance(bc.getModule().getProject()).USE_BUILT_IN_COMPILER &&
+           builtInCompilerHandler.canBeUsedForSdk(sdk.getHomePath());
+  }
+
   private static Status doCompileWithBuiltInCompiler(final CompileContext context,
                                                      final JpsFlexBuildConfiguration bc,
                                                      final List<File> configFiles,
@@ -485,6 +618,16 @@ public class FlexBuilder extends TargetBuilder<BuildRootDescriptor, FlexBuildTar
     }
   }
 
+  private static class CompilationResult {
+    private final Status status;
+    private final long timeMillis;
+
+    private CompilationResult(final Status status, final long timeMillis) {
+      this.status = status;
+      this.timeMillis = timeMillis;
+    }
+  }
+
   private static class BuiltInCompilerListener extends CompilerMessageHandlerBase implements JpsBuiltInFlexCompilerHandler.Listener {
     private final Runnable myOnCompilationFinishedRunnable;
 
@@ -2,6 +2,7 @@
 package com.intellij.jps.flex.build;
 
 import com.intellij.flex.FlexCommonUtils;
+import com.intellij.flex.model.JpsFlexCompilerProjectExtension;
 import com.intellij.flex.model.sdk.JpsFlexSdkType;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
@@ -26,6 +27,9 @@ public class JpsBuiltInFlexCompilerHandler {
   private static final Logger LOG = Logger.getInstance(JpsBuiltInFlexCompilerHandler.class.getName());
   private static final String CONNECTION_SUCCESSFUL = "Connection successful";
   public static final String COMPILATION_FINISHED = "Compilation finished";
+  // keep in sync with IncrementalApplicationCache in BuiltInFlexCompiler
+  private static final String INCREMENTAL_CACHE_SIZE_PROPERTY = "idea.flex.compiler.incremental.cache.size";
+  private static final int MAX_INCREMENTAL_CACHE_SIZE = 4;
 
   private final JpsProject myProject;
 
@@ -97,6 +101,11 @@ public class JpsBuiltInFlexCompilerHandler {
 
     final List<String> commandLine =
       FlexCommonUtils.getCommandLineForSdkTool(myProject, sdk, classpath.toString(), "com.intellij.flex.compiler.FlexCompiler");
+    final int incrementalCacheSize = getIncrementalCacheSize(myProject, sdk);
+    if (incrementalCacheSize >= 0) {
+      // before the main class
+      commandLine.add(commandLine.size() - 1, "-D" + INCREMENTAL_CACHE_SIZE_PROPERTY + "=" + incrementalCacheSize);
+    }
     commandLine.add(String.valueOf(port));
 
     final ProcessBuilder processBuilder = new ProcessBuilder(commandLine);
@@ -110,6 +119,39 @@ public class JpsBuiltInFlexCompilerHandler {
     readInputStreamUntilConnected(process, context, compilerName);
   }
 
+  /**
+   * The compiler heap is counted in slots of the heap that the SDK gives to one run of its own mxmlc or compc in {@code bin/jvm.config}.
+   * A running compilation takes a slot, and so does an application kept by the compiler for incremental builds, because it holds
+   * the parsed SWCs and compilation units of its last compilation. Up to half of the slots are given to parallel compilations,
+   * the rest to kept applications.
+   *
+   * @return number of slots, or 0 if the SDK doesn't tell the heap size of one compilation
+   */
+  private static int getHeapSlots(final JpsProject project, final JpsSdk<?> sdk) {
+    final int compilationHeapSizeMb = FlexCommonUtils.getSdkJvmConfigHeapSizeMb(sdk);
+    final int heapSizeMb = FlexCommonUtils.getSdkToolHeapSizeMb(project, sdk);
+    return compilationHeapSizeMb <= 0 || heapSizeMb <= 0 ? 0 : heapSizeMb / compilationHeapSizeMb;
+  }
+
+  static int getMaxParallelCompilations(final JpsProject project, final JpsSdk<?> sdk, final int maxParallelCompilations) {
+    return Math.max(1, Math.min(maxParallelCompilations, getHeapSlots(project, sdk) / 2));
+  }
+
+  /**
+   * @return number of applications the compiler may keep for incremental builds, or -1 to leave it to the compiler,
+   *         which then only evicts them when the heap is low
+   */
+  static int getIncrementalCacheSize(final JpsProject project, final JpsSdk<?> sdk) {
+    final String vmOptions = JpsFlexCompilerProjectExtension.getInstance(project).VM_OPTIONS;
+    if (vmOptions != null && vmOptions.contains(INCREMENTAL_CACHE_SIZE_PROPERTY)) return -1;
+
+    final int slots = getHeapSlots(project, sdk);
+    if (slots == 0) return -1;
+
+    final int maxParallelCompilations = JpsFlexCompilerProjectExtension.getInstance(project).MAX_PARALLEL_COMPILATIONS;
+    return Math.max(0, Math.min(MAX_INCREMENTAL_CACHE_SIZE, slots - getMaxParallelCompilations(project, sdk, maxParallelCompilations)));
+  }
+
   private void readInputStreamUntilConnected(final Process process, final CompileContext context, final String compilerName) {
     SharedThreadPool.getInstance().execute(() -> {
       final InputStreamReader reader = FlexCommonUtils.createInputStreamReader(process.getInputStream());
@@ -8,17 +8,15 @@ import com.intellij.lang.javascript.psi.stubs.impl.JSFileStubImpl;
 import com.intellij.lang.javascript.types.JSFileElementType;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
-import com.intellij.psi.stubs.PsiFileStub;
 import com.intellij.psi.stubs.PsiFileStubImpl;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
-
 /**
  * @author Maxim.Mossienko
  */
@@ -33,23 +31,38 @@ public class SwfFileStubBuilder implements BinaryFileStubBuilder {
 
   @Override
   public StubElement buildStubTree(@NotNull FileContent fileContent) {
-    return buildFileStub(fileContent.getFile(), fileContent.getContent());
+    final byte[] content = fileContent.getContent();
+    final SwfStubCache cache = SwfStubCache.getInstance();
+    final String contentHash = SwfStubCache.computeContentHash(content);
+
+    final StubElement<?> cachedStub = cache.get(contentHash);
+    if (cachedStub != null) return cachedStub;
+
+    final PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+    if (buildFileStub(fileContent.getFile(), content, stub)) {
+      cache.put(contentHash, stub);
+    }
+    return stub;
   }
 
-  static PsiFileStub buildFileStub(VirtualFile file, byte[] content) {
-    PsiFileStubImpl stub = new JSFileStubImpl(JavaScriptSupportLoader.ECMA_SCRIPT_L4, new JSFileCachedData());
+  /**
+   * @return {@code false} if the content can't be fully decoded, {@code stub} contains the part decoded before the failure
+   */
+  static boolean buildFileStub(VirtualFile file, byte[] content, PsiFileStubImpl stub) {
     try {
 
-      FlexImporter.buildStubsInterfaceFromStream(
-        new ByteArrayInputStream(content),
-        stub
-      );
+      FlexImporter.buildStubsInterface(content, stub);
 
-    } catch (Exception ex) {
+    }
+    catch (ProcessCanceledException ex) {
+      throw ex;
+    }
+    catch (Exception ex) {
       Logger.getInstance(SwfFileStubBuilder.class.getName()).warn(file.getPath(), ex);
+      return false;
     }
 
-    return stub;
+    return true;
   }
 
   @Override
@@ -0,0 +1,236 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.intellij.javascript.flex.compiled;
+
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.lang.javascript.types.JSFileElementType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DigestUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialized stub trees of library.swf files, keyed by the SHA-1 of the SWF content and kept between IDE sessions.
+ * SWCs of Flex and AIR SDKs never change, so reindexing them after an SDK is re-added or the caches are invalidated
+ * doesn't need to decode their bytecode again.
+ * <p>
+ * The serialized trees refer to the stub serializers by the ids enumerated in the index root and depend on the stub element types
+ * of the JavaScript plugin. So the cache is kept in the index root, which is deleted together with that enumeration, e.g. by
+ * Invalidate Caches, and it is dropped when the IDE build, the JavaScript plugin version or {@link SwfFileStubBuilder#getStubVersion()}
+ * changes.
+ * <p>
+ * Trees are kept in two generations. New trees go to the current one; when it reaches {@link #MAX_GENERATION_SIZE}, the previous
+ * generation is deleted and the current one becomes the previous one. Trees found in the previous generation are copied to the
+ * current one, so the cache keeps recently used trees and takes at most twice the generation size on disk.
+ */
+public final class SwfStubCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(SwfStubCache.class.getName());
+
+  private static final DataExternalizer<byte[]> BYTES_EXTERNALIZER = new DataExternalizer<byte[]>() {
+    @Override
+    public void save(@NotNull DataOutput out, byte[] value) throws IOException {
+      out.writeInt(value.length);
+      out.write(value);
+    }
+
+    @Override
+    public byte[] read(@NotNull DataInput in) throws IOException {
+      final byte[] value = new byte[in.readInt()];
+      in.readFully(value);
+      return value;
+    }
+  };
+
+  private static final long MAX_GENERATION_SIZE = 100 * 1024 * 1024;
+  // to be changed when the files in the cache directory change
+  private static final int LAYOUT_VERSION = 2;
+
+  @NotNull private final File myDir = new File(PathManager.getIndexRoot(), "flex.swf.stubs");
+  @NotNull private final File myCurrentDir = new File(myDir, "current");
+  @NotNull private final File myPreviousDir = new File(myDir, "previous");
+  // both null if the storage can't be used, guarded by this
+  @Nullable private PersistentHashMap<String, byte[]> myMap;
+  @Nullable private PersistentHashMap<String, byte[]> myPreviousMap;
+  // approximate size of the values in myMap
+  private long myMapSize;
+
+  @NotNull
+  public static SwfStubCache getInstance() {
+    return ServiceManager.getService(SwfStubCache.class);
+  }
+
+  public SwfStubCache() {
+    openMaps(new SwfFileStubBuilder().getStubVersion());
+  }
+
+  private void openMaps(final int stubVersion) {
+    final File versionFile = new File(myDir, "version");
+    try {
+      final String expectedVersion = getVersion(stubVersion);
+      final String version = versionFile.isFile() ? FileUtil.loadFile(versionFile, StandardCharsets.UTF_8).trim() : null;
+      if (!expectedVersion.equals(version)) {
+        FileUtil.delete(myDir);
+        // the cache used to be kept there, out of reach of Invalidate Caches
+        FileUtil.delete(new File(PathManager.getSystemPath(), "flex/swf-stubs"));
+        FileUtil.writeToFile(versionFile, expectedVersion);
+      }
+      myPreviousMap = openMap(myPreviousDir);
+      myMap = openMap(myCurrentDir);
+      myMapSize = getDirSize(myCurrentDir);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to open SWF stub cache in " + myDir, e);
+      closeMaps();
+      FileUtil.delete(myDir);
+    }
+  }
+
+  @NotNull
+  private static String getVersion(final int stubVersion) {
+    final IdeaPluginDescriptor jsPlugin = PluginManagerCore.getPlugin(PluginId.getId("JavaScript"));
+    return stubVersion + "." + JSFileElementType.getVersion() + "." + LAYOUT_VERSION +
+           " " + ApplicationInfo.getInstance().getBuild().asString() +
+           " " + (jsPlugin != null ? jsPlugin.getVersion() : "");
+  }
+
+  @NotNull
+  private static PersistentHashMap<String, byte[]> openMap(@NotNull final File dir) throws IOException {
+    return new PersistentHashMap<>(new File(dir, "stubs").toPath(), EnumeratorStringDescriptor.INSTANCE, BYTES_EXTERNALIZER);
+  }
+
+  private static long getDirSize(@NotNull final File dir) {
+    final File[] files = dir.listFiles();
+    long size = 0;
+    if (files != null) {
+      for (File file : files) {
+        size += file.length();
+      }
+    }
+    return size;
+  }
+
+  @NotNull
+  static String computeContentHash(final byte @NotNull [] content) {
+    return StringUtil.toHexString(DigestUtil.sha1().digest(content));
+  }
+
+  /**
+   * @return a copy of the cached stub tree, or {@code null} if there's no cached tree for the content
+   */
+  @Nullable
+  StubElement<?> get(@NotNull final String contentHash) {
+    byte[] bytes;
+    synchronized (this) {
+      if (myMap == null || myPreviousMap == null) return null;
+      try {
+        bytes = myMap.get(contentHash);
+        if (bytes == null) {
+          bytes = myPreviousMap.get(contentHash);
+          if (bytes != null) {
+            // still used, keep it when the previous generation is deleted
+            putToCurrentGeneration(contentHash, bytes);
+          }
+        }
+      }
+      catch (IOException e) {
+        dropCorruptedMaps(e);
+        return null;
+      }
+    }
+    if (bytes == null) return null;
+
+    try {
+      final Stub stub = SerializationManagerEx.getInstanceEx().deserialize(new ByteArrayInputStream(bytes));
+      return stub instanceof StubElement ? (StubElement<?>)stub : null;
+    }
+    catch (ProcessCanceledException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      // e.g. stub serializers of the JavaScript plugin have changed without a change of the stub version
+      LOG.info("Failed to deserialize cached SWF stub " + contentHash, e);
+      return null;
+    }
+  }
+
+  void put(@NotNull final String contentHash, @NotNull final StubElement<?> stub) {
+    final BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
+    SerializationManagerEx.getInstanceEx().serialize(stub, out);
+    final byte[] bytes = out.toByteArray();
+
+    synchronized (this) {
+      if (myMap == null || myPreviousMap == null) return;
+      try {
+        putToCurrentGeneration(contentHash, bytes);
+      }
+      catch (IOException e) {
+        dropCorruptedMaps(e);
+      }
+    }
+  }
+
+  private void putToCurrentGeneration(@NotNull final String contentHash, final byte @NotNull [] bytes) throws IOException {
+    assert myMap != null && myPreviousMap != null;
+    myMap.put(contentHash, bytes);
+    myMapSize += bytes.length + contentHash.length();
+    if (myMapSize < MAX_GENERATION_SIZE) return;
+
+    LOG.info("SWF stub cache generation is full, deleting the previous one in " + myPreviousDir);
+    closeMap(myPreviousMap);
+    closeMap(myMap);
+    myPreviousMap = null;
+    myMap = null;
+    if (!FileUtil.delete(myPreviousDir) || !myCurrentDir.renameTo(myPreviousDir)) {
+      throw new IOException("Failed to move " + myCurrentDir + " to " + myPreviousDir);
+    }
+    myPreviousMap = openMap(myPreviousDir);
+    myMap = openMap(myCurrentDir);
+    myMapSize = 0;
+  }
+
+  private void dropCorruptedMaps(@NotNull final IOException e) {
+    LOG.info("SWF stub cache is corrupted, deleting " + myDir, e);
+    closeMaps();
+    FileUtil.delete(myDir);
+  }
+
+  private void closeMaps() {
+    closeMap(myMap);
+    closeMap(myPreviousMap);
+    myMap = null;
+    myPreviousMap = null;
+  }
+
+  private static void closeMap(@Nullable final PersistentHashMap<String, byte[]> map) {
+    if (map == null) return;
+    try {
+      map.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  @Override
+  public synchronized void dispose() {
+    closeMaps();
+  }
+}
@@ -1,24 +1,49 @@
 package com.intellij.lang.javascript.flex.importer;
 
+import com.intellij.util.ArrayUtilRt;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
+ * A view of {@code length} bytes of an array starting at {@code offset}; positions are relative to the offset.
+ * {@link #readBytes} shares the array instead of copying it, so tags and method bodies of a SWF are decoded in place.
+ *
  * @author Maxim.Mossienko
 */
 class ByteBuffer {
+  // SWF content usually compresses 2-10 times, the array grows if the data inflates more
+  private static final int MAX_INITIAL_COMPRESSION_RATIO = 16;
+  // some VMs reserve header words in an array
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
   private byte[] bytes;
+  private int offset;
+  private int length;
   private int position;
   private boolean littleEndian;
 
+  ByteBuffer() {
+    this(ArrayUtilRt.EMPTY_BYTE_ARRAY, 0, 0);
+  }
+
+  /**
+   * Doesn't copy {@code bytes}.
+   */
+  ByteBuffer(byte @NotNull [] bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
   void read(@NotNull InputStream inputStream) throws IOException {
     try {
-      bytes = readStream(inputStream);
+      readStream(inputStream);
     }
     finally {
       inputStream.close();
@@ -30,17 +55,28 @@ class ByteBuffer {
   }
 
   int readInt() {
+    final int i = index(4);
     int result;
     if (littleEndian) {
-      result = (((bytes[position + 3] & 0xFF) << 8 | (bytes[position + 2] & 0xFF)) << 16) + ((bytes[position + 1] & 0xFF) << 8) | (bytes[position] & 0xFF);
+      result = (((bytes[i + 3] & 0xFF) << 8 | (bytes[i + 2] & 0xFF)) << 16) + ((bytes[i + 1] & 0xFF) << 8) | (bytes[i] & 0xFF);
     }
     else {
-      result = (((bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF)) << 16) + ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+      result = (((bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF)) << 16) + ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
     }
     position += 4;
     return result;
   }
 
+  /**
+   * @return index in {@link #bytes} of the byte at the current position, checking that {@code count} bytes are available
+   */
+  private int index(int count) {
+    if (position < 0 || position + count > length) {
+      throw new ArrayIndexOutOfBoundsException("Position " + position + ", count " + count + ", length " + length);
+    }
+    return offset + position;
+  }
+
   public int readUnsignedInt() {
     return readInt();
   }
@@ -50,77 +86,139 @@ class ByteBuffer {
   }
 
   public int bytesSize() {
-    return bytes.length;
-  }
-
-  public void uncompress() throws IOException {
-    final InflaterInputStream zipInputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
-
-    bytes = readStream(zipInputStream);
+    return length;
+  }
+
+  /**
+   * Inflates the bytes from the current position to the end into a new array.
+   *
+   * @param expectedSize uncompressed size if known, e.g. from the SWF header, or 0; it's only a hint, the array grows as needed and
+   *                     its initial size is bounded by the compressed size, so a bogus header can't make it huge
+   */
+  @NotNull
+  public ByteBuffer uncompress(int expectedSize) throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      final int compressedSize = length - position;
+      inflater.setInput(bytes, offset + position, compressedSize);
+
+      final long maxInitialSize = Math.max(8192, (long)compressedSize * MAX_INITIAL_COMPRESSION_RATIO);
+      // one more byte lets the inflater report that it has finished without growing an exactly sized array
+      final long initialSize = expectedSize > 0 ? Math.min(expectedSize + 1L, maxInitialSize) : Math.max(8192, compressedSize * 2L);
+      byte[] result = new byte[(int)Math.min(initialSize, MAX_ARRAY_SIZE)];
+      int total = 0;
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          if (result.length == MAX_ARRAY_SIZE) throw new IOException("Uncompressed data is too large");
+          final byte[] newResult = new byte[(int)Math.min(result.length * 2L, MAX_ARRAY_SIZE)];
+          System.arraycopy(result, 0, newResult, 0, total);
+          result = newResult;
+        }
+
+        final int inflated = inflater.inflate(result, total, result.length - total);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        total += inflated;
+      }
+      position = length;
 
-    zipInputStream.close();
+      final ByteBuffer uncompressed = new ByteBuffer(result, 0, total);
+      uncompressed.littleEndian = littleEndian;
+      return uncompressed;
+    }
+    catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    finally {
+      inflater.end();
+    }
   }
 
-  private static byte[] readStream(final InputStream zipInputStream) throws IOException {
-    final byte[] buf = new byte[8192];
-    byte[] result = new byte[8192];
+  // the array is not trimmed to the read size, length is set instead
+  private void readStream(final InputStream inputStream) throws IOException {
+    byte[] result = new byte[Math.max(8192, inputStream.available() + 1)];
     int total = 0;
 
     while (true) {
-      int read = zipInputStream.read(buf);
-      if (read == -1) break;
-      if (total + read >= result.length) {
+      if (total == result.length) {
         byte[] newresult = new byte[result.length * 2];
         System.arraycopy(result, 0, newresult, 0, total);
         result = newresult;
       }
 
-      System.arraycopy(buf, 0, result, total, read);
+      int read = inputStream.read(result, total, result.length - total);
+      if (read == -1) break;
       total += read;
     }
 
-    final byte[] realResult = new byte[total];
-    System.arraycopy(result, 0, realResult, 0, total);
-    return realResult;
+    bytes = result;
+    offset = 0;
+    length = total;
+    position = 0;
   }
 
   public int readUnsignedByte() {
-    return bytes[position++] & 0xFF;
+    final int result = bytes[index(1)] & 0xFF;
+    position++;
+    return result;
   }
 
   public int readByte() {
-    return bytes[position++];
+    final byte result = bytes[index(1)];
+    position++;
+    return result;
   }
 
   public int readUnsignedShort() {
+    final int i = index(2);
     int result;
     if (littleEndian) {
-      result = (bytes[position + 1] & 0xFF) << 8 | (bytes[position] & 0xFF);
+      result = (bytes[i + 1] & 0xFF) << 8 | (bytes[i] & 0xFF);
     }
     else {
-      result = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      result = (bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF);
     }
     position += 2;
     return result;
   }
 
+  /**
+   * Makes {@code data2} a view of the next {@code length} bytes, the array is shared.
+   */
   public void readBytes(ByteBuffer data2, int length) {
-    data2.bytes = new byte[length];
-    System.arraycopy(bytes, position, data2.bytes, 0, length);
+    final int i = index(length);
+    data2.bytes = bytes;
+    data2.offset = i;
+    data2.length = length;
+    data2.position = 0;
     position += length;
   }
 
   public boolean eof() {
-    return position >= bytes.length;
+    return position >= length;
   }
 
   public String readUTFBytes(int i) {
-    final byte[] buf = new byte[i];
-    while (i > 0) {
-      buf[buf.length - i] = (byte)readByte();
-      --i;
-    }
-    return new String(buf, StandardCharsets.UTF_8);
+    final String result = new String(bytes, index(i), i, StandardCharsets.UTF_8);
+    position += i;
+    return result;
+  }
+
+  /**
+   * Reads a zero-terminated string of single-byte chars, the terminating zero is skipped.
+   */
+  @NotNull
+  public String readNullTerminatedString() {
+    final int start = index(0);
+    final int end = offset + length;
+    int i = start;
+    while (i < end && bytes[i] != 0) i++;
+    if (i == end) throw new ArrayIndexOutOfBoundsException("Unterminated string at position " + position);
+
+    final String result = new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+    position += i - start + 1;
+    return result;
   }
 
   public double readDouble() {
@@ -142,7 +240,7 @@ class ByteBuffer {
   }
 
   public byte getByte(int i) {
-    return bytes[i];
+    return bytes[offset + i];
   }
 
   public int getPosition() {
@@ -70,9 +70,20 @@ public class FlexImporter {
     processFlexByteCode(in, new AS3InterfaceStubDumper(parent));
   }
 
+  /**
+   * Same as {@link #buildStubsInterfaceFromStream} but decodes {@code content} in place, without copying it.
+   */
+  public static void buildStubsInterface(final byte @NotNull [] content, final StubElement parent) throws Exception {
+    processFlexByteCode(new ByteBuffer(content, 0, content.length), new AS3InterfaceStubDumper(parent));
+  }
+
   private static void processFlexByteCode(@NotNull final InputStream in, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
     ByteBuffer data = new ByteBuffer();
     data.read(in);
+    processFlexByteCode(data, processor);
+  }
+
+  private static void processFlexByteCode(@NotNull final ByteBuffer data, @NotNull FlexByteCodeInformationProcessor processor) throws IOException {
     data.setLittleEndian();
     if (data.bytesSize() == 0) return;
     int version = data.readUnsignedInt();
@@ -83,14 +94,11 @@ public class FlexImporter {
     }
     else if ((version & SWF_MAGIC) == SWF_MAGIC) {
       final int delta = 8;
-      data.setPosition(delta);
-      ByteBuffer udata = new ByteBuffer();
-      udata.setLittleEndian();
-      data.readBytes(udata, data.bytesSize() - delta);
-      int csize = udata.bytesSize();
-      udata.uncompress();
+      // uncompressed file length including the header
+      final int fileLength = data.readInt();
+      int csize = data.bytesSize() - delta;
+      ByteBuffer udata = data.uncompress(Math.max(fileLength - delta, 0));
       processor.dumpStat("decompressed swf " + csize + " -> " + udata.bytesSize() + "\n");
-      udata.setPosition(0);
       new Swf(udata, processor);
     }
     else if ((version & SWF_MAGIC2) == SWF_MAGIC2) {
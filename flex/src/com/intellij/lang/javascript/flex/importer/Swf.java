@@ -196,12 +196,7 @@ class Swf {
   }
 
   private String readString() {
-    String s = "";
-    int c;
-
-    while ((c = data.readUnsignedByte()) != 0) s += (char)c;
-
-    return s;
+    return data.readNullTerminatedString();
   }
 
   private void syncBits() {
@@ -21,6 +21,8 @@ import java.io.IOException;
 
 public class Flex4Handler extends SdkSpecificHandler {
 
+  private static final IncrementalApplicationCache ourIncrementalCache = new IncrementalApplicationCache();
+
   public void initThreadLocals(final Logger logger) {
     super.initThreadLocals(logger);
 
@@ -78,9 +80,39 @@ public class Flex4Handler extends SdkSpecificHandler {
   }
 
   public void compileSwf(String[] args) {
+    if (ourIncrementalCache.isEnabled() && getLogger() instanceof flex2.tools.oem.Logger) {
+      final CommandLineConfiguration configuration = getCommandLineConfiguration(args);
+      if (configuration != null) {
+        try {
+          if (ourIncrementalCache.build(args, configuration.getTargetFile(), configuration.getOutput(),
+                                        (flex2.tools.oem.Logger)getLogger())) {
+            return;
+          }
+        }
+        catch (IOException e) {
+          getLogger().logError(e.toString());
+          return;
+        }
+        catch (NoClassDefFoundError e) {
+          // flex-compiler-oem.jar is not in the classpath, e.g. for Flexmojos SDK
+        }
+      }
+    }
+
     Mxmlc.mxmlc(args);
   }
 
+  private CommandLineConfiguration getCommandLineConfiguration(final String[] args) {
+    try {
+      final Configuration configuration = processConfiguration(true, args);
+      return configuration instanceof CommandLineConfiguration ? (CommandLineConfiguration)configuration : null;
+    }
+    catch (Throwable t) {
+      // Mxmlc will report configuration errors
+      return null;
+    }
+  }
+
   public void compileSwc(String[] args) {
     Compc.compc(args);
   }
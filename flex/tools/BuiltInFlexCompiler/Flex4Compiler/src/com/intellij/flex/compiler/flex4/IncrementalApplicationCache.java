@@ -0,0 +1,172 @@
+package com.intellij.flex.compiler.flex4;
+
+import flex2.tools.oem.Application;
+import flex2.tools.oem.Configuration;
+import flex2.tools.oem.Logger;
+import flex2.tools.oem.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps OEM {@link Application} objects between compilations of the same build configuration, like fcsh keeps its targets.
+ * An application built again with {@code build(true)} reuses parsed SWCs and compilation units of unchanged sources,
+ * so rebuilding after a one-file edit doesn't recompile the framework.
+ * <p/>
+ * Build configurations are identified by the compiler arguments, which name the config file generated by the IDE.
+ * Least recently used applications are evicted when there are more than {@code idea.flex.compiler.incremental.cache.size}
+ * of them (4 by default, 0 disables the cache) or when the heap is filled over {@link #MAX_USED_MEMORY_FRACTION} after the last
+ * garbage collection. Evicted applications are only dropped, {@link Application#clean()} would delete their output files.
+ * <p/>
+ * The IDE sets the cache size from the compiler heap size, so that kept applications and parallel compilations fit in the heap
+ * together, see {@code JpsBuiltInFlexCompilerHandler}.
+ */
+class IncrementalApplicationCache {
+
+  private static final double MAX_USED_MEMORY_FRACTION = 0.7;
+
+  private final int myMaxSize;
+
+  // access-ordered, guarded by itself
+  private final LinkedHashMap<String, Application> myApplications = new LinkedHashMap<String, Application>(16, 0.75f, true);
+  // guarded by myApplications
+  private long myCollectionCountAtEviction = -1;
+
+  IncrementalApplicationCache() {
+    int maxSize;
+    try {
+      maxSize = Integer.parseInt(System.getProperty("idea.flex.compiler.incremental.cache.size", "4"));
+    }
+    catch (NumberFormatException e) {
+      maxSize = 4;
+    }
+    myMaxSize = maxSize;
+  }
+
+  boolean isEnabled() {
+    return myMaxSize > 0;
+  }
+
+  /**
+   * @return {@code false} if the application can't be built incrementally and nothing has been done,
+   *         {@code true} if it has been built, successfully or not; errors are reported to {@code logger}
+   */
+  boolean build(final String[] args, final String targetFile, final String output, final Logger logger) throws IOException {
+    if (targetFile == null || output == null) return false;
+
+    evictIfNeeded();
+
+    final String key = getKey(args);
+    Application application;
+    synchronized (myApplications) {
+      application = myApplications.remove(key);
+    }
+
+    if (application == null) {
+      application = new Application(new File(targetFile));
+    }
+
+    final ErrorCountingLogger errorCountingLogger = new ErrorCountingLogger(logger);
+    boolean ok = false;
+    try {
+      final Configuration configuration = application.getDefaultConfiguration();
+      configuration.setConfiguration(args);
+      application.setConfiguration(configuration);
+      application.setOutput(new File(output));
+      application.setLogger(errorCountingLogger);
+
+      // compilation units of the previous build are reused if the configuration and the sources allow
+      application.build(true);
+      ok = errorCountingLogger.myErrorCount == 0;
+    }
+    finally {
+      if (ok) {
+        // the same configuration is not compiled concurrently, so the application is out of the map while it is being built
+        synchronized (myApplications) {
+          myApplications.put(key, application);
+        }
+      }
+      // the state of a failed build is not kept, the next build of this configuration will be a full one
+      evictIfNeeded();
+    }
+    return true;
+  }
+
+  private void evictIfNeeded() {
+    synchronized (myApplications) {
+      // the usage after the last collection doesn't change until the next one, so it is acted upon once
+      final long collectionCount = getCollectionCount();
+      int toEvict = 0;
+      if (collectionCount != myCollectionCountAtEviction && isMemoryLow()) {
+        myCollectionCountAtEviction = collectionCount;
+        toEvict = Math.max(1, myApplications.size() / 2);
+      }
+
+      final Iterator<Map.Entry<String, Application>> iterator = myApplications.entrySet().iterator();
+      while (iterator.hasNext() && (myApplications.size() > myMaxSize || toEvict > 0)) {
+        iterator.next();
+        iterator.remove();
+        toEvict--;
+      }
+    }
+  }
+
+  private static long getCollectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  /**
+   * Live data only: the usage of the heap pools right after their last collection, not including garbage collected since.
+   */
+  private static boolean isMemoryLow() {
+    long usedAfterCollection = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP) continue;
+      final MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null) {
+        usedAfterCollection += usage.getUsed();
+      }
+    }
+    return usedAfterCollection > Runtime.getRuntime().maxMemory() * MAX_USED_MEMORY_FRACTION;
+  }
+
+  /**
+   * {@link Application#build} returns the number of bytes written, which is 0 both for a failed build and for an up-to-date one
+   * that didn't write the output again, so the result of a build is decided by the errors reported to the logger.
+   */
+  private static class ErrorCountingLogger implements Logger {
+    private final Logger myDelegate;
+    private int myErrorCount;
+
+    ErrorCountingLogger(final Logger delegate) {
+      myDelegate = delegate;
+    }
+
+    public void log(final Message message, final int errorCode, final String source) {
+      if (Message.ERROR.equals(message.getLevel())) {
+        myErrorCount++;
+      }
+      myDelegate.log(message, errorCode, source);
+    }
+  }
+
+  private static String getKey(final String[] args) {
+    final StringBuilder builder = new StringBuilder();
+    for (String arg : args) {
+      builder.append(arg).append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,55 @@
+package com.intellij.flex.compiler.flex4;
+
+import flex2.tools.oem.Logger;
+import flex2.tools.oem.Message;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Builds an application three times through {@link IncrementalApplicationCache}: from scratch, without changes and after touching
+ * the main file, and prints the time of each build. The second and the third builds reuse the compilation units of the first one,
+ * so they should take a fraction of its time.
+ * <p/>
+ * Arguments: main file, output file, then mxmlc arguments, e.g. {@code -load-config=...}. Run with flex-compiler-oem.jar and
+ * the other jars of a Flex 4 SDK in the classpath, and with {@code -Dapplication.home=<SDK home>}.
+ */
+public class IncrementalBuildCheck {
+  public static void main(String[] args) throws Exception {
+    final String targetFile = args[0];
+    final String output = args[1];
+    final String[] compilerArgs = Arrays.copyOfRange(args, 2, args.length);
+
+    final IncrementalApplicationCache cache = new IncrementalApplicationCache();
+    assert cache.isEnabled();
+
+    final int[] errorCount = {0};
+    final Logger logger = new Logger() {
+      public void log(final Message message, final int errorCode, final String source) {
+        if (Message.ERROR.equals(message.getLevel())) errorCount[0]++;
+        System.out.println(message);
+      }
+    };
+
+    build(cache, compilerArgs, targetFile, output, logger, "full build");
+    build(cache, compilerArgs, targetFile, output, logger, "build without changes");
+    final boolean touched = new File(targetFile).setLastModified(System.currentTimeMillis());
+    assert touched;
+    build(cache, compilerArgs, targetFile, output, logger, "build after touching " + targetFile);
+
+    assert errorCount[0] == 0;
+    assert new File(output).isFile();
+  }
+
+  private static void build(final IncrementalApplicationCache cache,
+                            final String[] args,
+                            final String targetFile,
+                            final String output,
+                            final Logger logger,
+                            final String name) throws Exception {
+    final long start = System.currentTimeMillis();
+    final boolean built = cache.build(args, targetFile, output, logger);
+    assert built;
+    System.out.println(name + ": " + (System.currentTimeMillis() - start) + " ms");
+  }
+}